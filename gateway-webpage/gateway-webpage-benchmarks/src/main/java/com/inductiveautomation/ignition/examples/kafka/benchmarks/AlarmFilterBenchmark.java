@@ -0,0 +1,71 @@
+package com.inductiveautomation.ignition.examples.kafka.benchmarks;
+
+import com.inductiveautomation.ignition.examples.kafka.alarms.AlarmFilterEngine;
+import com.inductiveautomation.ignition.examples.kafka.alarms.PatternGroup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the alarm filter per event, for repeat alarms answered from the decision cache and for the
+ * compiled match a new source goes through.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlarmFilterBenchmark {
+
+    private static final int ALARMS = 1000;
+
+    @Param({"20", "200"})
+    public int patterns;
+
+    private AlarmFilterEngine engine;
+    private PatternGroup sourceGroup;
+    private String[] sources;
+    private String[] displayPaths;
+    private int next;
+
+    @Setup
+    public void setup() {
+        String[] entries = Fixtures.alarmPatterns(patterns);
+        engine = new AlarmFilterEngine(0, entries, null, null);
+        sourceGroup = new PatternGroup(entries);
+
+        sources = new String[ALARMS];
+        displayPaths = new String[ALARMS];
+        for (int i = 0; i < ALARMS; i++) {
+            int index = i % 2 == 0 ? i % patterns : patterns + i;
+            sources[i] = Fixtures.alarmSource(index);
+            displayPaths[i] = Fixtures.alarmDisplayPath(index);
+        }
+    }
+
+    @Benchmark
+    public boolean accepts() {
+        int i = next;
+        next = i + 1 == ALARMS ? 0 : i + 1;
+        return engine.accepts(3, sources[i], displayPaths[i]);
+    }
+
+    @Benchmark
+    public boolean compiledMatch() {
+        int i = next;
+        next = i + 1 == ALARMS ? 0 : i + 1;
+        return sourceGroup.matches(sources[i]);
+    }
+}
@@ -0,0 +1,86 @@
+package com.inductiveautomation.ignition.examples.kafka.benchmarks;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings record for the benchmarks, the getters the sinks read answered from plain fields.
+ */
+
+class BenchmarkSettings extends KafkaSettingsRecord {
+
+    tagHistoryModes mode = tagHistoryModes.Batched;
+    int batchSize = 0;
+    encoders encoder = encoders.Json;
+    recordKeys key = recordKeys.None;
+    tagFilters filter = tagFilters.Off;
+    double deadband = 0.0;
+    tagAggregations aggregation = tagAggregations.Raw;
+    producerProfiles profile = producerProfiles.Balanced;
+
+    @Override
+    public String getBrokerList() { return "localhost:9092"; }
+
+    @Override
+    public String getTagHistoryTopic() { return "ignition-tags"; }
+
+    @Override
+    public tagHistoryModes getTagHistoryMode() { return mode; }
+
+    @Override
+    public int getTagBatchSize() { return batchSize; }
+
+    @Override
+    public encoders getTagHistoryEncoder() { return encoder; }
+
+    @Override
+    public recordKeys getTagHistoryKey() { return key; }
+
+    @Override
+    public producerProfiles getTagHistoryProfile() { return profile; }
+
+    @Override
+    public tagFilters getTagFilter() { return filter; }
+
+    @Override
+    public double getTagDeadband() { return deadband; }
+
+    @Override
+    public int getTagHeartbeat() { return 0; }
+
+    @Override
+    public tagAggregations getTagAggregation() { return aggregation; }
+
+    @Override
+    public int getTagAggregationWindow() { return 60; }
+
+    @Override
+    public String getTagAggregationTopic() { return "ignition-tags-aggregates"; }
+
+    @Override
+    public Boolean getEnabled() { return true; }
+
+    @Override
+    public Boolean getUseSSL() { return false; }
+
+    @Override
+    public Boolean getBalancedPartitioner() { return false; }
+
+    @Override
+    public Map<String, String> getProducerOverrides() { return Collections.emptyMap(); }
+
+    @Override
+    public Map<String, String> getProfileOverrides(producerProfiles profile) { return Collections.emptyMap(); }
+
+    @Override
+    public int getStoreTimeout() { return 30; }
+
+    @Override
+    public Map<String, String> getConnections() { return Collections.emptyMap(); }
+
+    @Override
+    public List<String> getRoutes() { return Collections.emptyList(); }
+}
@@ -0,0 +1,115 @@
+package com.inductiveautomation.ignition.examples.kafka.benchmarks;
+
+import com.inductiveautomation.ignition.common.alarming.AlarmEvent;
+import com.inductiveautomation.ignition.common.alarming.EventData;
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+import com.inductiveautomation.ignition.examples.kafka.datasink.CachedTagPath;
+import com.inductiveautomation.ignition.examples.kafka.datasink.RouteTable;
+import com.inductiveautomation.ignition.examples.kafka.datasink.SinkEncoder;
+import com.inductiveautomation.ignition.examples.kafka.datasink.SinkEncoders;
+import com.inductiveautomation.ignition.examples.kafka.datasink.TagPathCache;
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode throughput of the tag history encoders, per value and per scan set batch, and of alarm events.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncoderBenchmark {
+
+    private static final String GATEWAY = "BENCHMARK-GW";
+
+    @Param({"Json", "Binary", "Columnar"})
+    public String encoder;
+
+    @Param({"500"})
+    public int tags;
+
+    private SinkEncoder sinkEncoder;
+    private List<CachedTagPath> paths;
+    private List<HistoricalTagValue> values;
+    private AlarmEvent alarm;
+    private EventData eventData;
+    private int next;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Size {
+        public long encodedBytes;
+        public long values;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            encodedBytes = 0;
+            values = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        sinkEncoder = SinkEncoders.get(KafkaSettingsRecord.encoders.valueOf(encoder));
+        TagPathCache cache = new TagPathCache(GATEWAY, RouteTable.compile(new BenchmarkSettings()));
+
+        List<TagPath> tagPaths = Fixtures.tagPaths(tags);
+        paths = new ArrayList<>(tags);
+        for (TagPath tagPath : tagPaths) {
+            paths.add(cache.get(Fixtures.PROVIDER, tagPath));
+        }
+        values = Fixtures.tagValues(tagPaths, 1, System.currentTimeMillis());
+
+        alarm = Fixtures.alarm(Fixtures.alarmSource(1), 3);
+        eventData = Fixtures.eventData(System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public byte[] tagValue(Size size) throws IOException {
+        int i = next;
+        next = i + 1 == tags ? 0 : i + 1;
+
+        byte[] bytes = sinkEncoder.encodeTagValue(paths.get(i), values.get(i));
+        size.encodedBytes += bytes.length;
+        size.values++;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] tagBatch(Size size) throws IOException {
+        byte[] bytes = sinkEncoder.encodeCachedTagBatch(GATEWAY, Fixtures.PROVIDER, paths, values);
+        size.encodedBytes += bytes.length;
+        size.values += tags;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] alarm(Size size) throws IOException {
+        byte[] bytes = sinkEncoder.encodeAlarm(GATEWAY, Fixtures.PROVIDER, Fixtures.alarmDisplayPath(1),
+                Fixtures.alarmDisplayPath(1), alarm, eventData);
+        size.encodedBytes += bytes.length;
+        size.values++;
+        return bytes;
+    }
+}
@@ -0,0 +1,207 @@
+package com.inductiveautomation.ignition.examples.kafka.benchmarks;
+
+import com.inductiveautomation.ignition.common.alarming.AlarmEvent;
+import com.inductiveautomation.ignition.common.alarming.EventData;
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+import com.inductiveautomation.ignition.gateway.history.sf.BasicDataTransaction;
+import com.inductiveautomation.ignition.gateway.sqltags.model.BasicScanclassHistorySet;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stand-in tag values, alarms and audit records, implemented as dynamic proxies of the Ignition interfaces.
+ */
+
+final class Fixtures {
+
+    static final String PROVIDER = "default";
+
+    private Fixtures() {
+    }
+
+    static TagPath tagPath(String provider, String path) {
+        String full = "[" + provider + "]" + path;
+        return proxy(TagPath.class, new HashMap<>(), full);
+    }
+
+    /** @param round changes the numeric values, so change-only filters see every round as new */
+    static HistoricalTagValue tagValue(TagPath source, int index, int round, long timestamp) {
+        Object value;
+        String type;
+        switch (index % 10) {
+            case 7:
+                value = (index + round) % 2 == 0;
+                type = "Boolean";
+                break;
+            case 8:
+                value = index + round;
+                type = "Integral";
+                break;
+            case 9:
+                value = "state-" + ((index + round) % 5);
+                type = "String";
+                break;
+            default:
+                value = index * 1.5 + round * 0.25;
+                type = "Float";
+        }
+
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("getSource", source);
+        answers.put("getValue", value);
+        answers.put("getQuality", QualityCode.Good);
+        answers.put("getTimestamp", new Date(timestamp));
+        answers.put("getTypeClass", type);
+        return proxy(HistoricalTagValue.class, answers, source + "=" + value);
+    }
+
+    /** Paths spread over folders the way a plant model is, e.g. Area3/Line12/Motor7/Speed */
+    static List<TagPath> tagPaths(int count) {
+        List<TagPath> paths = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            paths.add(tagPath(PROVIDER, "Area" + (i % 8) + "/Line" + (i % 40) + "/Motor" + i + "/Speed"));
+        }
+        return paths;
+    }
+
+    static List<HistoricalTagValue> tagValues(List<TagPath> paths, int round, long timestamp) {
+        List<HistoricalTagValue> values = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            values.add(tagValue(paths.get(i), i, round, timestamp + i));
+        }
+        return values;
+    }
+
+    static BasicDataTransaction transaction(List<HistoricalTagValue> values) {
+        BasicScanclassHistorySet scanset = new BasicScanclassHistorySet(PROVIDER, "Default", 1000);
+        scanset.addAll(values);
+
+        BasicDataTransaction transaction = new BasicDataTransaction();
+        transaction.addData(scanset);
+        return transaction;
+    }
+
+    static AlarmEvent alarm(String source, int priority) {
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("getId", UUID.nameUUIDFromBytes(source.getBytes()));
+        answers.put("getPriority", priority);
+        return proxy(AlarmEvent.class, answers, source);
+    }
+
+    static EventData eventData(long timestamp) {
+        return new EventData(timestamp);
+    }
+
+    /**
+     * Alarm filter settings with the given number of entries: mostly literal paths and "prefix.*" entries
+     * like users write them, and every fifth one a real regular expression.
+     */
+    static String[] alarmPatterns(int count) {
+        String[] patterns = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (i % 5 == 4) {
+                patterns[i] = ".*Area" + (i % 8) + "/Line" + i + "/Motor[0-9]+/.*";
+            } else if (i % 2 == 0) {
+                patterns[i] = "prov:" + PROVIDER + ":/tag:Area" + (i % 8) + "/Line" + i + ".*";
+            } else {
+                patterns[i] = "Area" + (i % 8) + "/Line" + i + "/Motor" + i + "/Fault";
+            }
+        }
+        return patterns;
+    }
+
+    static String alarmSource(int index) {
+        return "prov:" + PROVIDER + ":/tag:Area" + (index % 8) + "/Line" + index + "/Motor" + index + "/Fault:/alm:High";
+    }
+
+    static String alarmDisplayPath(int index) {
+        return "Area" + (index % 8) + "/Line" + index + "/Motor" + index + "/Fault";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Map<String, Object> answers, String description) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("toString")) {
+                return description;
+            }
+            if (name.equals("hashCode")) {
+                return description.hashCode();
+            }
+            if (name.equals("equals")) {
+                return args[0] != null && Proxy.isProxyClass(args[0].getClass())
+                        && description.equals(args[0].toString());
+            }
+            return answer(method.getReturnType(), answers.get(name));
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /** Enum answers are given by name or ordinal, so the fixtures compile against any SDK enum layout */
+    private static Object answer(Class<?> returnType, Object answer) {
+        if (returnType.isEnum()) {
+            Object[] constants = returnType.getEnumConstants();
+            if (answer instanceof Integer) {
+                return constants[Math.min((Integer) answer, constants.length - 1)];
+            }
+            for (Object constant : constants) {
+                if (((Enum<?>) constant).name().equals(answer)) {
+                    return constant;
+                }
+            }
+            return constants[0];
+        }
+        if (answer != null && box(returnType).isInstance(answer)) {
+            return answer;
+        }
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        if (returnType == double.class) {
+            return 0.0;
+        }
+        if (returnType == float.class) {
+            return 0f;
+        }
+        if (returnType == short.class) {
+            return (short) 0;
+        }
+        if (returnType == byte.class) {
+            return (byte) 0;
+        }
+        if (returnType == char.class) {
+            return (char) 0;
+        }
+        return null;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == boolean.class) return Boolean.class;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        if (type == char.class) return Character.class;
+        return Void.class;
+    }
+}
@@ -0,0 +1,58 @@
+package com.inductiveautomation.ignition.examples.kafka.benchmarks;
+
+import com.inductiveautomation.ignition.examples.kafka.datasink.MessageStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageStats updates per acknowledged record, alone and on 8 threads while the status snapshot reads.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class MessageStatsBenchmark {
+
+    private final MessageStats stats = new MessageStats("benchmark");
+
+    @Benchmark
+    @Group("uncontended")
+    public void record() {
+        recordOne();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(8)
+    public void contendedRecord() {
+        recordOne();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public double contendedRead() {
+        return stats.getMessageRate(1) + stats.getAckLatencyMillis(99);
+    }
+
+    private void recordOne() {
+        stats.addOneInFlight();
+        stats.recordAckLatency(1_500_000);
+        stats.addOneSuccessCount();
+        stats.removeOneInFlight();
+    }
+}
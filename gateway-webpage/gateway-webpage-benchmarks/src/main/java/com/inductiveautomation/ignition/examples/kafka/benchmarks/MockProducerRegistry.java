@@ -0,0 +1,38 @@
+package com.inductiveautomation.ignition.examples.kafka.benchmarks;
+
+import com.inductiveautomation.ignition.examples.kafka.datasink.ProducerRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+
+import java.util.Properties;
+
+/**
+ * Producer registry handing out MockProducers that acknowledge every record as soon as it is sent.
+ */
+
+class MockProducerRegistry extends ProducerRegistry {
+
+    private MockProducer<byte[], byte[]> last;
+
+    MockProducerRegistry() {
+        super(null);
+    }
+
+    @Override
+    protected Producer<byte[], byte[]> createProducer(Properties props) {
+        last = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+        return last;
+    }
+
+    /** Records sent since the last clear, copies the history so only use it outside the measured code */
+    int sent() {
+        return last == null ? 0 : last.history().size();
+    }
+
+    void clear() {
+        if (last != null) {
+            last.clear();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.inductiveautomation.ignition.examples.kafka.benchmarks;
+
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+import com.inductiveautomation.ignition.examples.kafka.datasink.RouteTable;
+import com.inductiveautomation.ignition.examples.kafka.datasink.TagSink;
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import com.inductiveautomation.ignition.gateway.history.sf.BasicDataTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TagSink.storeData from the history transaction to the acknowledged records, against a MockProducer.
+ */
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StoreDataBenchmark {
+
+    private static final int ROUNDS = 16;
+
+    @Param({"Json", "Binary", "Columnar"})
+    public String encoder;
+
+    @Param({"Individual", "Batched"})
+    public String mode;
+
+    @Param({"Off", "ChangeOnly"})
+    public String filter;
+
+    @Param({"500"})
+    public int tags;
+
+    private MockProducerRegistry producers;
+    private TagSink sink;
+    private BasicDataTransaction[] transactions;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkSettings settings = new BenchmarkSettings();
+        settings.encoder = KafkaSettingsRecord.encoders.valueOf(encoder);
+        settings.mode = KafkaSettingsRecord.tagHistoryModes.valueOf(mode);
+        settings.filter = KafkaSettingsRecord.tagFilters.valueOf(filter);
+
+        producers = new MockProducerRegistry();
+        sink = new TagSink("kafka-tag-history", settings, producers, RouteTable.compile(settings));
+
+        List<TagPath> paths = Fixtures.tagPaths(tags);
+        long start = System.currentTimeMillis();
+        transactions = new BasicDataTransaction[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            transactions[round] = Fixtures.transaction(Fixtures.tagValues(paths, round, start + round * 1000L));
+        }
+
+        // fail fast if the fixtures stop producing records, the numbers would look great and mean nothing
+        sink.storeData(transactions[0]);
+        if (producers.sent() == 0) {
+            throw new IllegalStateException("storeData sent no records");
+        }
+        producers.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        sink.closeProducer();
+    }
+
+    @Benchmark
+    public void storeData() throws IOException {
+        int i = next;
+        next = i + 1 == ROUNDS ? 0 : i + 1;
+
+        sink.storeData(transactions[i]);
+        producers.clear();
+    }
+}
@@ -12,6 +12,7 @@ import com.inductiveautomation.ignition.examples.kafka.records.AuditLogSFSetting
 import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
 import com.inductiveautomation.ignition.examples.kafka.web.KafkaSettingsPage;
 import com.inductiveautomation.ignition.examples.kafka.web.KafkaStatusRoutes;
+import com.inductiveautomation.ignition.examples.kafka.web.StatusCache;
 import com.inductiveautomation.ignition.gateway.alarming.AlarmManager;
 import com.inductiveautomation.ignition.gateway.dataroutes.RouteGroup;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.IRecordListener;
@@ -40,6 +41,7 @@ public class GatewayHook extends AbstractGatewayModuleHook {
 
     private final LoggerEx log = LogUtil.getLogger(getClass().getSimpleName());
     private final GatewayScriptModule scriptModule = new GatewayScriptModule();
+    private final StatusCache statusCache = new StatusCache(scriptModule);
 
     private AlarmListener alarmListener;
     private QualifiedPath alarmFilter;
@@ -111,11 +113,14 @@ public class GatewayHook extends AbstractGatewayModuleHook {
         KafkaSettingsRecord.META.addRecordListener(new IRecordListener<KafkaSettingsRecord>() {
             @Override
             public void recordUpdated(KafkaSettingsRecord newConfig) {
-                shutdown();
-                scriptModule.initializeDataSinks(newConfig);
+                // only what changed is rebuilt, the bundle and the alarm listener stay in place
+                SettingsDiff diff = scriptModule.reconfigure(newConfig);
                 context.getLocalPersistenceInterface().save(newConfig);
-                setupAlarmManager(newConfig);
-                log.info("Kafka producer is reinitialized with new broker(s).");
+                if (diff.has("AlarmsEnabled")) {
+                    context.getAlarmManager().removeListener(alarmFilter, alarmListener);
+                    setupAlarmManager(newConfig);
+                }
+                log.info("Kafka settings applied, changed: " + diff);
             }
 
             @Override
@@ -144,17 +149,17 @@ public class GatewayHook extends AbstractGatewayModuleHook {
         alarmListener = new AlarmListener() {
             @Override
             public void onActive(AlarmEvent alarmEvent) {
-                scriptModule.sendEquipmentAlarm(alarmEvent, alarmEvent.getActiveData(), config);
+                scriptModule.sendEquipmentAlarm(alarmEvent, alarmEvent.getActiveData());
             }
 
             @Override
             public void onClear(AlarmEvent alarmEvent) {
-                scriptModule.sendEquipmentAlarm(alarmEvent, alarmEvent.getClearedData(), config);
+                scriptModule.sendEquipmentAlarm(alarmEvent, alarmEvent.getClearedData());
             }
 
             @Override
             public void onAcknowledge(AlarmEvent alarmEvent) {
-                scriptModule.sendEquipmentAlarm(alarmEvent, alarmEvent.getAckData(), config);
+                scriptModule.sendEquipmentAlarm(alarmEvent, alarmEvent.getAckData());
             }
         };
 
@@ -204,12 +209,14 @@ public class GatewayHook extends AbstractGatewayModuleHook {
 
     @Override
     public void startup(LicenseState licenseState) {
+        statusCache.start(context.getExecutionManager());
 
         log.info("kafka module starting...");
     }
 
     @Override
     public void shutdown() {
+        statusCache.stop(context.getExecutionManager());
         scriptModule.shutDownSinks();
         this.context.getAlarmManager().removeListener(this.alarmFilter, alarmListener);
         BundleUtil.get().removeBundle("kafka");
@@ -238,7 +245,7 @@ public class GatewayHook extends AbstractGatewayModuleHook {
     // Define your route handlers here
     @Override
     public void mountRouteHandlers(RouteGroup routes) {
-        new KafkaStatusRoutes(this.scriptModule.getDataSinks(), routes).mountRoutes();
+        new KafkaStatusRoutes(this.scriptModule, this.statusCache, routes).mountRoutes();
     }
 
     @Override
@@ -2,23 +2,35 @@ package com.inductiveautomation.ignition.examples.kafka;
 
 import com.inductiveautomation.ignition.common.alarming.AlarmEvent;
 import com.inductiveautomation.ignition.common.alarming.EventData;
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import com.inductiveautomation.ignition.common.tags.model.SecurityContext;
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+import com.inductiveautomation.ignition.common.tags.model.TagProvider;
+import com.inductiveautomation.ignition.examples.kafka.alarms.AlarmFilterEngine;
+import com.inductiveautomation.ignition.examples.kafka.auditlogsf.AuditLogSF;
+import com.inductiveautomation.ignition.examples.kafka.commands.CommandConsumer;
 import com.inductiveautomation.ignition.examples.kafka.datasink.*;
 import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
 import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
 import com.inductiveautomation.ignition.gateway.history.HistoryManager;
 import com.inductiveautomation.ignition.gateway.model.GatewayContext;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Written By: Nick Robinson
@@ -26,6 +38,8 @@ import java.util.Map;
  * Content:
  *      Setup and removal of sinks
  *      Actions for sending alarm and audit data to Kafka
+ *      One extra sink per named connection, for the records the routing rules send there
+ *      Consumer of the command topic, writing tags back into Ignition
  */
 
 public class GatewayScriptModule {
@@ -33,18 +47,49 @@ public class GatewayScriptModule {
     private final Logger logger = LoggerFactory.getLogger("Kafka." + getClass().getSimpleName());
 
     private HistoryManager historyManager;
-    private KafkaSink alarmSink, auditSink, tagSink;
+    private KafkaSink alarmSink, auditSink;
+    private TagSink tagSink;
     private GatewayContext context;
+    private ProducerRegistry producers;
     private KafkaSettingsRecord kafkaConfig;
-    private Map<String, BaseSink> dataSinksMap = new HashMap<>();
+    private Map<String, BaseSink> dataSinksMap = new ConcurrentHashMap<>();
+    private final List<String> routeSinkNames = new ArrayList<>();
+    private String appliedSettings;
+    private Map<String, AuditLogSF> auditLogs = new ConcurrentHashMap<>();
+
+    // settings keys, see SettingsDiff, grouped by what has to be rebuilt when they change
+    private static final Set<String> REINITIALIZE = new HashSet<>(Arrays.asList(
+            "Enabled", "Brokers", "UseSSL", "ProducerOverrides", "LowLatencyOverrides", "BalancedOverrides",
+            "MaxThroughputOverrides", "BalancedPartitioner"));
+    private static final Set<String> TAG_SINK = new HashSet<>(Arrays.asList(
+            "TagHistoryTopic", "TagHistoryMode", "TagBatchSize", "TagHistoryEncoder", "TagHistoryProfile",
+            "TagHistoryKey", "TagAggregation", "TagAggregationWindow", "TagAggregationTopic", "StoreTimeout",
+            "Connections", "Routes"));
+    private static final Set<String> TAG_FILTER = new HashSet<>(Arrays.asList(
+            "TagFilter", "TagDeadband", "TagHeartbeat"));
+    private static final Set<String> ALARM_SINK = new HashSet<>(Arrays.asList(
+            "AlarmsProfile", "StoreTimeout", "SpillEnabled", "SpillQuota", "SpillSegmentSize"));
+    private static final Set<String> AUDIT_SINK = new HashSet<>(Arrays.asList(
+            "AuditProfile", "StoreTimeout", "SpillEnabled", "SpillQuota", "SpillSegmentSize"));
+    private static final Set<String> ROUTE_SINKS = new HashSet<>(Arrays.asList(
+            "TagHistoryProfile", "StoreTimeout", "SpillEnabled", "SpillQuota", "SpillSegmentSize"));
+    private static final Set<String> DISPATCH_QUEUES = new HashSet<>(Arrays.asList(
+            "DispatchQueueSize", "DispatchOverflow"));
+    private static final Set<String> COMMANDS = new HashSet<>(Arrays.asList(
+            "CommandsEnabled", "CommandTopic", "CommandGroup", "CommandBatchSize", "CommandAllowList"));
 
-    private final String alarmSignature = "kafka-alarm";
-    private final String auditSignature = "kafka-audit";
     private final String alarmSinkName = "kafka-alarm-events";
     private final String auditSinkName = "kafka-audit-events";
     private final String tagSinkName = "kafka-tag-history";
     private  String alarmTopic;
     private  String auditTopic;
+    private SinkEncoder alarmEncoder, auditEncoder;
+    private RecordKeys alarmKeys;
+    private AlarmFilterEngine alarmFilter;
+    private RouteTable routes;
+    private volatile DispatchQueue<PendingAlarm> alarmQueue;
+    private volatile DispatchQueue<AuditRecord> auditQueue;
+    private volatile CommandConsumer commandConsumer;
     private String hostName;
 
     public GatewayScriptModule() {
@@ -53,39 +98,92 @@ public class GatewayScriptModule {
     public void setGatewayContext(GatewayContext ctx) {
         this.context = ctx;
         this.historyManager = ctx.getHistoryManager();
+        this.producers = new ProducerRegistry(ctx);
+    }
+
+    /** @return null until the sinks were first initialized */
+    public KafkaSettingsRecord getSettings() {
+        return this.kafkaConfig;
     }
 
     public Collection<BaseSink> getDataSinks() {
         return this.dataSinksMap.values();
     }
 
+    public List<DispatchQueue<?>> getDispatchQueues() {
+        List<DispatchQueue<?>> queues = new ArrayList<>();
+        if (alarmQueue != null) queues.add(alarmQueue);
+        if (auditQueue != null) queues.add(auditQueue);
+        return queues;
+    }
+
+    /** Audit log profiles register here so the status page can show their buffer and retention stats */
+    public void registerAuditLog(String profileName, AuditLogSF auditLog) {
+        auditLogs.put(profileName, auditLog);
+    }
+
+    public void unregisterAuditLog(String profileName, AuditLogSF auditLog) {
+        auditLogs.remove(profileName, auditLog);
+    }
+
+    /** @return null when tag write-back is off */
+    public CommandConsumer getCommandConsumer() {
+        return this.commandConsumer;
+    }
+
+    public Collection<AuditLogSF> getAuditLogs() {
+        return auditLogs.values();
+    }
+
     public void shutDownSinks() {
+        stopCommandConsumer();
+        stopDispatchQueues();
         dataSinkOperation(SinkOps.Unregister);
         dataSinksMap.clear();
+        routeSinkNames.clear();
     }
 
-    public void initializeDataSinks(KafkaSettingsRecord kafkaSettings) {
-        this.kafkaConfig = kafkaSettings;
-
-        // topics can be changed from the gateway UI
-        this.alarmTopic = kafkaSettings.getAlarmsTopic();
-        this.auditTopic = kafkaSettings.getAuditTopic();
-
+    public synchronized void initializeDataSinks(KafkaSettingsRecord kafkaSettings) {
+        // queued events drain with the settings they were queued under
         shutDownSinks();
 
-        if (kafkaSettings.getEnabled()) {
-            this.tagSink = new TagSink(tagSinkName, kafkaSettings);
-            this.alarmSink = new KafkaSink(alarmSinkName, kafkaSettings);
-            this.auditSink = new KafkaSink(auditSinkName, kafkaSettings);
+        this.kafkaConfig = kafkaSettings;
+        this.appliedSettings = kafkaSettings.getSettingsRecord();
+        applyStreamSettings(kafkaSettings);
+        RouteTable routeTable = RouteTable.compile(kafkaSettings);
 
-            this.alarmSink.addStats(alarmSinkName);
-            this.auditSink.addStats(auditSinkName);
+        if (kafkaSettings.getEnabled()) {
+            // sinks with the same connection settings share one producer, stats stay per sink
+            this.tagSink = createTagSink(kafkaSettings, routeTable);
+            this.alarmSink = createSink(alarmSinkName, kafkaSettings, kafkaSettings.getAlarmsProfile(),
+                    kafkaSettings.getBrokerList());
+            this.auditSink = createSink(auditSinkName, kafkaSettings, kafkaSettings.getAuditProfile(),
+                    kafkaSettings.getBrokerList());
 
             this.dataSinksMap.put(tagSinkName, tagSink);
             this.dataSinksMap.put(alarmSinkName, alarmSink);
             this.dataSinksMap.put(auditSinkName, auditSink);
 
+            for (Map.Entry<String, String> connection : routeTable.getConnections().entrySet()) {
+                KafkaSink routeSink = createRouteSink(connection.getKey(), connection.getValue(), kafkaSettings);
+                this.dataSinksMap.put(routeSink.getPipelineName(), routeSink);
+                this.routeSinkNames.add(routeSink.getPipelineName());
+            }
+
+            if (kafkaSettings.getSpillEnabled()) {
+                enableSpill(alarmSink, kafkaSettings);
+                enableSpill(auditSink, kafkaSettings);
+                for (String routeSinkName : routeSinkNames) {
+                    enableSpill((KafkaSink) dataSinksMap.get(routeSinkName), kafkaSettings);
+                }
+            }
+
             dataSinkOperation(SinkOps.Register);
+            this.routes = routeTable;
+            tagSink.startAggregation(this.context.getExecutionManager());
+            startDispatchQueues(kafkaSettings);
+        } else {
+            this.routes = routeTable;
         }
 
         String method = null;
@@ -103,6 +201,230 @@ public class GatewayScriptModule {
         } catch (UnknownHostException e) {
             this.hostName = this.context.getSystemProperties().getSystemName();
         }
+
+        if (kafkaSettings.getEnabled()) {
+            startCommandConsumer(kafkaSettings);
+        }
+    }
+
+    /**
+     * Applies changed settings without tearing everything down. Only the sinks whose settings changed are
+     * rebuilt, the rest keep running, and topics, encoders, keys and filters of alarms and audit are swapped
+     * in place. Changing the default connection itself, or enabling/disabling the module, still reinitializes.
+     *
+     * @return what changed, so the caller can update the alarm listener
+     */
+    public synchronized SettingsDiff reconfigure(KafkaSettingsRecord kafkaSettings) {
+        SettingsDiff diff = SettingsDiff.between(this.appliedSettings, kafkaSettings.getSettingsRecord());
+        if (diff.isEmpty()) {
+            return diff;
+        }
+        if (!kafkaSettings.getEnabled() || diff.any(REINITIALIZE)) {
+            initializeDataSinks(kafkaSettings);
+            return diff;
+        }
+
+        this.kafkaConfig = kafkaSettings;
+        this.appliedSettings = kafkaSettings.getSettingsRecord();
+        applyStreamSettings(kafkaSettings);
+        RouteTable routeTable = RouteTable.compile(kafkaSettings);
+
+        // alarms resolve their route as they are dispatched, the sinks of new connections must exist first
+        if (diff.any(ROUTE_SINKS) || diff.has("Connections")) {
+            replaceRouteSinks(kafkaSettings, routeTable, diff.any(ROUTE_SINKS));
+        }
+        if (diff.any(TAG_SINK)) {
+            TagSink replacement = createTagSink(kafkaSettings, routeTable);
+            replacement.adoptAggregation(this.tagSink);
+            replaceSink(tagSinkName, replacement, kafkaSettings);
+            this.tagSink = replacement;
+            replacement.startAggregation(this.context.getExecutionManager());
+        } else if (diff.any(TAG_FILTER)) {
+            tagSink.updateFilter(kafkaSettings);
+        }
+        this.routes = routeTable;
+
+        if (diff.any(ALARM_SINK)) {
+            KafkaSink replacement = createSink(alarmSinkName, kafkaSettings, kafkaSettings.getAlarmsProfile(),
+                    kafkaSettings.getBrokerList());
+            replaceSink(alarmSinkName, replacement, kafkaSettings);
+            this.alarmSink = replacement;
+        }
+        if (diff.any(AUDIT_SINK)) {
+            KafkaSink replacement = createSink(auditSinkName, kafkaSettings, kafkaSettings.getAuditProfile(),
+                    kafkaSettings.getBrokerList());
+            replaceSink(auditSinkName, replacement, kafkaSettings);
+            this.auditSink = replacement;
+        }
+        if (diff.any(DISPATCH_QUEUES)) {
+            restartDispatchQueues(kafkaSettings);
+        }
+        if (diff.any(COMMANDS)) {
+            stopCommandConsumer();
+            startCommandConsumer(kafkaSettings);
+        }
+        return diff;
+    }
+
+    /** Topics, encoders, keys and filters used when alarm and audit events are dispatched */
+    private void applyStreamSettings(KafkaSettingsRecord kafkaSettings) {
+        // topics can be changed from the gateway UI
+        this.alarmTopic = kafkaSettings.getAlarmsTopic();
+        this.auditTopic = kafkaSettings.getAuditTopic();
+        this.alarmEncoder = SinkEncoders.get(kafkaSettings.getAlarmsEncoder());
+        this.auditEncoder = SinkEncoders.get(kafkaSettings.getAuditEncoder());
+        this.alarmKeys = new RecordKeys(kafkaSettings.getAlarmsKey());
+        this.alarmFilter = new AlarmFilterEngine(kafkaSettings);
+    }
+
+    private TagSink createTagSink(KafkaSettingsRecord kafkaSettings, RouteTable routeTable) {
+        TagSink sink = new TagSink(tagSinkName, kafkaSettings, producers, routeTable);
+        sink.setForwarder(this::forwardRouted);
+        return sink;
+    }
+
+    private KafkaSink createSink(String sinkName, KafkaSettingsRecord kafkaSettings,
+                                 KafkaSettingsRecord.producerProfiles profile, String brokerList) {
+        KafkaSink sink = new KafkaSink(sinkName, kafkaSettings, producers, profile, brokerList);
+        sink.addStats(sinkName);
+        return sink;
+    }
+
+    /** Route sinks carry tag history and alarms, they use the tag history profile */
+    private KafkaSink createRouteSink(String connection, String brokerList, KafkaSettingsRecord kafkaSettings) {
+        return createSink(RouteTable.sinkName(connection), kafkaSettings, kafkaSettings.getTagHistoryProfile(),
+                brokerList);
+    }
+
+    /**
+     * Swaps a sink for a rebuilt one. The replacement acquires its producer before the old sink releases
+     * its own, so a producer whose settings didn't change is reused without reconnecting, and one that did
+     * is only closed once its in-flight records are sent. The old sink's store and forward data stays queued
+     * for the replacement, which has the same name.
+     */
+    private void replaceSink(String sinkName, KafkaSink replacement, KafkaSettingsRecord kafkaSettings) {
+        BaseSink previous = this.dataSinksMap.put(sinkName, replacement);
+        if (previous != null) {
+            this.historyManager.unregisterSink(previous, false);
+            previous.closeProducer();
+        }
+
+        // the spill log directory is free once the old sink closed it
+        if (kafkaSettings.getSpillEnabled() && !(replacement instanceof TagSink)) {
+            enableSpill(replacement, kafkaSettings);
+        }
+        this.historyManager.registerSink(replacement);
+        logger.info("Rebuilt sink " + sinkName);
+    }
+
+    /** Rebuilds the route sinks of added connections and of connections whose brokers changed, or all of them */
+    private void replaceRouteSinks(KafkaSettingsRecord kafkaSettings, RouteTable routeTable, boolean all) {
+        Map<String, String> connections = routeTable.getConnections();
+        List<String> names = new ArrayList<>();
+
+        for (Map.Entry<String, String> connection : connections.entrySet()) {
+            String sinkName = RouteTable.sinkName(connection.getKey());
+            names.add(sinkName);
+
+            BaseSink current = this.dataSinksMap.get(sinkName);
+            if (all || current == null || !connection.getValue().equals(current.getBrokerEndpoints())) {
+                replaceSink(sinkName, createRouteSink(connection.getKey(), connection.getValue(), kafkaSettings),
+                        kafkaSettings);
+            }
+        }
+
+        for (String sinkName : routeSinkNames) {
+            if (!names.contains(sinkName)) {
+                BaseSink removed = this.dataSinksMap.remove(sinkName);
+                if (removed != null) {
+                    this.historyManager.unregisterSink(removed, false);
+                    removed.closeProducer();
+                    logger.info("Removed sink " + sinkName);
+                }
+            }
+        }
+        this.routeSinkNames.clear();
+        this.routeSinkNames.addAll(names);
+    }
+
+    /** Spill logs live under the gateway data directory, one per sink, and survive restarts */
+    private void enableSpill(KafkaSink sink, KafkaSettingsRecord kafkaSettings) {
+        File dir = new File(this.context.getSystemManager().getDataDir(),
+                "kafka-spill" + File.separator + sink.getPipelineName());
+        try {
+            sink.enableSpill(new SpillLog(sink.getPipelineName(), dir,
+                    kafkaSettings.getSpillSegmentSize() * 1024 * 1024,
+                    kafkaSettings.getSpillQuota() * 1024L * 1024L),
+                    this.context.createExecutionManager("kafka-spill-" + sink.getPipelineName(), 1));
+        } catch (IOException e) {
+            logger.error("Unable to open spill log in " + dir + ": " + e);
+        }
+    }
+
+    /** Alarm and audit events are encoded and sent from these queues, off the alarm manager and auditing threads */
+    private void startDispatchQueues(KafkaSettingsRecord kafkaSettings) {
+        int capacity = kafkaSettings.getDispatchQueueSize();
+        KafkaSettingsRecord.overflowPolicies policy = kafkaSettings.getDispatchOverflow();
+
+        this.alarmQueue = new DispatchQueue<>(alarmSinkName, capacity, policy,
+                this::dispatchAlarms,
+                alarm -> dispatchAlarm(alarm, true));
+        this.auditQueue = new DispatchQueue<>(auditSinkName, capacity, policy,
+                this::dispatchAudits,
+                record -> dispatchAudit(record, true));
+
+        this.alarmQueue.start(this.context.createExecutionManager("kafka-dispatch-" + alarmSinkName, 1));
+        this.auditQueue.start(this.context.createExecutionManager("kafka-dispatch-" + auditSinkName, 1));
+    }
+
+    /** The new queues take events before the old ones drain theirs, so none are dispatched directly meanwhile */
+    private void restartDispatchQueues(KafkaSettingsRecord kafkaSettings) {
+        DispatchQueue<PendingAlarm> alarms = this.alarmQueue;
+        DispatchQueue<AuditRecord> audits = this.auditQueue;
+        startDispatchQueues(kafkaSettings);
+
+        if (alarms != null) alarms.stop();
+        if (audits != null) audits.stop();
+    }
+
+    private void startCommandConsumer(KafkaSettingsRecord kafkaSettings) {
+        if (kafkaSettings.getCommandsEnabled()) {
+            this.commandConsumer = new CommandConsumer(kafkaSettings, this.hostName, this::writeTags,
+                    producers::addSSLProps);
+            this.commandConsumer.start(this.context.createExecutionManager("kafka-commands", 1));
+        }
+    }
+
+    private void stopCommandConsumer() {
+        CommandConsumer consumer = this.commandConsumer;
+        this.commandConsumer = null;
+        if (consumer != null) {
+            consumer.stop();
+        }
+    }
+
+    /**
+     * One write per provider for the command consumer, the provider applies them in order. The consumer only
+     * passes tags on its allow list; the write itself runs without a user, so the allow list is what limits it.
+     */
+    private CompletableFuture<List<QualityCode>> writeTags(String provider, List<TagPath> paths, List<Object> values) {
+        TagProvider tagProvider = this.context.getTagManager().getTagProvider(provider);
+        if (tagProvider == null) {
+            CompletableFuture<List<QualityCode>> missing = new CompletableFuture<>();
+            missing.completeExceptionally(new IOException("No tag provider named " + provider));
+            return missing;
+        }
+        return tagProvider.writeAsync(paths, values, SecurityContext.emptyContext());
+    }
+
+    private void stopDispatchQueues() {
+        DispatchQueue<PendingAlarm> alarms = this.alarmQueue;
+        DispatchQueue<AuditRecord> audits = this.auditQueue;
+        this.alarmQueue = null;
+        this.auditQueue = null;
+
+        if (alarms != null) alarms.stop();
+        if (audits != null) audits.stop();
     }
 
     private void dataSinkOperation(SinkOps op) {
@@ -113,9 +435,10 @@ public class GatewayScriptModule {
         }
 
         if (op == SinkOps.Unregister) {
+            // store and forward data stays queued for the sinks of the same name that are registered next
             for (BaseSink sink : this.dataSinksMap.values()) {
+                this.historyManager.unregisterSink(sink, false);
                 sink.closeProducer();
-                this.historyManager.unregisterSink(sink, true);
             }
         }
     }
@@ -124,14 +447,23 @@ public class GatewayScriptModule {
         try {
             this.historyManager.storeHistory(sinkName, data);
         } catch (Exception e) {
-            logger.error("Error sending data with history manager: " + e.getCause().toString());
+            logger.error("Error sending data with history manager: " + e);
         }
         return 0;
     }
 
+    /** Tag history routed to another connection goes into the store and forward queue of that connection's sink */
+    private void forwardRouted(String sinkName, SinkData data) throws IOException {
+        try {
+            this.historyManager.storeHistory(sinkName, data);
+        } catch (Exception e) {
+            throw new IOException("Unable to hand record to " + sinkName, e);
+        }
+    }
+
     public int sendWithProducer(String sinkName, SinkData data) throws IOException {
         BaseSink sink = this.dataSinksMap.get(sinkName);
-        sink.sendPipelineDataWithProducer(data);
+        sink.sendDirectWithProducer(data);
         sink.setLastMessageTime(data.getSignature());
         return 0;
     }
@@ -141,74 +473,127 @@ public class GatewayScriptModule {
         return 2;
     }
 
-    private Boolean nullOrMatchOne(String[] group, String one) {
-        return group == null || Arrays.asList(group).stream().anyMatch(i -> one.matches(i.trim()));
-    }
-
-    public void sendEquipmentAlarm(AlarmEvent alarm, EventData data, KafkaSettingsRecord kafkaSettings) {
-
-        int minimumPriority = kafkaSettings.getAlarmPriorityInt();
-        Boolean hasPriority = alarm.getPriority().ordinal() >= minimumPriority;
+    public void sendEquipmentAlarm(AlarmEvent alarm, EventData data) {
         String src = String.valueOf(alarm.getSource()), path = String.valueOf(alarm.getDisplayPath());
-        String[] srcFilter = kafkaSettings.getSource(), pathFilter = kafkaSettings.getDispPath(), srcPathFilter = kafkaSettings.getSrcPath();
-        Boolean isSource = nullOrMatchOne(srcFilter, src);
-        Boolean isPath = nullOrMatchOne(pathFilter, path);
-        Boolean isPathOrSource = nullOrMatchOne(srcPathFilter, path) || nullOrMatchOne(srcPathFilter, src);
 
-        String provider = src.split(":")[1];
-        String tagPath = src.split("tag:")[1];
+        if (alarmFilter.accepts(alarm.getPriority().ordinal(), src, path)) {
+            PendingAlarm pending = new PendingAlarm(alarm, data, src, path);
+            DispatchQueue<PendingAlarm> queue = this.alarmQueue;
 
-        if (hasPriority && isSource && isPath & isPathOrSource) {
-            try {
-                String json = new JSONObject()
-                        .put("uuid", alarm.getId().toString())
-                        .put("gatewayName", this.hostName)
-                        .put("provider", provider)
-                        .put("tagPath", tagPath)
-                        .put("displayPath", path)
-                        .put("priority", alarm.getPriority().ordinal())
-                        .put("eventType", alarm.getState().ordinal())
-                        .put("eventData", String.valueOf(data.getRawValueMap()))
-                        .put("eventFlags", alarm.getLastEventState().ordinal())
-                        .put("epochms", data.getTimestamp())
-                        .toString();
-                SinkData toSend = new SinkData(alarmTopic, json, alarmSinkName);
-                sendKafkaData(toSend, false);
-            } catch (JSONException e) {
-                logger.error("Error sending alarm data: " + e.getCause());
-                this.alarmSink.addOneFailedCount(alarmSignature);
+            if (queue == null || !queue.offer(pending)) {
+                dispatchAlarm(pending, false);
             }
         }
     }
 
     public void sendAuditData(AuditRecord record) {
         if (kafkaConfig.getAuditEnabled()) {
-            long epochms = record.getTimestamp().getTime();
-            try {
-                String json = new JSONObject()
-                        .put("epochms", epochms)
-                        .put("originatingSystem", record.getOriginatingSystem())
-                        .put("originatingContext", record.getOriginatingContext())
-                        .put("actor", record.getActor())
-                        .put("actorHost", record.getActorHost())
-                        .put("action", record.getAction())
-                        .put("actionTarget", record.getActionTarget())
-                        .put("actionValue", record.getActionValue())
-                        .put("statusCode", record.getStatusCode())
-                        .toString();
-                SinkData toSend = new SinkData(auditTopic, json, auditSinkName);
-                sendKafkaData(toSend, true);
-            } catch (JSONException e) {
-                logger.error("Error sending audit record: " + e.getCause());
-                this.auditSink.addOneFailedCount(auditSignature);
+            DispatchQueue<AuditRecord> queue = this.auditQueue;
+
+            if (queue == null || !queue.offer(record)) {
+                dispatchAudit(record, false);
             }
         }
     }
 
-    private void sendKafkaData(SinkData data, Boolean isAudit) {
+    /** @return false when the alarm couldn't be encoded or handed to Kafka, it is counted as failed */
+    private boolean dispatchAlarm(PendingAlarm pending, boolean spill) {
+        SinkData toSend = encodeAlarm(pending);
+        if (toSend == null) {
+            return false;
+        }
+        if (spill) {
+            return storeWithHistoryManager(toSend);
+        }
+        return sendKafkaData(toSend, toSend.getSignature());
+    }
 
-        String sink = isAudit ? auditSinkName : alarmSinkName;
+    /** A batch drained from the alarm queue, sent with one call per sink */
+    private int dispatchAlarms(List<PendingAlarm> batch) {
+        List<SinkData> records = new ArrayList<>(batch.size());
+        for (PendingAlarm pending : batch) {
+            SinkData toSend = encodeAlarm(pending);
+            if (toSend != null) {
+                records.add(toSend);
+            }
+        }
+        return sendKafkaData(records);
+    }
+
+    /** @return null when the alarm couldn't be encoded, it is counted as failed */
+    private SinkData encodeAlarm(PendingAlarm pending) {
+        String provider = AlarmFilterEngine.getProvider(pending.source);
+        String tagPath = AlarmFilterEngine.getTagPath(pending.source);
 
+        try {
+            byte[] bytes = alarmEncoder.encodeAlarm(this.hostName, provider, tagPath, pending.displayPath,
+                    pending.alarm, pending.data);
+            byte[] key = alarmKeys.alarmKey(pending.alarm.getId().toString(), provider, tagPath);
+
+            Route route = routes.resolveAlarm(pending.alarm.getPriority().ordinal());
+            String sinkName = route == null || route.isDefaultConnection() ? alarmSinkName : route.getSinkName();
+            String topic = route == null ? alarmTopic : route.topicOr(alarmTopic);
+
+            return new SinkData(topic, key, bytes, sinkName);
+        } catch (Exception e) {
+            logger.error("Error encoding alarm data: " + e);
+            addOneFailedCount(alarmSinkName);
+            return null;
+        }
+    }
+
+    private boolean dispatchAudit(AuditRecord record, boolean spill) {
+        SinkData toSend = encodeAudit(record);
+        if (toSend == null) {
+            return false;
+        }
+        if (spill) {
+            return storeWithHistoryManager(toSend);
+        }
+        return sendKafkaData(toSend, auditSinkName);
+    }
+
+    private int dispatchAudits(List<AuditRecord> batch) {
+        List<SinkData> records = new ArrayList<>(batch.size());
+        for (AuditRecord record : batch) {
+            SinkData toSend = encodeAudit(record);
+            if (toSend != null) {
+                records.add(toSend);
+            }
+        }
+        return sendKafkaData(records);
+    }
+
+    private SinkData encodeAudit(AuditRecord record) {
+        try {
+            return new SinkData(auditTopic, auditEncoder.encodeAudit(record), auditSinkName);
+        } catch (Exception e) {
+            logger.error("Error encoding audit record: " + e);
+            addOneFailedCount(auditSinkName);
+            return null;
+        }
+    }
+
+    private boolean storeWithHistoryManager(SinkData data) {
+        try {
+            sendWithHistoryManager(data.getSignature(), data);
+            return true;
+        } catch (Exception e) {
+            logger.error("Error sending data with history manager: " + e);
+            addOneFailedCount(data.getSignature());
+            return false;
+        }
+    }
+
+    /** The sink may already be gone while the module is reconfigured */
+    private void addOneFailedCount(String sinkName) {
+        BaseSink target = this.dataSinksMap.get(sinkName);
+        if (target != null) {
+            target.addOneFailedCount(sinkName);
+        }
+    }
+
+    private boolean sendKafkaData(SinkData data, String sink) {
         try {
             logger.debug("Sending data to Kafka: " + data.toString());
 
@@ -220,15 +605,71 @@ public class GatewayScriptModule {
                 }
             } else {
                 doNothing(sink, data);
+                return false;
             }
+            return true;
         } catch (Exception e) {
             logger.error(String.format("Can't send data (%s) due to error: %s", data.toString(), e));
 
-            if (isAudit) {
-                this.auditSink.addOneFailedCount(data.getSignature());
-            } else {
-                this.alarmSink.addOneFailedCount(data.getSignature());
+            BaseSink target = this.dataSinksMap.get(sink);
+            if (target != null) {
+                target.addOneFailedCount(data.getSignature());
             }
+            return false;
+        }
+    }
+
+    /**
+     * Records are grouped by the sink that sends them and each group goes to the producer in one call.
+     * @return how many records were handed to Kafka
+     */
+    private int sendKafkaData(List<SinkData> records) {
+        Map<String, List<SinkData>> bySink = new LinkedHashMap<>();
+        for (SinkData data : records) {
+            bySink.computeIfAbsent(data.getSignature(), sink -> new ArrayList<>()).add(data);
+        }
+
+        int sent = 0;
+        for (Map.Entry<String, List<SinkData>> group : bySink.entrySet()) {
+            String sink = group.getKey();
+            List<SinkData> batch = group.getValue();
+            BaseSink target = this.dataSinksMap.get(sink);
+
+            // store and forward takes records one at a time, so do disabled and missing sinks
+            if (target == null || !kafkaConfig.getEnabled() || kafkaConfig.getUseStoreAndfwd()) {
+                for (SinkData data : batch) {
+                    if (sendKafkaData(data, sink)) {
+                        sent++;
+                    }
+                }
+                continue;
+            }
+
+            try {
+                logger.debug("Sending " + batch.size() + " records to Kafka through " + sink);
+                target.sendDirectBatchWithProducer(batch);
+                target.setLastMessageTime(sink);
+                sent += batch.size();
+            } catch (Exception e) {
+                logger.error(String.format("Can't send %d records through %s due to error: %s", batch.size(), sink, e));
+                for (int i = 0; i < batch.size(); i++) {
+                    target.addOneFailedCount(sink);
+                }
+            }
+        }
+        return sent;
+    }
+
+    private static class PendingAlarm {
+        private final AlarmEvent alarm;
+        private final EventData data;
+        private final String source, displayPath;
+
+        private PendingAlarm(AlarmEvent alarm, EventData data, String source, String displayPath) {
+            this.alarm = alarm;
+            this.data = data;
+            this.source = source;
+            this.displayPath = displayPath;
         }
     }
 }
@@ -0,0 +1,84 @@
+package com.inductiveautomation.ignition.examples.kafka;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Names of the settings that differ between two getSettingsRecord() snapshots.
+ */
+
+public class SettingsDiff {
+
+    private static final Logger logger = LoggerFactory.getLogger("Kafka.SettingsDiff");
+
+    private final Set<String> changed;
+    private final boolean complete;
+
+    private SettingsDiff(Set<String> changed, boolean complete) {
+        this.changed = Collections.unmodifiableSet(changed);
+        this.complete = complete;
+    }
+
+    /** A snapshot that is missing or can't be read counts as every setting having changed */
+    public static SettingsDiff between(String before, String after) {
+        if (before == null || after == null) {
+            return new SettingsDiff(new TreeSet<>(), true);
+        }
+
+        try {
+            JSONObject previous = new JSONObject(before);
+            JSONObject current = new JSONObject(after);
+            Set<String> changed = new TreeSet<>();
+            addChanged(previous, current, changed);
+            addChanged(current, previous, changed);
+            return new SettingsDiff(changed, false);
+        } catch (JSONException e) {
+            logger.warn("Unable to compare settings, applying all of them: " + e);
+            return new SettingsDiff(new TreeSet<>(), true);
+        }
+    }
+
+    private static void addChanged(JSONObject from, JSONObject to, Set<String> changed) {
+        Iterator<?> keys = from.keys();
+        while (keys.hasNext()) {
+            String key = String.valueOf(keys.next());
+            if (!String.valueOf(from.opt(key)).equals(String.valueOf(to.opt(key)))) {
+                changed.add(key);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return !complete && changed.isEmpty();
+    }
+
+    /** @return true if everything changed or any of the keys did */
+    public boolean any(Collection<String> keys) {
+        if (complete) {
+            return true;
+        }
+        for (String key : keys) {
+            if (changed.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean has(String key) {
+        return complete || changed.contains(key);
+    }
+
+    @Override
+    public String toString() {
+        return complete ? "all settings" : String.join(", ", changed);
+    }
+}
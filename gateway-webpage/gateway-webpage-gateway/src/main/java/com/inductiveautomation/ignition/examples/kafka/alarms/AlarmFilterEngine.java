@@ -0,0 +1,90 @@
+package com.inductiveautomation.ignition.examples.kafka.alarms;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Alarm filters from the settings record, compiled once per settings change. Decisions are cached per
+ * source and display path.
+ */
+
+public class AlarmFilterEngine {
+
+    private static final int MAX_CACHED_DECISIONS = 50_000;
+    private static final byte OWN_GROUP = 1, SOURCE_PATH_GROUP = 2;
+
+    private final int minimumPriority;
+    private final PatternGroup source, displayPath, sourcePath;
+    private final Map<String, Byte> sourceDecisions = new ConcurrentHashMap<>();
+    private final Map<String, Byte> pathDecisions = new ConcurrentHashMap<>();
+
+    public AlarmFilterEngine(KafkaSettingsRecord kafkaSettings) {
+        this(kafkaSettings.getAlarmPriorityInt(), kafkaSettings.getSource(), kafkaSettings.getDispPath(),
+                kafkaSettings.getSrcPath());
+    }
+
+    public AlarmFilterEngine(int minimumPriority, String[] source, String[] displayPath, String[] sourcePath) {
+        this.minimumPriority = minimumPriority;
+        this.source = new PatternGroup(source);
+        this.displayPath = new PatternGroup(displayPath);
+        this.sourcePath = new PatternGroup(sourcePath);
+    }
+
+    public boolean accepts(int priority, String src, String path) {
+        if (priority < minimumPriority) {
+            return false;
+        }
+
+        byte srcDecision = decide(sourceDecisions, source, src);
+        if ((srcDecision & OWN_GROUP) == 0) {
+            return false;
+        }
+
+        byte pathDecision = decide(pathDecisions, displayPath, path);
+        return (pathDecision & OWN_GROUP) != 0 && ((srcDecision | pathDecision) & SOURCE_PATH_GROUP) != 0;
+    }
+
+    private byte decide(Map<String, Byte> cache, PatternGroup own, String input) {
+        Byte cached = cache.get(input);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte decision = 0;
+        if (own.matches(input)) {
+            decision |= OWN_GROUP;
+        }
+        if (sourcePath.matches(input)) {
+            decision |= SOURCE_PATH_GROUP;
+        }
+
+        if (cache.size() >= MAX_CACHED_DECISIONS) {
+            cache.clear();
+        }
+        cache.put(input, decision);
+        return decision;
+    }
+
+    /** Provider from an alarm source such as "prov:default:/tag:Folder/Tag:/alm:High" */
+    public static String getProvider(String src) {
+        int start = src.indexOf(':');
+        if (start < 0) {
+            return "";
+        }
+        int end = src.indexOf(':', start + 1);
+        return end < 0 ? src.substring(start + 1) : src.substring(start + 1, end);
+    }
+
+    /** Everything after "tag:" up to the next "tag:", the same part src.split("tag:")[1] returned */
+    public static String getTagPath(String src) {
+        int start = src.indexOf("tag:");
+        if (start < 0) {
+            return "";
+        }
+        start += 4;
+        int end = src.indexOf("tag:", start);
+        return end < 0 ? src.substring(start) : src.substring(start, end);
+    }
+}
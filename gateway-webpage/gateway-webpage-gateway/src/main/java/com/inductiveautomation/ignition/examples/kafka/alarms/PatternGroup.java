@@ -0,0 +1,112 @@
+package com.inductiveautomation.ignition.examples.kafka.alarms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * One comma separated alarm filter setting, compiled into a trie of literals and precompiled patterns.
+ */
+
+public class PatternGroup {
+
+    private static final String REGEX_CHARS = "\\^$.|?*+()[]{}";
+
+    private final boolean matchAll;
+    private final Node trie = new Node();
+    private final List<Pattern> patterns = new ArrayList<>();
+
+    public PatternGroup(String[] group) {
+        this.matchAll = group == null;
+        if (group == null) {
+            return;
+        }
+
+        for (String entry : group) {
+            String pattern = entry.trim();
+            if (isLiteral(pattern)) {
+                trie.insert(pattern, false);
+            } else if (pattern.endsWith(".*") && isLiteral(pattern.substring(0, pattern.length() - 2))) {
+                trie.insert(pattern.substring(0, pattern.length() - 2), true);
+            } else {
+                patterns.add(Pattern.compile(pattern));
+            }
+        }
+    }
+
+    public boolean matches(String input) {
+        if (matchAll || trie.matches(input)) {
+            return true;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(input).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLiteral(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (REGEX_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Children are kept in small parallel arrays, paths share long prefixes so nodes rarely fan out */
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean exactEnd, prefixEnd;
+
+        private void insert(String literal, boolean prefix) {
+            Node node = this;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.childOrCreate(literal.charAt(i));
+            }
+            if (prefix) {
+                node.prefixEnd = true;
+            } else {
+                node.exactEnd = true;
+            }
+        }
+
+        private boolean matches(String input) {
+            Node node = this;
+            for (int i = 0; i < input.length(); i++) {
+                if (node.prefixEnd) {
+                    return true;
+                }
+                node = node.child(input.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.exactEnd || node.prefixEnd;
+        }
+
+        private Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node childOrCreate(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
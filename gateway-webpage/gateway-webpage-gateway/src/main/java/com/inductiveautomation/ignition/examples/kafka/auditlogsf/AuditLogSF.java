@@ -1,32 +1,44 @@
 package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
 
 import com.inductiveautomation.ignition.common.db.schema.ColumnProperty;
+import com.inductiveautomation.ignition.common.execution.ExecutionManager;
 import com.inductiveautomation.ignition.common.model.ApplicationScope;
 import com.inductiveautomation.ignition.common.sqltags.model.types.DataType;
 import com.inductiveautomation.ignition.examples.kafka.GatewayScriptModule;
+import com.inductiveautomation.ignition.examples.kafka.records.AuditLogSFSettings;
 import com.inductiveautomation.ignition.gateway.audit.AuditProfile;
 import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
 import com.inductiveautomation.ignition.gateway.audit.DefaultAuditRecord;
 import com.inductiveautomation.ignition.gateway.datasource.Datasource;
 import com.inductiveautomation.ignition.gateway.datasource.SRConnection;
-import com.inductiveautomation.ignition.gateway.datasource.query.DBQuery;
-import com.inductiveautomation.ignition.gateway.datasource.query.SQLType;
 import com.inductiveautomation.ignition.gateway.db.schema.DBTableSchema;
 import com.inductiveautomation.ignition.gateway.model.GatewayContext;
 import com.inductiveautomation.ignition.gateway.util.DBUtilities;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AuditLogSF implements AuditProfile {
     private static final long TIME_BETWEEN_RETENTION_CLEARS = 1000 * 60 * 30; // 30 minutes
     private static final long MILLIS_PER_DAY = 1000 * 60 * 60 * 24;
+    private static final String TASK_OWNER = "AuditLogSF";
+    private static final int STREAM_FETCH_SIZE = 500;
+    // continuation token prefixes for rows from the base table and from a partition
+    private static final String BASE_SOURCE = "b";
+    private static final String PARTITION_SOURCE = "p";
 
     GatewayContext context;
 
@@ -35,6 +47,13 @@ public class AuditLogSF implements AuditProfile {
 
     int retentionDays;
 
+    int batchSize;
+    int batchWindowMs;
+    // pending rows per insert query, so a batch that spans a partition boundary still lands in the right tables
+    Map<String, List<Object[]>> pendingRows = new LinkedHashMap<String, List<Object[]>>();
+    int pendingCount = 0;
+    String flushTaskName;
+
     boolean initialized = false;
 
     boolean autocreate = false;
@@ -52,15 +71,29 @@ public class AuditLogSF implements AuditProfile {
     String originatingContextColumn;
 
     String insertQuery;
+    Map<String, String> partitionInserts = new ConcurrentHashMap<String, String>();
+    AuditPartitions partitions;
     String deleteQuery;
+    String expiredRangeQuery;
     String q;
 
     Logger log = Logger.getLogger(getClass());
     GatewayScriptModule scriptModule;
 
-    long lastRetentionClear = 0;
+    int purgeChunkSize;
+    int purgePauseMs;
+    String purgeTaskName;
+    ExecutionManager purgeExecutor;
+    volatile boolean shuttingDown = false;
+    volatile long lastPurgeRows = 0;
+    volatile long lastPurgeMillis = 0;
+
+    String profileName;
+    RecentAuditBuffer recent;
 
-    public AuditLogSF(GatewayContext context, long datasourceId, int retentionDays, boolean autocreate,
+    public AuditLogSF(GatewayContext context, long datasourceId, int retentionDays, int batchSize, int batchWindowMs,
+                      int purgeChunkSize, int purgePauseMs, AuditLogSFSettings.partitionModes partitioning,
+                      int recentBufferSize, boolean autocreate,
                       String tableName, String keyColumn, String timestampColumn, String actorColumn, String actorHostColumn,
                       String actionColumn, String actionTargetColumn, String actionValueColumn, String statusCodeColumn,
                       String originatingSystemColumn, String originatingContextColumn,
@@ -69,7 +102,13 @@ public class AuditLogSF implements AuditProfile {
         this.context = context;
         this.datasourceId = datasourceId;
         this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.batchWindowMs = batchWindowMs;
+        this.purgeChunkSize = purgeChunkSize;
+        this.purgePauseMs = purgePauseMs;
         this.tableName = tableName;
+        this.partitions = new AuditPartitions(tableName, partitioning);
+        this.recent = recentBufferSize > 0 ? new RecentAuditBuffer(recentBufferSize) : null;
         this.keyColumn = keyColumn;
         this.timestampColumn = timestampColumn;
         this.actorColumn = actorColumn;
@@ -98,34 +137,45 @@ public class AuditLogSF implements AuditProfile {
         }
 
         try {
-            if (autocreate) {
-                checkTable();
+            q = ds.getTranslator().getColumnQuoteChar();
+
+            if (partitions.isEnabled()) {
+                refreshPartitions();
+                long now = System.currentTimeMillis();
+                ensurePartition(partitions.tableFor(now));
+                ensurePartition(partitions.nextTableFor(now));
+            } else if (autocreate) {
+                checkTable(tableName);
             }
 
-            q = ds.getTranslator().getColumnQuoteChar();
+            insertQuery = buildInsertQuery(tableName);
 
             StringBuilder sb = new StringBuilder();
 
-            sb.append("INSERT INTO ").append(tableName);
-            sb.append(" (");
-            sb.append(q).append(timestampColumn).append(q).append(", ");
-            sb.append(q).append(originatingSystemColumn).append(q).append(", ");
-            sb.append(q).append(originatingContextColumn).append(q).append(", ");
-            sb.append(q).append(actorColumn).append(q).append(", ");
-            sb.append(q).append(actorHostColumn).append(q).append(", ");
-            sb.append(q).append(actionColumn).append(q).append(", ");
-            sb.append(q).append(actionTargetColumn).append(q).append(", ");
-            sb.append(q).append(actionValueColumn).append(q).append(", ");
-            sb.append(q).append(statusCodeColumn).append(q);
-            sb.append(") VALUES (?,?,?,?,?,?,?,?,?)");
-
-            insertQuery = sb.toString();
+            sb.append("DELETE FROM ").append(tableName).append(" WHERE ");
+            sb.append(q).append(keyColumn).append(q).append(" >= ? AND ");
+            sb.append(q).append(keyColumn).append(q).append(" < ? AND ");
+            sb.append(q).append(timestampColumn).append(q).append(" < ?");
+            deleteQuery = sb.toString();
 
             sb.setLength(0);
 
-            sb.append("DELETE FROM ").append(tableName).append(" WHERE ");
+            sb.append("SELECT MIN(").append(q).append(keyColumn).append(q).append("), MAX(");
+            sb.append(q).append(keyColumn).append(q).append(") FROM ").append(tableName).append(" WHERE ");
             sb.append(q).append(timestampColumn).append(q).append(" < ?");
-            deleteQuery = sb.toString();
+            expiredRangeQuery = sb.toString();
+
+            // the purge pauses between chunks, it gets its own thread rather than holding a shared one
+            purgeTaskName = "purge-" + datasourceId + "-" + tableName;
+            purgeExecutor = context.createExecutionManager("kafka-audit-" + purgeTaskName, 1);
+            purgeExecutor.register(TASK_OWNER, purgeTaskName, this::purgeExpired,
+                    (int) TIME_BETWEEN_RETENTION_CLEARS);
+
+            if (batchSize > 1) {
+                flushTaskName = "flush-" + datasourceId + "-" + tableName;
+                context.getExecutionManager().register(TASK_OWNER, flushTaskName, this::flushPending,
+                        Math.max(100, batchWindowMs));
+            }
 
             initialized = true;
         } catch (Exception e) {
@@ -133,13 +183,31 @@ public class AuditLogSF implements AuditProfile {
         }
     }
 
-    protected void checkTable() {
+    private String buildInsertQuery(String table) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("INSERT INTO ").append(table);
+        sb.append(" (");
+        sb.append(q).append(timestampColumn).append(q).append(", ");
+        sb.append(q).append(originatingSystemColumn).append(q).append(", ");
+        sb.append(q).append(originatingContextColumn).append(q).append(", ");
+        sb.append(q).append(actorColumn).append(q).append(", ");
+        sb.append(q).append(actorHostColumn).append(q).append(", ");
+        sb.append(q).append(actionColumn).append(q).append(", ");
+        sb.append(q).append(actionTargetColumn).append(q).append(", ");
+        sb.append(q).append(actionValueColumn).append(q).append(", ");
+        sb.append(q).append(statusCodeColumn).append(q);
+        sb.append(") VALUES (?,?,?,?,?,?,?,?,?)");
+        return sb.toString();
+    }
+
+    protected boolean checkTable(String table) {
         if (ds == null) {
             log.error("Error verifying database audit log table, datasource [" + datasourceId + "] doesn't exist.");
-            return;
+            return false;
         }
 
-        DBTableSchema schema = new DBTableSchema(tableName, ds.getTranslator());
+        DBTableSchema schema = new DBTableSchema(table, ds.getTranslator());
         schema.addRequiredColumn(keyColumn, DataType.Int4,
                 EnumSet.of(ColumnProperty.PrimaryKey, ColumnProperty.AutoIncrement));
         schema.addRequiredColumn(timestampColumn, DataType.DateTime, EnumSet.of(ColumnProperty.Indexed));
@@ -152,10 +220,10 @@ public class AuditLogSF implements AuditProfile {
         schema.addRequiredColumn(originatingSystemColumn, DataType.String, null);
         schema.addRequiredColumn(originatingContextColumn, DataType.Int4, null);
 
-        schemaUpdate(ds, schema);
+        return schemaUpdate(ds, schema);
     }
 
-    private void schemaUpdate(Datasource ds, DBTableSchema schema) {
+    private boolean schemaUpdate(Datasource ds, DBTableSchema schema) {
         SRConnection conn = null;
 
         try {
@@ -172,13 +240,55 @@ public class AuditLogSF implements AuditProfile {
             statusCodeColumn = schema.getCasedColumnName(statusCodeColumn);
             originatingSystemColumn = schema.getCasedColumnName(originatingSystemColumn);
             originatingContextColumn = schema.getCasedColumnName(originatingContextColumn);
+            return true;
         } catch (Exception e) {
             log.error("Error verifying audit log table for [" + ds.getName() + "].", e);
+            return false;
         } finally {
             DBUtilities.close(conn, null);
         }
     }
 
+    private void refreshPartitions() {
+        SRConnection con = null;
+        try {
+            con = ds.getConnection();
+            partitions.refresh(con);
+        } catch (Exception e) {
+            log.error("Error listing audit partitions of [" + ds.getName() + "." + tableName + "].", e);
+        } finally {
+            DBUtilities.close(con, null);
+        }
+    }
+
+    /**
+     * Creates the partition if auto create is on and it isn't known yet. A failed create is not remembered, so
+     * the next record for the partition tries again; the rows in between wait in store and forward.
+     */
+    private synchronized void ensurePartition(String table) {
+        if (partitions.isKnown(table)) {
+            return;
+        }
+        if (!autocreate || checkTable(table)) {
+            partitions.markKnown(table);
+        }
+    }
+
+    /**
+     * The insert query for the table a record with this timestamp belongs in.
+     */
+    private String routeInsert(Date timestamp) {
+        if (!partitions.isEnabled()) {
+            return insertQuery;
+        }
+
+        String table = partitions.tableFor(timestamp == null ? System.currentTimeMillis() : timestamp.getTime());
+        if (!partitions.isKnown(table)) {
+            ensurePartition(table);
+        }
+        return partitionInserts.computeIfAbsent(table, this::buildInsertQuery);
+    }
+
     public void audit(AuditRecord record) {
         init();
 
@@ -186,134 +296,445 @@ public class AuditLogSF implements AuditProfile {
     }
 
     private void _audit(Datasource ds, AuditRecord record, int retentionDays) {
+        if (recent != null) {
+            recent.add(record);
+        }
+
         try {
+            String insert = routeInsert(record.getTimestamp());
             if (log.isDebugEnabled()) {
                 log.debug("Logging event [" + record + "] to [" + ds.getName() + "] with query: ["
-                        + insertQuery + "]");
+                        + insert + "]");
             }
 
-            context.getHistoryManager()
-                    .storeHistory(ds.getName(), new AuditRecordSFData(ds.getName(), insertQuery,
-                            record.getTimestamp(), record.getOriginatingSystem(),
-                            record.getOriginatingContext(), record.getActor(), record.getActorHost(),
-                            record.getAction(),
-                            record.getActionTarget(), record.getActionValue(), record.getStatusCode()));
+            Object[] row = new Object[]{record.getTimestamp(), record.getOriginatingSystem(),
+                    record.getOriginatingContext(), record.getActor(), record.getActorHost(),
+                    record.getAction(),
+                    record.getActionTarget(), record.getActionValue(), record.getStatusCode()};
+
+            if (batchSize > 1) {
+                addPending(insert, row);
+            } else {
+                context.getHistoryManager()
+                        .storeHistory(ds.getName(), new AuditRecordSFData(ds.getName(), insert, row));
+            }
 
             // Entrance point into kafka stream
             scriptModule.sendAuditData(record);
 
-            long now = System.currentTimeMillis();
-            if (now - lastRetentionClear > TIME_BETWEEN_RETENTION_CLEARS) {
-                lastRetentionClear = now;
+        } catch (Exception ex) {
+            log.error("Error auditing [" + record + "] to [" + ds.getName() + "], due to underlying exception.", ex);
+        }
+    }
+
+    private void addPending(String insert, Object[] row) {
+        boolean full;
+        synchronized (this) {
+            pendingRows.computeIfAbsent(insert, k -> new ArrayList<Object[]>()).add(row);
+            full = ++pendingCount >= batchSize;
+        }
+        if (full) {
+            flushPending();
+        }
+    }
+
+    /**
+     * Hands the rows collected so far to store and forward as one batch. Runs when the batch fills up and
+     * every batchWindowMs from the execution manager, so a quiet gateway still writes its records promptly.
+     */
+    void flushPending() {
+        Map<String, List<Object[]>> batches;
+        synchronized (this) {
+            if (pendingCount == 0) {
+                return;
+            }
+            batches = pendingRows;
+            pendingRows = new LinkedHashMap<String, List<Object[]>>();
+            pendingCount = 0;
+        }
+
+        for (Map.Entry<String, List<Object[]>> batch : batches.entrySet()) {
+            List<Object[]> rows = batch.getValue();
+            try {
+                context.getHistoryManager()
+                        .storeHistory(ds.getName(), new AuditRecordBatchSFData(ds.getName(), batch.getKey(), rows));
+            } catch (Exception ex) {
+                log.error("Error storing " + rows.size() + " audit records to [" + ds.getName() + "].", ex);
+            }
+        }
+    }
+
+    /**
+     * Retention, run every 30 minutes on this log's own single-thread execution manager instead of on an
+     * auditing thread or the gateway's shared one.
+     * With partitioning on, expired partitions are dropped whole and the next partition is created ahead of
+     * time. Rows in the unpartitioned table are deleted in key ranges of purgeChunkSize, each range in its own
+     * short statement, pausing purgePauseMs between chunks so the table is never locked for long.
+     */
+    void purgeExpired() {
+        if (ds == null) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Date cutoff = new Date(start - (retentionDays * MILLIS_PER_DAY));
+        long purged = 0;
+        int chunks = 0;
+        int dropped = 0;
+
+        SRConnection con = null;
+        try {
+            con = ds.getConnection();
+
+            if (partitions.isEnabled()) {
+                partitions.refresh(con);
+                dropped = dropPartitions(con, cutoff.getTime());
+                ensurePartition(partitions.tableFor(start));
+                ensurePartition(partitions.nextTableFor(start));
+
+                if (!partitions.hasBaseTable()) {
+                    return;
+                }
+            }
 
-                SRConnection con = ds.getConnection();
-                try {
-                    int affected = con.runPrepUpdate(deleteQuery, new Date(now - (retentionDays * MILLIS_PER_DAY)));
-                    if (affected > 0 && log.isDebugEnabled()) {
-                        log.debug("Deleted " + affected + " old audit events from [" + ds.getName() + "]");
+            long minKey, maxKey;
+            try (PreparedStatement ps = con.prepareStatement(expiredRangeQuery)) {
+                ps.setTimestamp(1, new Timestamp(cutoff.getTime()));
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next() || rs.getObject(1) == null) {
+                        return;
                     }
-                } finally {
-                    try {
-                        con.close();
-                    } catch (SQLException ignored) {
+                    minKey = rs.getLong(1);
+                    maxKey = rs.getLong(2);
+                }
+            }
+
+            int chunk = Math.max(1, purgeChunkSize);
+            try (PreparedStatement ps = con.prepareStatement(deleteQuery)) {
+                for (long from = minKey; from <= maxKey && !shuttingDown; from += chunk) {
+                    ps.setLong(1, from);
+                    ps.setLong(2, from + chunk);
+                    ps.setTimestamp(3, new Timestamp(cutoff.getTime()));
+                    purged += ps.executeUpdate();
+                    chunks++;
+
+                    if (purgePauseMs > 0 && from + chunk <= maxKey) {
+                        Thread.sleep(purgePauseMs);
                     }
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception ex) {
-            log.error("Error auditing [" + record + "] to [" + ds.getName() + "], due to underlying exception.", ex);
+            log.error("Error purging expired audit events from [" + ds.getName() + "].", ex);
+        } finally {
+            DBUtilities.close(con, null);
+            lastPurgeRows = purged;
+            lastPurgeMillis = System.currentTimeMillis() - start;
+            if (dropped > 0) {
+                log.info("Dropped " + dropped + " audit partitions older than " + retentionDays + " days from ["
+                        + ds.getName() + "." + tableName + "], " + lastPurgeMillis + " ms");
+            }
+            if (chunks > 0) {
+                log.info("Purged " + purged + " audit events older than " + retentionDays + " days from ["
+                        + ds.getName() + "." + tableName + "] in " + chunks + " chunks, " + lastPurgeMillis + " ms");
+            }
+        }
+    }
+
+    private int dropPartitions(SRConnection con, long cutoff) {
+        int dropped = 0;
+        for (String table : partitions.expired(cutoff)) {
+            if (shuttingDown) {
+                break;
+            }
+            try (Statement st = con.createStatement()) {
+                st.executeUpdate("DROP TABLE " + table);
+                partitions.forget(table);
+                partitionInserts.remove(table);
+                dropped++;
+            } catch (SQLException e) {
+                log.error("Error dropping expired audit partition [" + ds.getName() + "." + table + "].", e);
+            }
+        }
+        return dropped;
+    }
+
+    public void setProfileName(String profileName) {
+        this.profileName = profileName;
+        scriptModule.registerAuditLog(profileName, this);
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * @return null when the recent record buffer is turned off
+     */
+    public RecentAuditBuffer getRecentBuffer() {
+        return recent;
+    }
+
+    public long getLastPurgeRows() {
+        return lastPurgeRows;
+    }
+
+    public long getLastPurgeMillis() {
+        return lastPurgeMillis;
+    }
+
+    public void shutdown() {
+        shuttingDown = true;
+        if (profileName != null) {
+            scriptModule.unregisterAuditLog(profileName, this);
+        }
+        if (purgeExecutor != null) {
+            purgeExecutor.unRegister(TASK_OWNER, purgeTaskName);
+            purgeExecutor.shutdown();
+        }
+        if (flushTaskName != null) {
+            context.getExecutionManager().unRegister(TASK_OWNER, flushTaskName);
+        }
+        if (initialized) {
+            flushPending();
         }
     }
 
     public List<AuditRecord> query(String actorFilter, String actionFilter, String actionTargetFilter,
                                    String actionValueFilter, Date startTime, Date endTime, String systemFilter, Integer contextFilter)
             throws Exception {
-        init();
+        final List<AuditRecord> results = new ArrayList<AuditRecord>();
 
-        DBQuery query = new DBQuery(q);
-        query.addReturnColumn(timestampColumn, SQLType.TIMESTAMP);
-        query.addReturnColumn(actorColumn, SQLType.VARCHAR);
-        query.addReturnColumn(actorHostColumn, SQLType.VARCHAR);
-        query.addReturnColumn(actionColumn, SQLType.VARCHAR);
-        query.addReturnColumn(actionTargetColumn, SQLType.VARCHAR);
-        query.addReturnColumn(actionValueColumn, SQLType.VARCHAR);
-        query.addReturnColumn(statusCodeColumn, SQLType.INTEGER);
-        query.addReturnColumn(originatingSystemColumn, SQLType.VARCHAR);
-        query.addReturnColumn(originatingContextColumn, SQLType.INTEGER);
+        try {
+            query(new AuditQueryFilter(actorFilter, actionFilter, actionTargetFilter, actionValueFilter, startTime,
+                    endTime, systemFilter, contextFilter), results::add);
+        } catch (Exception ex) {
+            log.error("Error querying audit events from [" + datasourceId + "].", ex);
+        }
+        return results;
+    }
 
-        query.addTable(tableName);
+    /**
+     * Streams every matching record to the handler, oldest first, without collecting them. The handler can
+     * stop the query early by returning false. Queries starting inside the window of the recent record buffer
+     * are answered from memory.
+     *
+     * @return the number of records handed to the handler
+     */
+    public long query(AuditQueryFilter filter, AuditRecordHandler handler) throws Exception {
+        long count = 0;
+
+        List<AuditRecord> buffered = recent != null ? recent.query(filter) : null;
+        if (buffered != null) {
+            for (AuditRecord record : buffered) {
+                count++;
+                if (!handler.onRecord(record)) {
+                    break;
+                }
+            }
+            return count;
+        }
 
-        query.addOrderBy(timestampColumn, true);
+        init();
 
-        if (startTime != null) {
-            query.addWhereClause(query.ge(timestampColumn, startTime));
-        }
-        if (endTime != null) {
-            query.addWhereClause(query.le(timestampColumn, endTime));
+        try (SRConnection con = ds.getConnection()) {
+            for (String table : tablesFor(filter.getStartTime(), filter.getEndTime())) {
+                try (PreparedStatement ps = prepareSelect(con, table, filter, null, 0)) {
+                    ps.setFetchSize(STREAM_FETCH_SIZE);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            count++;
+                            if (!handler.onRecord(readRecord(rs))) {
+                                return count;
+                            }
+                        }
+                    }
+                }
+            }
         }
+        return count;
+    }
 
-        if (StringUtils.isNotBlank(systemFilter)) {
-            query.addWhereClause(query.like(originatingSystemColumn, systemFilter));
-        }
-        if (contextFilter != null && contextFilter != 0) {
-            DBQuery.OrClause or = new DBQuery.OrClause();
-            if ((contextFilter & ApplicationScope.CLIENT) == ApplicationScope.CLIENT) {
-                or.add(query.equal(originatingContextColumn, ApplicationScope.CLIENT));
+    /**
+     * One page of matching records. Pages are keyed on (timestamp, key) rather than offset, so each page costs
+     * the same no matter how deep into the results it is, and rows inserted while paging don't shift the pages.
+     * Pages always come from the database, since buffered records have no key yet.
+     * <p>
+     * Keys are only unique within a table, so with partitioning on each table is paged on its own: the rows
+     * left in the base table come first, then the partitions oldest first. The token records which of the two
+     * the last row came from.
+     *
+     * @param continuationToken null for the first page, then the token of the previous page
+     */
+    public AuditPage queryPage(AuditQueryFilter filter, String continuationToken, int pageSize) throws Exception {
+        init();
+
+        int limit = Math.max(1, pageSize);
+        boolean afterBase = true;
+        Timestamp afterTime = null;
+        long afterKey = 0;
+        if (continuationToken != null) {
+            String[] parts = continuationToken.split(":");
+            int dot = parts.length == 3 ? parts[1].indexOf('.') : -1;
+            if (dot < 0 || !(BASE_SOURCE.equals(parts[0]) || PARTITION_SOURCE.equals(parts[0]))) {
+                throw new IllegalArgumentException("Invalid audit continuation token: " + continuationToken);
             }
-            if ((contextFilter & ApplicationScope.DESIGNER) == ApplicationScope.DESIGNER) {
-                or.add(query.equal(originatingContextColumn, ApplicationScope.DESIGNER));
+            afterBase = BASE_SOURCE.equals(parts[0]);
+            afterTime = new Timestamp(Long.parseLong(parts[1].substring(0, dot)));
+            afterTime.setNanos(Integer.parseInt(parts[1].substring(dot + 1)));
+            afterKey = Long.parseLong(parts[2]);
+        }
+
+        List<String> tables;
+        if (!partitions.isEnabled()) {
+            tables = Collections.singletonList(tableName);
+        } else if (afterBase) {
+            tables = partitions.overlapping(filter.getStartTime(), filter.getEndTime());
+        } else {
+            // the base table is done, and the partitions ending before the last row have nothing left
+            Date from = filter.getStartTime();
+            if (from == null || afterTime.getTime() > from.getTime()) {
+                from = new Date(afterTime.getTime());
             }
-            if ((contextFilter & ApplicationScope.GATEWAY) == ApplicationScope.GATEWAY) {
-                or.add(query.equal(originatingContextColumn, ApplicationScope.GATEWAY));
+            tables = new ArrayList<String>(partitions.overlapping(from, filter.getEndTime()));
+            tables.remove(tableName);
+        }
+
+        List<AuditRecord> records = new ArrayList<AuditRecord>(Math.min(limit, 1000));
+        String lastSource = null;
+        Timestamp lastTime = null;
+        long lastKey = 0;
+
+        try (SRConnection con = ds.getConnection()) {
+            for (int i = 0; i < tables.size() && records.size() < limit; i++) {
+                String table = tables.get(i);
+                // only the table the token came from continues after its last row, the later ones start over
+                boolean continued = i == 0 && afterTime != null;
+                try (PreparedStatement ps = prepareSelect(con, table, filter, continued ? afterTime : null,
+                        continued ? afterKey : 0)) {
+                    ps.setMaxRows(limit - records.size());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            records.add(readRecord(rs));
+                            lastSource = partitions.isEnabled() && !table.equals(tableName)
+                                    ? PARTITION_SOURCE : BASE_SOURCE;
+                            lastTime = rs.getTimestamp(1);
+                            lastKey = rs.getLong(10);
+                        }
+                    }
+                }
             }
-            query.addWhereClause(or);
         }
-        if (StringUtils.isNotBlank(actorFilter)) {
-            query.addWhereClause(query.like(actorColumn, actorFilter));
+
+        String token = records.size() >= limit && lastTime != null
+                ? lastSource + ":" + lastTime.getTime() + "." + lastTime.getNanos() + ":" + lastKey
+                : null;
+        return new AuditPage(records, token);
+    }
+
+    private List<String> tablesFor(Date startTime, Date endTime) {
+        // partitions are disjoint in time and come back oldest first, so reading them in turn keeps the order
+        return partitions.isEnabled() ? partitions.overlapping(startTime, endTime)
+                : Collections.singletonList(tableName);
+    }
+
+    private PreparedStatement prepareSelect(SRConnection con, String table, AuditQueryFilter filter,
+                                            Timestamp afterTime, long afterKey) throws SQLException {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        sb.append(q).append(timestampColumn).append(q).append(", ");
+        sb.append(q).append(actorColumn).append(q).append(", ");
+        sb.append(q).append(actorHostColumn).append(q).append(", ");
+        sb.append(q).append(actionColumn).append(q).append(", ");
+        sb.append(q).append(actionTargetColumn).append(q).append(", ");
+        sb.append(q).append(actionValueColumn).append(q).append(", ");
+        sb.append(q).append(statusCodeColumn).append(q).append(", ");
+        sb.append(q).append(originatingSystemColumn).append(q).append(", ");
+        sb.append(q).append(originatingContextColumn).append(q).append(", ");
+        sb.append(q).append(keyColumn).append(q);
+        sb.append(" FROM ").append(table).append(" WHERE 1=1");
+
+        List<Object> params = new ArrayList<Object>();
+
+        if (filter.getStartTime() != null) {
+            sb.append(" AND ").append(q).append(timestampColumn).append(q).append(" >= ?");
+            params.add(new Timestamp(filter.getStartTime().getTime()));
         }
-        if (StringUtils.isNotBlank(actionFilter)) {
-            query.addWhereClause(query.like(actionColumn, actionFilter));
+        if (filter.getEndTime() != null) {
+            sb.append(" AND ").append(q).append(timestampColumn).append(q).append(" <= ?");
+            params.add(new Timestamp(filter.getEndTime().getTime()));
         }
-        if (StringUtils.isNotBlank(actionTargetFilter)) {
-            query.addWhereClause(query.like(actionTargetColumn, actionTargetFilter));
+        if (afterTime != null) {
+            sb.append(" AND (").append(q).append(timestampColumn).append(q).append(" > ? OR (");
+            sb.append(q).append(timestampColumn).append(q).append(" = ? AND ");
+            sb.append(q).append(keyColumn).append(q).append(" > ?))");
+            params.add(afterTime);
+            params.add(afterTime);
+            params.add(afterKey);
         }
-        if (StringUtils.isNotBlank(actionValueFilter)) {
-            query.addWhereClause(query.like(actionValueColumn, actionValueFilter));
+
+        appendLike(sb, params, originatingSystemColumn, filter.getSystem());
+        Integer contextFilter = filter.getContext();
+        if (contextFilter != null && contextFilter != 0) {
+            List<Integer> scopes = new ArrayList<Integer>(3);
+            for (int scope : new int[]{ApplicationScope.CLIENT, ApplicationScope.DESIGNER, ApplicationScope.GATEWAY}) {
+                if ((contextFilter & scope) == scope) {
+                    scopes.add(scope);
+                }
+            }
+            if (!scopes.isEmpty()) {
+                sb.append(" AND ").append(q).append(originatingContextColumn).append(q).append(" IN (");
+                for (int i = 0; i < scopes.size(); i++) {
+                    sb.append(i == 0 ? "?" : ",?");
+                    params.add(scopes.get(i));
+                }
+                sb.append(")");
+            }
         }
+        appendLike(sb, params, actorColumn, filter.getActor());
+        appendLike(sb, params, actionColumn, filter.getAction());
+        appendLike(sb, params, actionTargetColumn, filter.getActionTarget());
+        appendLike(sb, params, actionValueColumn, filter.getActionValue());
+
+        sb.append(" ORDER BY ").append(q).append(timestampColumn).append(q).append(", ");
+        sb.append(q).append(keyColumn).append(q);
 
         if (log.isDebugEnabled()) {
-            log.debug("Issuing database audit query: " + query.getSql());
+            log.debug("Issuing database audit query: " + sb);
         }
 
-        final List<AuditRecord> results = new ArrayList<AuditRecord>();
-
+        PreparedStatement ps = con.prepareStatement(sb.toString());
         try {
-            _query(ds, query, results);
-        } catch (Exception ex) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+        } catch (SQLException e) {
+            ps.close();
+            throw e;
         }
-        return results;
+        return ps;
     }
 
-    private void _query(Datasource ds, DBQuery query, final List<AuditRecord> results) throws Exception {
-        SRConnection con = ds.getConnection();
-
-        query.execute(con, new DBQuery.StreamingHandler() {
-            @Override
-            public void onRow(int rowIndex, ResultSet rs) throws SQLException {
-                Date timestamp = rs.getTimestamp(1);
-                String actor = rs.getString(2);
-                String actorHost = rs.getString(3);
-                String action = rs.getString(4);
-                String actionTarget = rs.getString(5);
-                String actionValue = rs.getString(6);
-                int statusCode = rs.getInt(7);
-                String originatingSystem = rs.getString(8);
-                int originatingContext = rs.getInt(9);
-
-                results.add(new DefaultAuditRecord(action, actionTarget, actionValue, actor, actorHost,
-                        originatingContext, originatingSystem, statusCode, timestamp));
-            }
+    private void appendLike(StringBuilder sb, List<Object> params, String column, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            sb.append(" AND ").append(q).append(column).append(q).append(" LIKE ?");
+            params.add(value);
+        }
+    }
 
-        });
+    private static AuditRecord readRecord(ResultSet rs) throws SQLException {
+        Date timestamp = rs.getTimestamp(1);
+        String actor = rs.getString(2);
+        String actorHost = rs.getString(3);
+        String action = rs.getString(4);
+        String actionTarget = rs.getString(5);
+        String actionValue = rs.getString(6);
+        int statusCode = rs.getInt(7);
+        String originatingSystem = rs.getString(8);
+        int originatingContext = rs.getInt(9);
+
+        return new DefaultAuditRecord(action, actionTarget, actionValue, actor, actorHost,
+                originatingContext, originatingSystem, statusCode, timestamp);
     }
 
 }
@@ -32,9 +32,15 @@ public class AuditLogSFType extends AuditProfileType {
             throw new NullPointerException("No properties found for audit profile: " + parentSettings.getName());
         }
 
-        return new AuditLogSF(context,
+        AuditLogSF profile = new AuditLogSF(context,
                 settings.getLong(AuditLogSFSettings.DatasourceId),
                 settings.getInt(AuditLogSFSettings.Retention),
+                settings.getInt(AuditLogSFSettings.BatchSize),
+                settings.getInt(AuditLogSFSettings.BatchWindow),
+                settings.getInt(AuditLogSFSettings.PurgeChunkSize),
+                settings.getInt(AuditLogSFSettings.PurgePause),
+                settings.getEnum(AuditLogSFSettings.Partitioning),
+                settings.getInt(AuditLogSFSettings.RecentBufferSize),
                 settings.getBoolean(AuditLogSFSettings.AutoCreate),
                 settings.getString(AuditLogSFSettings.TableName),
                 settings.getString(AuditLogSFSettings.KeyColumn),
@@ -48,6 +54,8 @@ public class AuditLogSFType extends AuditProfileType {
                 settings.getString(AuditLogSFSettings.OriginatingSystemColumn),
                 settings.getString(AuditLogSFSettings.OriginatingContextColumn),
                 scriptModule);
+        profile.setProfileName(parentSettings.getName());
+        return profile;
     }
 
 }
@@ -0,0 +1,25 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
+
+import java.util.List;
+
+/**
+ * One page of an audit query. The continuation token is the table kind and (timestamp, key) of the last row,
+ * pass it back to get the next page; it is null once there are no more rows.
+ */
+public class AuditPage {
+    private final List<AuditRecord> records;
+    private final String continuationToken;
+
+    public AuditPage(List<AuditRecord> records, String continuationToken) {
+        this.records = records;
+        this.continuationToken = continuationToken;
+    }
+
+    public List<AuditRecord> getRecords() { return records; }
+
+    public String getContinuationToken() { return continuationToken; }
+
+    public boolean hasMore() { return continuationToken != null; }
+}
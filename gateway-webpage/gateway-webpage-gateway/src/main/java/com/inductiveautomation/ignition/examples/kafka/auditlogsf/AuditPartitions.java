@@ -0,0 +1,217 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import com.inductiveautomation.ignition.examples.kafka.records.AuditLogSFSettings;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Naming and bookkeeping of the time-partitioned audit tables, one per UTC day (BASE_yyyyMMdd) or per
+ * week starting Monday (BASE_Wyyyymmdd).
+ */
+class AuditPartitions {
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final long MILLIS_PER_DAY = 1000 * 60 * 60 * 24;
+
+    private final String baseTable;
+    private final AuditLogSFSettings.partitionModes mode;
+    private final Pattern namePattern;
+
+    // keyed by upper case table name, since databases differ in how they fold unquoted names
+    private final Map<String, Partition> known = new ConcurrentHashMap<>();
+    private volatile boolean baseTableExists = false;
+
+    AuditPartitions(String baseTable, AuditLogSFSettings.partitionModes mode) {
+        this.baseTable = baseTable;
+        this.mode = mode;
+        this.namePattern = Pattern.compile("^" + Pattern.quote(baseTable) + "_(W?)(\\d{8})$",
+                Pattern.CASE_INSENSITIVE);
+    }
+
+    boolean isEnabled() {
+        return mode != AuditLogSFSettings.partitionModes.None;
+    }
+
+    /**
+     * The partition a record with this timestamp is written to.
+     */
+    String tableFor(long epochMillis) {
+        LocalDate day = Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC).toLocalDate();
+        if (mode == AuditLogSFSettings.partitionModes.Weekly) {
+            return baseTable + "_W" + day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).format(SUFFIX);
+        }
+        return baseTable + "_" + day.format(SUFFIX);
+    }
+
+    /**
+     * The partition after the one holding this timestamp, so maintenance can create it before it is needed.
+     */
+    String nextTableFor(long epochMillis) {
+        long step = mode == AuditLogSFSettings.partitionModes.Weekly ? 7 * MILLIS_PER_DAY : MILLIS_PER_DAY;
+        return tableFor(epochMillis + step);
+    }
+
+    boolean isKnown(String table) {
+        return known.containsKey(table.toUpperCase(Locale.ROOT));
+    }
+
+    void markKnown(String table) {
+        Partition p = parse(table);
+        if (p != null) {
+            known.put(table.toUpperCase(Locale.ROOT), p);
+        }
+    }
+
+    void forget(String table) {
+        known.remove(table.toUpperCase(Locale.ROOT));
+    }
+
+    boolean hasBaseTable() {
+        return baseTableExists;
+    }
+
+    /**
+     * Rescans the database for partitions of the base table. Tables created outside the gateway, or in a mode
+     * that has since been changed, are picked up here because their period is encoded in the name. Only the
+     * connection's own catalog and schema are listed, that is where the unqualified inserts, queries and drops
+     * resolve to.
+     */
+    void refresh(Connection con) throws SQLException {
+        DatabaseMetaData meta = con.getMetaData();
+        String catalog = con.getCatalog();
+        String schema = currentSchema(con);
+        String escape = meta.getSearchStringEscape();
+        String base = escapePattern(storedCase(meta, baseTable), escape);
+
+        Map<String, Partition> found = new ConcurrentHashMap<>();
+        try (ResultSet rs = meta.getTables(catalog, schema, base + escape + "_%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                String name = rs.getString("TABLE_NAME");
+                Partition p = name == null ? null : parse(name);
+                if (p != null) {
+                    found.put(name.toUpperCase(Locale.ROOT), p);
+                }
+            }
+        }
+
+        boolean baseFound;
+        try (ResultSet rs = meta.getTables(catalog, schema, base, new String[]{"TABLE"})) {
+            baseFound = rs.next();
+        }
+
+        known.keySet().retainAll(found.keySet());
+        known.putAll(found);
+        baseTableExists = baseFound;
+    }
+
+    /** Connection.getSchema() is JDBC 4.1, older drivers don't implement it and then every schema is listed */
+    private static String currentSchema(Connection con) {
+        try {
+            return con.getSchema();
+        } catch (SQLException | AbstractMethodError e) {
+            return null;
+        }
+    }
+
+    /** Metadata patterns are matched against the stored name, which unquoted identifiers are folded to */
+    private static String storedCase(DatabaseMetaData meta, String name) throws SQLException {
+        if (meta.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase(Locale.ROOT);
+        }
+        if (meta.storesLowerCaseIdentifiers()) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+        return name;
+    }
+
+    private static String escapePattern(String name, String escape) {
+        if (escape == null || escape.isEmpty()) {
+            return name;
+        }
+        return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    /**
+     * Tables to read for a query between start and end (either may be null), oldest first. The unpartitioned
+     * base table, if there is one from before partitioning was turned on, always comes first.
+     */
+    List<String> overlapping(Date start, Date end) {
+        long from = start == null ? Long.MIN_VALUE : start.getTime();
+        long to = end == null ? Long.MAX_VALUE : end.getTime();
+
+        List<Partition> matches = new ArrayList<>();
+        for (Partition p : known.values()) {
+            if (p.start <= to && p.end > from) {
+                matches.add(p);
+            }
+        }
+        matches.sort((a, b) -> Long.compare(a.start, b.start));
+
+        List<String> tables = new ArrayList<>(matches.size() + 1);
+        if (baseTableExists) {
+            tables.add(baseTable);
+        }
+        for (Partition p : matches) {
+            tables.add(p.table);
+        }
+        return tables;
+    }
+
+    /**
+     * Partitions whose whole period is older than the cutoff.
+     */
+    List<String> expired(long cutoff) {
+        List<String> tables = new ArrayList<>();
+        for (Partition p : known.values()) {
+            if (p.end <= cutoff) {
+                tables.add(p.table);
+            }
+        }
+        return tables;
+    }
+
+    private Partition parse(String table) {
+        Matcher m = namePattern.matcher(table);
+        if (!m.matches()) {
+            return null;
+        }
+
+        LocalDate day;
+        try {
+            day = LocalDate.parse(m.group(2), SUFFIX);
+        } catch (Exception e) {
+            return null;
+        }
+        long start = day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long length = m.group(1).isEmpty() ? MILLIS_PER_DAY : 7 * MILLIS_PER_DAY;
+        return new Partition(table, start, start + length);
+    }
+
+    private static class Partition {
+        final String table;
+        final long start;
+        final long end;
+
+        Partition(String table, long start, long end) {
+            this.table = table;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import java.util.Date;
+
+/**
+ * The filters of an audit query, the same ones AuditProfile.query takes. Blank strings and null values match
+ * everything; string filters use SQL LIKE.
+ */
+public class AuditQueryFilter {
+    private final String actor;
+    private final String action;
+    private final String actionTarget;
+    private final String actionValue;
+    private final Date startTime;
+    private final Date endTime;
+    private final String system;
+    private final Integer context;
+
+    public AuditQueryFilter(String actor, String action, String actionTarget, String actionValue,
+                            Date startTime, Date endTime, String system, Integer context) {
+        this.actor = actor;
+        this.action = action;
+        this.actionTarget = actionTarget;
+        this.actionValue = actionValue;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.system = system;
+        this.context = context;
+    }
+
+    public String getActor() { return actor; }
+
+    public String getAction() { return action; }
+
+    public String getActionTarget() { return actionTarget; }
+
+    public String getActionValue() { return actionValue; }
+
+    public Date getStartTime() { return startTime; }
+
+    public Date getEndTime() { return endTime; }
+
+    public String getSystem() { return system; }
+
+    public Integer getContext() { return context; }
+}
@@ -0,0 +1,79 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import com.inductiveautomation.ignition.gateway.datasource.SRConnection;
+import com.inductiveautomation.ignition.gateway.history.DatasourceData;
+import com.inductiveautomation.ignition.gateway.history.HistoryFlavor;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Many audit rows written with one JDBC batch in one transaction. If any row fails the whole batch is
+ * rolled back and the exception goes back to store and forward, which keeps the data and retries it.
+ */
+public class AuditRecordBatchSFData implements DatasourceData {
+    String query;
+    String datasource;
+    List<Object[]> rows;
+
+    public AuditRecordBatchSFData(String datasource, String query, List<Object[]> rows) {
+        this.datasource = datasource;
+        this.query = query;
+        this.rows = rows;
+    }
+
+    @Override
+    public int getDataCount() {
+        return rows.size();
+    }
+
+    @Override
+    public HistoryFlavor getFlavor() {
+        return DatasourceData.FLAVOR;
+    }
+
+    @Override
+    public String getLoggerName() {
+        return "Audit Log Store & Forward";
+    }
+
+    @Override
+    public String getSignature() {
+        return "SFQuery: " + datasource + " - " + query;
+    }
+
+    @Override
+    public void storeToConnection(SRConnection conn) throws Exception {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try (PreparedStatement ps = conn.prepareStatement(query)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    setParameter(ps, i + 1, row[i]);
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        } catch (Exception e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void setParameter(PreparedStatement ps, int index, Object value) throws Exception {
+        if (value == null) {
+            ps.setNull(index, Types.VARCHAR);
+        } else if (value instanceof Date && !(value instanceof Timestamp)) {
+            ps.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
+
+/**
+ * Receives audit query results one row at a time, oldest first.
+ */
+public interface AuditRecordHandler {
+
+    /**
+     * @return false to stop the query, the remaining rows are not read
+     */
+    boolean onRecord(AuditRecord record);
+}
@@ -0,0 +1,55 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * SQL LIKE evaluated in memory: % matches any run of characters and _ matches exactly one. Matching is case
+ * insensitive, like the default collation of most databases the audit table lives in.
+ */
+class LikeMatcher {
+    private final Pattern pattern;
+
+    private LikeMatcher(Pattern pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * @return null for a blank filter, which matches everything
+     */
+    static LikeMatcher compile(String like) {
+        if (StringUtils.isBlank(like)) {
+            return null;
+        }
+
+        StringBuilder regex = new StringBuilder(like.length() + 8);
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+
+        return new LikeMatcher(Pattern.compile(regex.toString(),
+                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL));
+    }
+
+    boolean matches(String value) {
+        return value != null && pattern.matcher(value).matches();
+    }
+
+    static boolean matches(LikeMatcher matcher, String value) {
+        return matcher == null || matcher.matches(value);
+    }
+}
@@ -0,0 +1,162 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import com.inductiveautomation.ignition.common.model.ApplicationScope;
+import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
+import com.inductiveautomation.ignition.gateway.audit.DefaultAuditRecord;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The most recent audit records, held column-wise so queries over the last minutes or hours skip the
+ * database.
+ */
+public class RecentAuditBuffer {
+    private final int capacity;
+    private final long[] timestamps;
+    private final int[] statusCodes;
+    private final int[] contexts;
+    private final String[] actors;
+    private final String[] actorHosts;
+    private final String[] actions;
+    private final String[] actionTargets;
+    private final String[] actionValues;
+    private final String[] systems;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long startedAt = System.currentTimeMillis();
+    private int next = 0;
+    private int size = 0;
+    private long evictedUpTo = Long.MIN_VALUE;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    RecentAuditBuffer(int capacity) {
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.statusCodes = new int[capacity];
+        this.contexts = new int[capacity];
+        this.actors = new String[capacity];
+        this.actorHosts = new String[capacity];
+        this.actions = new String[capacity];
+        this.actionTargets = new String[capacity];
+        this.actionValues = new String[capacity];
+        this.systems = new String[capacity];
+    }
+
+    void add(AuditRecord record) {
+        Date timestamp = record.getTimestamp();
+        long time = timestamp == null ? System.currentTimeMillis() : timestamp.getTime();
+
+        lock.writeLock().lock();
+        try {
+            if (size == capacity) {
+                evictedUpTo = Math.max(evictedUpTo, timestamps[next]);
+            } else {
+                size++;
+            }
+            timestamps[next] = time;
+            statusCodes[next] = record.getStatusCode();
+            contexts[next] = record.getOriginatingContext();
+            actors[next] = record.getActor();
+            actorHosts[next] = record.getActorHost();
+            actions[next] = record.getAction();
+            actionTargets[next] = record.getActionTarget();
+            actionValues[next] = record.getActionValue();
+            systems[next] = record.getOriginatingSystem();
+            next = next + 1 == capacity ? 0 : next + 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Answered here only when the start time is after this profile started and after the newest record the
+     * ring has overwritten.
+     *
+     * @return the matching records oldest first, or null if the buffer can't answer for the whole time range
+     */
+    List<AuditRecord> query(AuditQueryFilter filter) {
+        Date start = filter.getStartTime();
+        long from = start == null ? Long.MIN_VALUE : start.getTime();
+        long to = filter.getEndTime() == null ? Long.MAX_VALUE : filter.getEndTime().getTime();
+
+        LikeMatcher actor = LikeMatcher.compile(filter.getActor());
+        LikeMatcher action = LikeMatcher.compile(filter.getAction());
+        LikeMatcher target = LikeMatcher.compile(filter.getActionTarget());
+        LikeMatcher value = LikeMatcher.compile(filter.getActionValue());
+        LikeMatcher system = LikeMatcher.compile(filter.getSystem());
+        int contextMask = filter.getContext() == null ? 0
+                : filter.getContext() & (ApplicationScope.CLIENT | ApplicationScope.DESIGNER | ApplicationScope.GATEWAY);
+
+        List<AuditRecord> results = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            if (start == null || from < startedAt || from <= evictedUpTo) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+
+            int first = size == capacity ? next : 0;
+            for (int n = 0; n < size; n++) {
+                int i = (first + n) % capacity;
+                long time = timestamps[i];
+                if (time < from || time > to) continue;
+                if (contextMask != 0 && !isScope(contexts[i], contextMask)) continue;
+                if (!LikeMatcher.matches(system, systems[i])) continue;
+                if (!LikeMatcher.matches(actor, actors[i])) continue;
+                if (!LikeMatcher.matches(action, actions[i])) continue;
+                if (!LikeMatcher.matches(target, actionTargets[i])) continue;
+                if (!LikeMatcher.matches(value, actionValues[i])) continue;
+
+                results.add(new DefaultAuditRecord(actions[i], actionTargets[i], actionValues[i], actors[i],
+                        actorHosts[i], contexts[i], systems[i], statusCodes[i], new Date(time)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // records arrive in audit order, which can differ slightly from timestamp order; the sort is stable
+        results.sort((a, b) -> a.getTimestamp().compareTo(b.getTimestamp()));
+        return results;
+    }
+
+    /** The same as the database filter: the context is one of the scopes selected in the mask */
+    private static boolean isScope(int context, int mask) {
+        return (context == ApplicationScope.CLIENT || context == ApplicationScope.DESIGNER
+                || context == ApplicationScope.GATEWAY) && (context & mask) != 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
@@ -0,0 +1,82 @@
+package com.inductiveautomation.ignition.examples.kafka.columnar;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the primitives BinaryWriter writes: zig-zag varints, little endian doubles and length + 1 prefixed
+ * UTF-8 strings. Running past the end of the record throws IllegalArgumentException.
+ */
+class ByteReader {
+    private final byte[] buffer;
+    private int position;
+
+    ByteReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    int readByte() {
+        if (position >= buffer.length) {
+            throw new IllegalArgumentException("Record ends at byte " + buffer.length);
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    long readUnsignedLong() {
+        long n = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            n |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+        throw new IllegalArgumentException("Varint longer than 10 bytes at byte " + position);
+    }
+
+    long readLong() {
+        long n = readUnsignedLong();
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    int readInt() {
+        long n = readLong();
+        if (n < Integer.MIN_VALUE || n > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Int out of range at byte " + position);
+        }
+        return (int) n;
+    }
+
+    /** A count of rows or entries, which can't exceed what the rest of the record could hold */
+    int readCount() {
+        int n = readInt();
+        if (n < 0 || n > buffer.length - position + 1) {
+            throw new IllegalArgumentException("Bad count " + n + " at byte " + position);
+        }
+        return n;
+    }
+
+    double readDouble() {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (long) readByte() << (i * 8);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    String readString() {
+        long length = readUnsignedLong();
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > buffer.length - position) {
+            throw new IllegalArgumentException("String of " + (length - 1) + " bytes runs past the record");
+        }
+        String s = new String(buffer, position, (int) (length - 1), StandardCharsets.UTF_8);
+        position += (int) (length - 1);
+        return s;
+    }
+
+    boolean hasRemaining() {
+        return position < buffer.length;
+    }
+}
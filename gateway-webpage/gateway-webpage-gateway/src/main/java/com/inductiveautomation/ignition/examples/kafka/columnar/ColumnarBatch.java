@@ -0,0 +1,85 @@
+package com.inductiveautomation.ignition.examples.kafka.columnar;
+
+import java.util.Date;
+
+/**
+ * One decoded columnar tag batch, rows are read by index.
+ */
+
+public class ColumnarBatch {
+
+    private final String gatewayName;
+    private final String provider;
+    private final String[] dictionary;
+    private final int[] pathIndexes;
+    private final long[] timestamps;
+    private final int[] dataTypes;
+    private final int[] qualities;
+    private final int[] valueTypes;
+    // longs, dates, booleans (0/1) and double bits per row, strings in their own array
+    private final long[] numbers;
+    private final String[] strings;
+
+    ColumnarBatch(String gatewayName, String provider, String[] dictionary, int[] pathIndexes, long[] timestamps,
+                  int[] dataTypes, int[] qualities, int[] valueTypes, long[] numbers, String[] strings) {
+        this.gatewayName = gatewayName;
+        this.provider = provider;
+        this.dictionary = dictionary;
+        this.pathIndexes = pathIndexes;
+        this.timestamps = timestamps;
+        this.dataTypes = dataTypes;
+        this.qualities = qualities;
+        this.valueTypes = valueTypes;
+        this.numbers = numbers;
+        this.strings = strings;
+    }
+
+    public String getGatewayName() { return gatewayName; }
+
+    public String getProvider() { return provider; }
+
+    public int size() { return timestamps.length; }
+
+    public String getTagPath(int row) { return dictionary[pathIndexes[row]]; }
+
+    /** Epoch milliseconds, ColumnarFormat.NO_TIMESTAMP when the value had none */
+    public long getTimestamp(int row) { return timestamps[row]; }
+
+    /** Ordinal of the tag's data type class + 1, 0 when unknown */
+    public int getDataType(int row) { return dataTypes[row]; }
+
+    /** The tag's quality code, ColumnarFormat.NO_QUALITY when the value had none */
+    public int getQuality(int row) { return qualities[row]; }
+
+    /** One of the ColumnarFormat TYPE_* constants */
+    public int getValueType(int row) { return valueTypes[row]; }
+
+    public long getLong(int row) {
+        return valueTypes[row] == ColumnarFormat.TYPE_DOUBLE ? (long) getDouble(row) : numbers[row];
+    }
+
+    public double getDouble(int row) {
+        return valueTypes[row] == ColumnarFormat.TYPE_DOUBLE ? Double.longBitsToDouble(numbers[row]) : numbers[row];
+    }
+
+    public boolean getBoolean(int row) {
+        return numbers[row] != 0;
+    }
+
+    public Object getValue(int row) {
+        switch (valueTypes[row]) {
+            case ColumnarFormat.TYPE_LONG:
+                return numbers[row];
+            case ColumnarFormat.TYPE_DOUBLE:
+                return Double.longBitsToDouble(numbers[row]);
+            case ColumnarFormat.TYPE_BOOLEAN:
+                return numbers[row] != 0;
+            case ColumnarFormat.TYPE_DATE:
+                return new Date(numbers[row]);
+            case ColumnarFormat.TYPE_STRING:
+                return strings[row];
+            default:
+                return null;
+        }
+    }
+}
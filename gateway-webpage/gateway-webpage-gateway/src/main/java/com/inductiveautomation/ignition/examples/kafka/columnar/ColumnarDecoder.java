@@ -0,0 +1,125 @@
+package com.inductiveautomation.ignition.examples.kafka.columnar;
+
+/**
+ * Reads the columnar tag batch records, see ColumnarFormat. Malformed records throw IllegalArgumentException.
+ */
+
+public final class ColumnarDecoder {
+
+    private ColumnarDecoder() {
+    }
+
+    /** @return true if the record is a columnar tag batch, other Columnar topic records use the binary format */
+    public static boolean isColumnar(byte[] record) {
+        return record.length >= 3 && (record[0] & 0xFF) == ColumnarFormat.MAGIC
+                && (record[2] & 0xFF) == ColumnarFormat.RECORD_TAG_COLUMNS;
+    }
+
+    public static ColumnarBatch decode(byte[] record) {
+        ByteReader in = new ByteReader(record);
+        if (in.readByte() != ColumnarFormat.MAGIC) {
+            throw new IllegalArgumentException("Not a Kafka module record");
+        }
+        int version = in.readByte();
+        if (version != ColumnarFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported record version " + version);
+        }
+        int type = in.readByte();
+        if (type != ColumnarFormat.RECORD_TAG_COLUMNS) {
+            throw new IllegalArgumentException("Record type " + type + " is not a columnar tag batch");
+        }
+
+        String gatewayName = in.readString();
+        String provider = in.readString();
+        int count = in.readCount();
+
+        String[] dictionary = new String[in.readCount()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readString();
+        }
+        int[] pathIndexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            pathIndexes[i] = in.readInt();
+            if (pathIndexes[i] < 0 || pathIndexes[i] >= dictionary.length) {
+                throw new IllegalArgumentException("Tag path index " + pathIndexes[i] + " outside the dictionary");
+            }
+        }
+
+        long[] timestamps = readTimestamps(in, count);
+        int[] dataTypes = readRuns(in, count);
+        int[] qualities = readRuns(in, count);
+        int[] valueTypes = readRuns(in, count);
+
+        long[] numbers = new long[count];
+        String[] strings = new String[count];
+        readValueColumns(in, valueTypes, numbers, strings);
+
+        return new ColumnarBatch(gatewayName, provider, dictionary, pathIndexes, timestamps, dataTypes, qualities,
+                valueTypes, numbers, strings);
+    }
+
+    private static long[] readTimestamps(ByteReader in, int count) {
+        long[] timestamps = new long[count];
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                timestamps[i] = in.readLong();
+            } else {
+                long delta = i == 1 ? in.readLong() : previousDelta + in.readLong();
+                timestamps[i] = previous + delta;
+                previousDelta = delta;
+            }
+            previous = timestamps[i];
+        }
+        return timestamps;
+    }
+
+    private static int[] readRuns(ByteReader in, int count) {
+        int[] column = new int[count];
+        int i = 0;
+        while (i < count) {
+            int value = in.readInt();
+            int run = in.readInt();
+            if (run < 1 || run > count - i) {
+                throw new IllegalArgumentException("Run of " + run + " at row " + i + " of " + count);
+            }
+            for (int end = i + run; i < end; i++) {
+                column[i] = value;
+            }
+        }
+        return column;
+    }
+
+    private static void readValueColumns(ByteReader in, int[] valueTypes, long[] numbers, String[] strings) {
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_LONG || valueTypes[i] == ColumnarFormat.TYPE_DATE) {
+                numbers[i] = in.readLong();
+            }
+        }
+
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_DOUBLE) {
+                numbers[i] = Double.doubleToRawLongBits(in.readDouble());
+            }
+        }
+
+        int bits = 8;
+        int packed = 0;
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_BOOLEAN) {
+                if (bits == 8) {
+                    packed = in.readByte();
+                    bits = 0;
+                }
+                numbers[i] = (packed >>> bits++) & 1;
+            }
+        }
+
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_STRING) {
+                strings[i] = in.readString();
+            }
+        }
+    }
+}
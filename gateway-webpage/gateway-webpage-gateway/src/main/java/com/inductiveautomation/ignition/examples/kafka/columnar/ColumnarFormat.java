@@ -0,0 +1,39 @@
+package com.inductiveautomation.ignition.examples.kafka.columnar;
+
+/**
+ * Constants of the columnar tag batch record. This package only needs the JDK, consumers can copy it.
+ */
+
+public final class ColumnarFormat {
+
+    // MAGIC, VERSION, RECORD_TAG_COLUMNS, gatewayName, provider, count, then
+    //     dictionary size, the distinct tag paths in order of first use, then count dictionary indexes
+    //     timestamps: the first epochms, the delta to the second, then the delta of every following delta
+    //     data types, qualities and value types: run lengths, each run a value and how many rows it covers
+    //     long column:    values of TYPE_LONG and TYPE_DATE rows
+    //     double column:  values of TYPE_DOUBLE rows, 8 byte little endian
+    //     boolean column: values of TYPE_BOOLEAN rows, packed 8 per byte, lowest bit first
+    //     string column:  values of TYPE_STRING rows
+    // Numbers and strings as in BinaryEncoder. TYPE_NULL rows have no entry in any value column, rows
+    // without a quality have NO_QUALITY and rows without a timestamp NO_TIMESTAMP.
+
+    public static final int MAGIC = 0x4B;
+    public static final int VERSION = 1;
+    public static final int RECORD_TAG_COLUMNS = 6;
+
+    public static final int TYPE_NULL = 0;
+    public static final int TYPE_LONG = 1;
+    public static final int TYPE_DOUBLE = 2;
+    public static final int TYPE_BOOLEAN = 3;
+    public static final int TYPE_STRING = 4;
+    public static final int TYPE_DATE = 5;
+
+    /** Quality code written for a value that has no quality */
+    public static final int NO_QUALITY = -1;
+
+    /** Timestamp written for a value that has none, the deltas wrap around but still decode to it exactly */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private ColumnarFormat() {
+    }
+}
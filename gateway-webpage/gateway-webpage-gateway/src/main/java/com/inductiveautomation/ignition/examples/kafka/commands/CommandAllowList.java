@@ -0,0 +1,75 @@
+package com.inductiveautomation.ignition.examples.kafka.commands;
+
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The tags the command topic may write: [provider] for a whole provider, [provider]folder/sub for a folder and
+ * below. An empty list allows nothing. Names are matched case-insensitively like Ignition's.
+ */
+public class CommandAllowList {
+
+    private static final Logger logger = LoggerFactory.getLogger("Kafka.CommandAllowList");
+
+    private final List<String[]> entries = new ArrayList<>();
+
+    private CommandAllowList() {
+    }
+
+    /** Entries without a [provider] are logged and skipped */
+    public static CommandAllowList compile(String[] entries) {
+        CommandAllowList list = new CommandAllowList();
+        if (entries == null) {
+            return list;
+        }
+        for (String entry : entries) {
+            String e = entry.trim();
+            int close = e.indexOf(']');
+            if (!e.startsWith("[") || close < 2) {
+                logger.warn("Ignoring allowed tag entry '" + e + "': expected [provider] or [provider]folder/sub");
+                continue;
+            }
+            String folder = trimSlashes(e.substring(close + 1).trim());
+            list.entries.add(new String[]{e.substring(1, close).trim().toLowerCase(Locale.ROOT),
+                    folder.toLowerCase(Locale.ROOT)});
+        }
+        return list;
+    }
+
+    /** Relative paths are never allowed, they could climb out of an allowed folder */
+    public boolean allows(String provider, TagPath path) {
+        String partial = trimSlashes(path.toStringPartial()).toLowerCase(Locale.ROOT);
+        if (partial.contains("..")) {
+            return false;
+        }
+        String source = provider.toLowerCase(Locale.ROOT);
+
+        for (String[] entry : entries) {
+            if (!entry[0].equals(source)) {
+                continue;
+            }
+            String folder = entry[1];
+            if (folder.isEmpty() || partial.equals(folder)
+                    || (partial.startsWith(folder) && partial.charAt(folder.length()) == '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    private static String trimSlashes(String s) {
+        int start = 0, end = s.length();
+        while (start < end && s.charAt(start) == '/') start++;
+        while (end > start && s.charAt(end - 1) == '/') end--;
+        return s.substring(start, end);
+    }
+}
@@ -0,0 +1,426 @@
+package com.inductiveautomation.ignition.examples.kafka.commands;
+
+import com.inductiveautomation.ignition.common.execution.ExecutionManager;
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+import com.inductiveautomation.ignition.common.tags.paths.parser.TagPathParser;
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies tag writes from the command topic, one write per provider per poll, and commits the offsets
+ * once the writes completed. Failed writes are committed too, so they are delivered at most once and only
+ * counted in getFailed(); retrying them would hold up every later command behind one bad tag.
+ */
+
+public class CommandConsumer {
+
+    private static final long POLL_MS = 500;
+    private static final long PENDING_WARNING_MS = 30_000;
+    private static final String DEFAULT_PROVIDER = "default";
+    private static final String TASK_OWNER = "KafkaCommands";
+    // the consume task loops until stopped, the rate only matters if it ever returns early
+    private static final int RESTART_MS = 1000;
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final Logger logger = LoggerFactory.getLogger("Kafka." + getClass().getSimpleName());
+    private final Properties props;
+    private final String topic;
+    private final TagWriter writer;
+    private final CommandAllowList allowList;
+    private volatile boolean running;
+    private volatile boolean paused;
+    private volatile Consumer<byte[], byte[]> consumer;
+    private volatile boolean polled;
+    private ExecutionManager executionManager;
+
+    // held while the consume task runs, so stop() can wait for it
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder pauses = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+
+    /**
+     * @param securityProps adds the SSL settings when the gateway uses SSL, see ProducerRegistry.addSSLProps
+     */
+    public CommandConsumer(KafkaSettingsRecord kafkaSettings, String hostName, TagWriter writer,
+                           java.util.function.Consumer<Properties> securityProps) {
+        this.topic = kafkaSettings.getCommandTopic();
+        this.writer = writer;
+        this.allowList = CommandAllowList.compile(kafkaSettings.getCommandAllowList());
+
+        String group = kafkaSettings.getCommandGroup();
+        this.props = new Properties();
+        props.setProperty(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaSettings.getBrokerList());
+        props.setProperty(ConsumerConfig.GROUP_ID_CONFIG, group != null ? group : "ignition-" + hostName);
+        props.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+                Integer.toString(kafkaSettings.getCommandBatchSize()));
+        // a new group starts at the end of the topic, old setpoints are not replayed onto the tags
+        props.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        if (kafkaSettings.getUseSSL()) {
+            securityProps.accept(props);
+        }
+    }
+
+    /** The consumer owns the execution manager from here on and shuts it down in stop() */
+    public synchronized void start(ExecutionManager executionManager) {
+        if (this.executionManager != null) {
+            return;
+        }
+        running = true;
+        this.executionManager = executionManager;
+        executionManager.register(TASK_OWNER, topic, this::run, RESTART_MS);
+        logger.info("Consuming tag writes from " + topic + " as group "
+                + props.getProperty(ConsumerConfig.GROUP_ID_CONFIG));
+        if (allowList.isEmpty()) {
+            logger.warn("No tags are allowed for write-back, every write from " + topic + " is denied");
+        }
+    }
+
+    /** Writes still pending are left uncommitted, they are consumed again on the next start */
+    public synchronized void stop() {
+        if (executionManager == null) {
+            return;
+        }
+        running = false;
+        executionManager.unRegister(TASK_OWNER, topic);
+        Consumer<byte[], byte[]> current = this.consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        try {
+            if (runLock.tryLock(POLL_MS * 10, TimeUnit.MILLISECONDS)) {
+                runLock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executionManager.shutdown();
+        executionManager = null;
+    }
+
+    protected Consumer<byte[], byte[]> createConsumer(Properties props) {
+        Thread.currentThread().setContextClassLoader(null); // same as the producers, see ProducerRegistry
+        return new KafkaConsumer<>(props);
+    }
+
+    /**
+     * Recreates the consumer after a Kafka error, waiting twice as long after each failure up to MAX_BACKOFF_MS.
+     * The wait starts over once a new consumer polled successfully.
+     */
+    private void run() {
+        if (!runLock.tryLock()) {
+            return;
+        }
+        try {
+            long backoff = MIN_BACKOFF_MS;
+            while (running) {
+                try {
+                    consume();
+                } catch (KafkaException e) {
+                    if (!running) {
+                        break;
+                    }
+                    restarts.increment();
+                    if (polled) {
+                        backoff = MIN_BACKOFF_MS;
+                    }
+                    logger.error("Command consumer failed, restarting in " + backoff + "ms: " + e);
+                    if (!sleep(backoff)) {
+                        break;
+                    }
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+                }
+            }
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private void consume() {
+        polled = false;
+        try (Consumer<byte[], byte[]> c = createConsumer(props)) {
+            this.consumer = c;
+            c.subscribe(Collections.singletonList(topic));
+
+            while (running) {
+                ConsumerRecords<byte[], byte[]> records = c.poll(Duration.ofMillis(POLL_MS));
+                polled = true;
+                if (!records.isEmpty() && apply(c, records)) {
+                    commit(c, records);
+                }
+            }
+        } catch (WakeupException e) {
+            // stop() was called
+        } finally {
+            this.consumer = null;
+            this.paused = false;
+        }
+    }
+
+    /** @return false if stopped or interrupted while waiting */
+    private boolean sleep(long millis) {
+        long until = System.currentTimeMillis() + millis;
+        try {
+            while (running) {
+                long left = until - System.currentTimeMillis();
+                if (left <= 0) {
+                    return true;
+                }
+                Thread.sleep(Math.min(left, POLL_MS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /** @return false if stopped before every write completed */
+    private boolean apply(Consumer<byte[], byte[]> c, ConsumerRecords<byte[], byte[]> records) {
+        Map<TagPath, Object> latest = new LinkedHashMap<>();
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            received.increment();
+            decode(record, latest);
+        }
+
+        Map<String, List<TagPath>> paths = new HashMap<>();
+        Map<String, List<Object>> values = new HashMap<>();
+        int refused = 0;
+        for (Map.Entry<TagPath, Object> write : latest.entrySet()) {
+            String provider = write.getKey().getSource();
+            if (provider == null || provider.isEmpty()) {
+                provider = DEFAULT_PROVIDER;
+            }
+            if (!allowList.allows(provider, write.getKey())) {
+                if (refused++ == 0) {
+                    logger.warn("Write to " + write.getKey() + " denied, the tag is not on the allow list");
+                }
+                continue;
+            }
+            paths.computeIfAbsent(provider, p -> new ArrayList<>()).add(write.getKey());
+            values.computeIfAbsent(provider, p -> new ArrayList<>()).add(write.getValue());
+        }
+
+        denied.add(refused);
+
+        List<CompletableFuture<?>> writes = new ArrayList<>(paths.size());
+        for (Map.Entry<String, List<TagPath>> batch : paths.entrySet()) {
+            writes.add(write(batch.getKey(), batch.getValue(), values.get(batch.getKey())));
+        }
+        return awaitWrites(c, CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])));
+    }
+
+    private CompletableFuture<?> write(String provider, List<TagPath> paths, List<Object> values) {
+        CompletableFuture<List<QualityCode>> future;
+        try {
+            future = writer.write(provider, paths, values);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        return future.handle((qualities, error) -> {
+            if (error != null) {
+                failed.add(paths.size());
+                logger.warn("Writing " + paths.size() + " tags of provider " + provider + " failed, they are not"
+                        + " retried: " + error);
+                return null;
+            }
+            int bad = 0;
+            for (int i = 0; i < qualities.size(); i++) {
+                if (qualities.get(i) == null || !qualities.get(i).isGood()) {
+                    if (bad++ == 0) {
+                        logger.warn("Write to " + paths.get(i) + " returned " + qualities.get(i));
+                    }
+                }
+            }
+            failed.add(bad);
+            written.add(paths.size() - bad);
+            return null;
+        });
+    }
+
+    /**
+     * Keeps polling with the partitions paused until the writes complete, so the group doesn't consider this
+     * consumer dead. Partitions assigned by a rebalance meanwhile start unpaused; anything they return is
+     * rewound so it is read again after this batch.
+     */
+    private boolean awaitWrites(Consumer<byte[], byte[]> c, CompletableFuture<Void> writes) {
+        if (writes.isDone()) {
+            return true;
+        }
+
+        pauses.increment();
+        paused = true;
+        long started = System.currentTimeMillis();
+        long warned = started;
+        try {
+            while (!writes.isDone()) {
+                if (!running) {
+                    return false;
+                }
+                c.pause(c.assignment());
+                ConsumerRecords<byte[], byte[]> early = c.poll(Duration.ofMillis(POLL_MS));
+                for (TopicPartition partition : early.partitions()) {
+                    c.seek(partition, early.records(partition).get(0).offset());
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - warned >= PENDING_WARNING_MS) {
+                    warned = now;
+                    logger.warn("Tag writes pending for " + (now - started) / 1000 + "s, command topic paused");
+                }
+            }
+            return true;
+        } finally {
+            c.resume(c.paused());
+            paused = false;
+        }
+    }
+
+    private void commit(Consumer<byte[], byte[]> c, ConsumerRecords<byte[], byte[]> records) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.records(partition);
+            long last = partitionRecords.get(partitionRecords.size() - 1).offset();
+            offsets.put(partition, new OffsetAndMetadata(last + 1));
+        }
+
+        try {
+            c.commitSync(offsets);
+        } catch (WakeupException e) {
+            throw e;
+        } catch (KafkaException e) {
+            // the partitions moved to another consumer, which reads these writes again
+            logger.warn("Unable to commit command offsets, the writes may be applied twice: " + e);
+        }
+    }
+
+    private void decode(ConsumerRecord<byte[], byte[]> record, Map<TagPath, Object> latest) {
+        try {
+            Object json = new JSONTokener(new String(record.value(), StandardCharsets.UTF_8)).nextValue();
+            if (json instanceof JSONArray) {
+                decodeWrites((JSONArray) json, latest);
+            } else if (json instanceof JSONObject && ((JSONObject) json).has("writes")) {
+                decodeWrites(((JSONObject) json).getJSONArray("writes"), latest);
+            } else if (json instanceof JSONObject) {
+                decodeWrite((JSONObject) json, latest);
+            } else {
+                throw new JSONException("expected a JSON object or array");
+            }
+        } catch (JSONException | IOException | RuntimeException e) {
+            rejected.increment();
+            logger.warn("Skipping command at " + record.topic() + "-" + record.partition() + "@" + record.offset()
+                    + ": " + e.getMessage());
+        }
+    }
+
+    private void decodeWrites(JSONArray writes, Map<TagPath, Object> latest) throws JSONException, IOException {
+        for (int i = 0; i < writes.length(); i++) {
+            decodeWrite(writes.getJSONObject(i), latest);
+        }
+    }
+
+    private void decodeWrite(JSONObject write, Map<TagPath, Object> latest) throws JSONException, IOException {
+        TagPath path = TagPathParser.parse(write.getString("tagPath"));
+        Object value = write.opt("value");
+        if (value == JSONObject.NULL) {
+            value = null;
+        } else if (value instanceof JSONObject || value instanceof JSONArray) {
+            // documents are written as their JSON text
+            value = value.toString();
+        }
+
+        // the last write to a tag wins, it keeps the place of the first one
+        if (latest.containsKey(path)) {
+            coalesced.increment();
+        }
+        latest.put(path, value);
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public boolean isRunning() {
+        return consumer != null;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /** Writes to tags outside the allow list */
+    public long getDenied() {
+        return denied.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getPauses() {
+        return pauses.sum();
+    }
+
+    /** Times the consumer was recreated after a Kafka error */
+    public long getRestarts() {
+        return restarts.sum();
+    }
+}
@@ -0,0 +1,16 @@
+package com.inductiveautomation.ignition.examples.kafka.commands;
+
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Writes a batch of tags of one provider, the future completes with one quality per path.
+ */
+
+public interface TagWriter {
+
+    CompletableFuture<List<QualityCode>> write(String provider, List<TagPath> paths, List<Object> values);
+}
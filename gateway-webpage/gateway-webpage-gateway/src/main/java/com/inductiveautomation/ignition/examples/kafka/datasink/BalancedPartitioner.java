@@ -0,0 +1,111 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Partitioner sending every key to its murmur2 partition, like Kafka's default, except for hot keys which are spread
+ * over a few partitions after their own. Hot keys give up per key ordering for as long as they stay hot.
+ */
+
+public class BalancedPartitioner implements Partitioner {
+
+    // keys are counted over windows of this many keyed records per topic
+    private static final int WINDOW_RECORDS = 10_000;
+    // a key is hot when it had more than this many times its fair share of the last window
+    private static final int HOT_FACTOR = 2;
+    // a hot key is salted over its home partition and the next SPREAD - 1 partitions
+    private static final int SPREAD = 4;
+
+    private final Map<String, TopicLoad> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes,
+                         Cluster cluster) {
+        List<PartitionInfo> partitions = cluster.partitionsForTopic(topic);
+        int count = partitions.size();
+
+        if (keyBytes == null) {
+            return Utils.toPositive(roundRobin.getAndIncrement()) % count;
+        }
+
+        int home = Utils.toPositive(Utils.murmur2(keyBytes)) % count;
+        if (count == 1) {
+            return home;
+        }
+
+        TopicLoad current = topics.get(topic);
+        if (current == null || current.partitions != count) {
+            current = new TopicLoad(count);
+            topics.put(topic, current);
+        }
+
+        ByteBuffer wrapped = ByteBuffer.wrap(keyBytes);
+        current.record(wrapped);
+        if (!current.isHot(wrapped)) {
+            return home;
+        }
+        int salt = Utils.toPositive(current.salt.getAndIncrement()) % Math.min(SPREAD, count);
+        return (home + salt) % count;
+    }
+
+    @Override
+    public void close() {
+        topics.clear();
+    }
+
+    private static class TopicLoad {
+        private final int partitions;
+        private final AtomicLong seen = new AtomicLong();
+        private final AtomicInteger salt = new AtomicInteger();
+        private volatile Map<ByteBuffer, AtomicInteger> counts = new ConcurrentHashMap<>();
+        private volatile Set<ByteBuffer> hot = Collections.emptySet();
+
+        private TopicLoad(int partitions) {
+            this.partitions = partitions;
+        }
+
+        private void record(ByteBuffer key) {
+            counts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            if (seen.incrementAndGet() % WINDOW_RECORDS == 0) {
+                roll();
+            }
+        }
+
+        private boolean isHot(ByteBuffer key) {
+            return hot.contains(key);
+        }
+
+        /** Keys over their share of the window that just ended are hot for the next one */
+        private synchronized void roll() {
+            Map<ByteBuffer, AtomicInteger> ended = counts;
+            counts = new ConcurrentHashMap<>();
+
+            long threshold = (long) HOT_FACTOR * WINDOW_RECORDS / partitions;
+            Set<ByteBuffer> next = new HashSet<>();
+            for (Map.Entry<ByteBuffer, AtomicInteger> entry : ended.entrySet()) {
+                if (entry.getValue().get() > threshold) {
+                    next.add(entry.getKey());
+                }
+            }
+            hot = next.isEmpty() ? Collections.emptySet() : next;
+        }
+    }
+}
@@ -15,10 +15,13 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class BaseSink extends AbstractSink {
 
@@ -27,17 +30,14 @@ public abstract class BaseSink extends AbstractSink {
     protected String name;
     protected final Logger logger = LoggerFactory.getLogger("Kafka." + getClass().getSimpleName());
     protected KafkaSettingsRecord config;
-    protected final String keyStoreLoc = "/webserver/ssl.pfx";
-    protected final String keyStorePwd = "ignition";
-    protected final String trustStoreLoc = "/data/certificates/truststore.jks";
-    protected final String trustStorePwd = "Ignition2021!";
     protected GatewayContext context;
     protected String hostName;
+    protected SpillLog spill;
 
     public BaseSink(String pipelineName) {
         super(pipelineName);
         this.name = pipelineName;
-        stats = new HashMap<>();
+        stats = new ConcurrentHashMap<>();
 
         // This is in place to ensure consistent gateway names
         try {
@@ -57,12 +57,39 @@ public abstract class BaseSink extends AbstractSink {
     public abstract void closeProducer();
     public abstract void sendDataWithProducer(SinkData data) throws IOException;
     public abstract void sendPipelineDataWithProducer(SinkData data) throws IOException;
+    public abstract void sendBatchWithProducer(List<SinkData> batch) throws IOException;
+
+    /** Sends a record that doesn't go through store and forward, sinks with a spill log keep it if undeliverable */
+    public void sendDirectWithProducer(SinkData data) throws IOException {
+        sendPipelineDataWithProducer(data);
+    }
+
+    /** Sends records that don't go through store and forward together, in order */
+    public void sendDirectBatchWithProducer(List<SinkData> batch) throws IOException {
+        for (SinkData data : batch) {
+            sendDirectWithProducer(data);
+        }
+    }
+
+    /**
+     * The whole transaction is sent as one batch and only returns once Kafka has acknowledged every record.
+     * An exception leaves the transaction with store and forward, which retries or quarantines it.
+     */
     public void storeData(HistoricalData data) throws IOException {
+        List<HistoricalData> rows = BasicDataTransaction.class.cast(data).getData();
+        List<SinkData> batch = new ArrayList<>(rows.size());
+        Set<String> signatures = new LinkedHashSet<>();
 
-        for(HistoricalData row : BasicDataTransaction.class.cast(data).getData()) {
+        for (HistoricalData row : rows) {
             SinkData value = SinkData.class.cast(row);
-            sendPipelineDataWithProducer(value);
-            this.stats.get(value.getSignature()).setLastMessageTime();
+            batch.add(value);
+            signatures.add(value.getSignature());
+        }
+
+        sendBatchWithProducer(batch);
+
+        for (String signature : signatures) {
+            setLastMessageTime(signature);
         }
     }
 
@@ -87,6 +114,15 @@ public abstract class BaseSink extends AbstractSink {
         return this.config.getBrokerList();
     }
 
+    /** @return null when this sink has no spill log */
+    public SpillLog getSpillLog() {
+        return this.spill;
+    }
+
+    public String getSpillState() {
+        return this.spill == null ? "Off" : "Idle";
+    }
+
     public Collection<MessageStats> getStats() {
         return this.stats.values();
     }
@@ -102,15 +138,20 @@ public abstract class BaseSink extends AbstractSink {
         }
     }
 
+    // stats are only kept for the signatures added with addStats, anything else isn't counted
+
     public void setLastMessageTime(String source) {
-        this.stats.get(source).setLastMessageTime();
+        MessageStats stat = this.stats.get(source);
+        if (stat != null) stat.setLastMessageTime();
     }
 
     public void addOneFailedCount(String source) {
-        this.stats.get(source).addOneFailedCount();
+        MessageStats stat = this.stats.get(source);
+        if (stat != null) stat.addOneFailedCount();
     }
 
     public void addOneSuccessCount(String source) {
-        this.stats.get(source).addOneSuccessCount();
+        MessageStats stat = this.stats.get(source);
+        if (stat != null) stat.addOneSuccessCount();
     }
 }
@@ -0,0 +1,177 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.alarming.AlarmEvent;
+import com.inductiveautomation.ignition.common.alarming.EventData;
+import com.inductiveautomation.ignition.examples.kafka.columnar.ColumnarFormat;
+import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+
+import java.util.List;
+
+/**
+ * Compact binary encoding of the fields the JSON encoder sends.
+ */
+
+public class BinaryEncoder implements SinkEncoder {
+
+    // Every record starts with MAGIC, VERSION and one of the RECORD_* types, then
+    //     tag value:   gatewayName, provider, tagPath, type, quality, value, epochms
+    //     tag batch:   gatewayName, provider, count, then per value tagPath, type, quality, value, epochms delta
+    //     tag summary: gatewayName, provider, tagPath, windowStart, windowEnd, count, min, max, avg, last
+    //     alarm:       uuid, gatewayName, provider, tagPath, displayPath, priority, eventType, eventData,
+    //                  eventFlags, epochms
+    //     audit:       epochms, originatingSystem, originatingContext, actor, actorHost, action, actionTarget,
+    //                  actionValue, statusCode
+    // Numbers are zig-zag varints, strings length + 1 prefixed UTF-8 (0 is null), values use BinaryWriter's
+    // tags, the summary's doubles are 8 byte little endian. type is the ordinal of the tag's data type class + 1
+    // (0 when unknown), quality is ColumnarFormat.NO_QUALITY and epochms ColumnarFormat.NO_TIMESTAMP when the
+    // value has none. The columnar tag batch is RECORD_TAG_COLUMNS, see ColumnarFormat.
+
+    public static final int MAGIC = 0x4B;
+    public static final int VERSION = 1;
+    public static final int RECORD_TAG_VALUE = 1;
+    public static final int RECORD_TAG_BATCH = 2;
+    public static final int RECORD_ALARM = 3;
+    public static final int RECORD_AUDIT = 4;
+    public static final int RECORD_TAG_SUMMARY = 5;
+
+    private static final ThreadLocal<BinaryWriter> WRITER = ThreadLocal.withInitial(() -> new BinaryWriter(4096));
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public byte[] encodeTagValue(String gatewayName, String provider, String tagPath, HistoricalTagValue value) {
+        BinaryWriter out = header(RECORD_TAG_VALUE);
+        out.writeString(gatewayName);
+        out.writeString(provider);
+        writeTag(out, tagPath, value);
+        out.writeLong(epochMillis(value));
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeTagValue(CachedTagPath path, HistoricalTagValue value) {
+        BinaryWriter out = header(RECORD_TAG_VALUE);
+        out.writeBytes(path.getBinaryHead());
+        writeTagFields(out, value);
+        out.writeLong(epochMillis(value));
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeCachedTagBatch(String gatewayName, String provider, List<CachedTagPath> tagPaths,
+                                       List<HistoricalTagValue> values) {
+        BinaryWriter out = header(RECORD_TAG_BATCH);
+        out.writeString(gatewayName);
+        out.writeString(provider);
+        out.writeInt(values.size());
+
+        long previous = 0;
+        for (int i = 0; i < values.size(); i++) {
+            HistoricalTagValue value = values.get(i);
+            long epochms = epochMillis(value);
+            out.writeBytes(tagPaths.get(i).getBinaryPath());
+            writeTagFields(out, value);
+            out.writeLong(epochms - previous);
+            previous = epochms;
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeTagBatch(String gatewayName, String provider, List<String> tagPaths,
+                                 List<HistoricalTagValue> values) {
+        BinaryWriter out = header(RECORD_TAG_BATCH);
+        out.writeString(gatewayName);
+        out.writeString(provider);
+        out.writeInt(values.size());
+
+        // timestamps in a scan set are nearly identical, so each is written as a delta from the previous one
+        long previous = 0;
+        for (int i = 0; i < values.size(); i++) {
+            HistoricalTagValue value = values.get(i);
+            long epochms = epochMillis(value);
+            writeTag(out, tagPaths.get(i), value);
+            out.writeLong(epochms - previous);
+            previous = epochms;
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeTagSummary(TagSummary summary) {
+        BinaryWriter out = header(RECORD_TAG_SUMMARY);
+        out.writeBytes(summary.getPath().getBinaryHead());
+        out.writeLong(summary.getWindowStart());
+        out.writeLong(summary.getWindowEnd());
+        out.writeLong(summary.getCount());
+        out.writeDouble(summary.getMin());
+        out.writeDouble(summary.getMax());
+        out.writeDouble(summary.getAvg());
+        out.writeDouble(summary.getLast());
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeAlarm(String gatewayName, String provider, String tagPath, String displayPath,
+                              AlarmEvent alarm, EventData data) {
+        BinaryWriter out = header(RECORD_ALARM);
+        out.writeString(alarm.getId().toString());
+        out.writeString(gatewayName);
+        out.writeString(provider);
+        out.writeString(tagPath);
+        out.writeString(displayPath);
+        out.writeInt(alarm.getPriority().ordinal());
+        out.writeInt(alarm.getState().ordinal());
+        out.writeString(String.valueOf(data.getRawValueMap()));
+        out.writeInt(alarm.getLastEventState().ordinal());
+        out.writeLong(data.getTimestamp());
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeAudit(AuditRecord record) {
+        BinaryWriter out = header(RECORD_AUDIT);
+        out.writeLong(record.getTimestamp().getTime());
+        out.writeString(record.getOriginatingSystem());
+        out.writeInt(record.getOriginatingContext());
+        out.writeString(record.getActor());
+        out.writeString(record.getActorHost());
+        out.writeString(record.getAction());
+        out.writeString(record.getActionTarget());
+        out.writeString(record.getActionValue());
+        out.writeInt(record.getStatusCode());
+        return out.toByteArray();
+    }
+
+    static BinaryWriter header(int recordType) {
+        BinaryWriter out = WRITER.get().reset();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(recordType);
+        return out;
+    }
+
+    private static void writeTag(BinaryWriter out, String tagPath, HistoricalTagValue value) {
+        out.writeString(tagPath);
+        writeTagFields(out, value);
+    }
+
+    private static void writeTagFields(BinaryWriter out, HistoricalTagValue value) {
+        Object type = value.getTypeClass();
+        out.writeInt(type instanceof Enum ? ((Enum<?>) type).ordinal() + 1 : 0);
+        out.writeInt(qualityCode(value));
+        out.writeValue(value.getValue());
+    }
+
+    static int qualityCode(HistoricalTagValue value) {
+        return value.getQuality() == null ? ColumnarFormat.NO_QUALITY : value.getQuality().getCode();
+    }
+
+    static long epochMillis(HistoricalTagValue value) {
+        return value.getTimestamp() == null ? ColumnarFormat.NO_TIMESTAMP : value.getTimestamp().getTime();
+    }
+}
@@ -0,0 +1,172 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Reusable byte buffer writing zig-zag varints, little endian doubles and length prefixed UTF-8 strings.
+ */
+
+public class BinaryWriter {
+
+    public static final int TYPE_NULL = 0;
+    public static final int TYPE_LONG = 1;
+    public static final int TYPE_DOUBLE = 2;
+    public static final int TYPE_BOOLEAN = 3;
+    public static final int TYPE_STRING = 4;
+    public static final int TYPE_DATE = 5;
+
+    private byte[] buffer;
+    private int position;
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    public BinaryWriter reset() {
+        this.position = 0;
+        return this;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public void writeByte(int b) {
+        ensure(1);
+        buffer[position++] = (byte) b;
+    }
+
+    public void writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public void writeBoolean(boolean b) {
+        writeByte(b ? 1 : 0);
+    }
+
+    public void writeInt(int n) {
+        writeLong(n);
+    }
+
+    public void writeLong(long n) {
+        writeUnsignedLong((n << 1) ^ (n >> 63));
+    }
+
+    public void writeUnsignedLong(long n) {
+        ensure(10);
+        while ((n & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        buffer[position++] = (byte) n;
+    }
+
+    public void writeDouble(double d) {
+        long bits = Double.doubleToLongBits(d);
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (bits >>> (i * 8));
+        }
+    }
+
+    /** Writes length + 1 so that 0 can mean null, then the UTF-8 bytes without an intermediate array */
+    public void writeString(String s) {
+        if (s == null) {
+            writeUnsignedLong(0);
+            return;
+        }
+
+        int length = utf8Length(s);
+        writeUnsignedLong(length + 1L);
+        writeUtf8(s, length);
+    }
+
+    /** Writes the UTF-8 bytes of the string with no length prefix */
+    public void writeUtf8(String s) {
+        writeUtf8(s, utf8Length(s));
+    }
+
+    private void writeUtf8(String s, int length) {
+        ensure(length);
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (cp >> 18));
+                buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /** Tagged union of the value types tags can hold, anything unknown is written as its string form */
+    public void writeValue(Object value) {
+        if (value == null) {
+            writeByte(TYPE_NULL);
+        } else if (value instanceof Double || value instanceof Float) {
+            writeByte(TYPE_DOUBLE);
+            writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number && !(value instanceof java.math.BigDecimal)
+                && !(value instanceof java.math.BigInteger)) {
+            writeByte(TYPE_LONG);
+            writeLong(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            writeByte(TYPE_BOOLEAN);
+            writeBoolean((Boolean) value);
+        } else if (value instanceof Date) {
+            writeByte(TYPE_DATE);
+            writeLong(((Date) value).getTime());
+        } else {
+            writeByte(TYPE_STRING);
+            writeString(String.valueOf(value));
+        }
+    }
+
+    static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void ensure(int extra) {
+        if (position + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+/**
+ * Everything about a tag path that doesn't change between values, worked out once.
+ */
+
+public class CachedTagPath {
+
+    private final String gatewayName;
+    private final String provider;
+    private final String path;
+    private final long filterKey;
+    private final Route route;
+
+    // {"gatewayName":"..","provider":"..",
+    private final byte[] jsonHead;
+    // "tagPath":".."
+    private final byte[] jsonPath;
+    // gatewayName, provider, tagPath as BinaryWriter strings
+    private final byte[] binaryHead;
+    private final byte[] binaryPath;
+
+    CachedTagPath(String gatewayName, String provider, String path, Route route) {
+        this.gatewayName = gatewayName;
+        this.provider = provider;
+        this.path = path;
+        this.filterKey = TagValueFilter.hash(provider, path);
+        this.route = route;
+
+        BinaryWriter out = new BinaryWriter(64 + path.length() * 2);
+        JsonEncoder.writeHead(out, gatewayName, provider);
+        this.jsonHead = out.toByteArray();
+
+        JsonEncoder.writeField(out.reset(), "tagPath", path);
+        this.jsonPath = out.toByteArray();
+
+        out.reset().writeString(path);
+        this.binaryPath = out.toByteArray();
+
+        out.reset().writeString(gatewayName);
+        out.writeString(provider);
+        out.writeBytes(binaryPath);
+        this.binaryHead = out.toByteArray();
+    }
+
+    public String getGatewayName() {
+        return gatewayName;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /** @return null when no routing rule covers the tag */
+    Route getRoute() {
+        return route;
+    }
+
+    long getFilterKey() {
+        return filterKey;
+    }
+
+    byte[] getJsonHead() {
+        return jsonHead;
+    }
+
+    byte[] getJsonPath() {
+        return jsonPath;
+    }
+
+    byte[] getBinaryHead() {
+        return binaryHead;
+    }
+
+    byte[] getBinaryPath() {
+        return binaryPath;
+    }
+}
@@ -0,0 +1,176 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.columnar.ColumnarFormat;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Tag batches as the columnar record in ColumnarFormat, everything else as BinaryEncoder records.
+ */
+
+public class ColumnarEncoder extends BinaryEncoder {
+
+    @Override
+    public String getName() {
+        return "columnar";
+    }
+
+    @Override
+    public byte[] encodeTagBatch(String gatewayName, String provider, List<String> tagPaths,
+                                 List<HistoricalTagValue> values) {
+        return encodeColumns(gatewayName, provider, tagPaths::get, values);
+    }
+
+    @Override
+    public byte[] encodeCachedTagBatch(String gatewayName, String provider, List<CachedTagPath> tagPaths,
+                                       List<HistoricalTagValue> values) {
+        return encodeColumns(gatewayName, provider, i -> tagPaths.get(i).getPath(), values);
+    }
+
+    private static byte[] encodeColumns(String gatewayName, String provider, IntFunction<String> tagPaths,
+                                        List<HistoricalTagValue> values) {
+        int count = values.size();
+        BinaryWriter out = header(ColumnarFormat.RECORD_TAG_COLUMNS);
+        out.writeString(gatewayName);
+        out.writeString(provider);
+        out.writeInt(count);
+
+        writeDictionary(out, tagPaths, count);
+        writeTimestamps(out, values);
+
+        int[] dataTypes = new int[count];
+        int[] qualities = new int[count];
+        int[] valueTypes = new int[count];
+        for (int i = 0; i < count; i++) {
+            HistoricalTagValue value = values.get(i);
+            Object type = value.getTypeClass();
+            dataTypes[i] = type instanceof Enum ? ((Enum<?>) type).ordinal() + 1 : 0;
+            qualities[i] = BinaryEncoder.qualityCode(value);
+            valueTypes[i] = valueType(value.getValue());
+        }
+        writeRuns(out, dataTypes);
+        writeRuns(out, qualities);
+        writeRuns(out, valueTypes);
+
+        writeValueColumns(out, values, valueTypes);
+        return out.toByteArray();
+    }
+
+    private static void writeDictionary(BinaryWriter out, IntFunction<String> tagPaths, int count) {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] indexes = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            String path = tagPaths.apply(i);
+            Integer index = dictionary.get(path);
+            if (index == null) {
+                index = entries.size();
+                dictionary.put(path, index);
+                entries.add(path);
+            }
+            indexes[i] = index;
+        }
+
+        out.writeInt(entries.size());
+        for (String path : entries) {
+            out.writeString(path);
+        }
+        for (int index : indexes) {
+            out.writeInt(index);
+        }
+    }
+
+    /** Values of a scan set share a timestamp or follow at the scan rate, so the delta of deltas is mostly 0 */
+    private static void writeTimestamps(BinaryWriter out, List<HistoricalTagValue> values) {
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < values.size(); i++) {
+            long epochms = BinaryEncoder.epochMillis(values.get(i));
+            if (i == 0) {
+                out.writeLong(epochms);
+            } else {
+                long delta = epochms - previous;
+                out.writeLong(i == 1 ? delta : delta - previousDelta);
+                previousDelta = delta;
+            }
+            previous = epochms;
+        }
+    }
+
+    private static void writeRuns(BinaryWriter out, int[] column) {
+        int i = 0;
+        while (i < column.length) {
+            int run = i + 1;
+            while (run < column.length && column[run] == column[i]) {
+                run++;
+            }
+            out.writeInt(column[i]);
+            out.writeInt(run - i);
+            i = run;
+        }
+    }
+
+    private static void writeValueColumns(BinaryWriter out, List<HistoricalTagValue> values, int[] valueTypes) {
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_LONG) {
+                out.writeLong(((Number) values.get(i).getValue()).longValue());
+            } else if (valueTypes[i] == ColumnarFormat.TYPE_DATE) {
+                out.writeLong(((Date) values.get(i).getValue()).getTime());
+            }
+        }
+
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_DOUBLE) {
+                out.writeDouble(((Number) values.get(i).getValue()).doubleValue());
+            }
+        }
+
+        int bits = 0;
+        int packed = 0;
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_BOOLEAN) {
+                if ((Boolean) values.get(i).getValue()) {
+                    packed |= 1 << bits;
+                }
+                if (++bits == 8) {
+                    out.writeByte(packed);
+                    bits = 0;
+                    packed = 0;
+                }
+            }
+        }
+        if (bits > 0) {
+            out.writeByte(packed);
+        }
+
+        for (int i = 0; i < valueTypes.length; i++) {
+            if (valueTypes[i] == ColumnarFormat.TYPE_STRING) {
+                out.writeString(String.valueOf(values.get(i).getValue()));
+            }
+        }
+    }
+
+    /** The same type mapping as BinaryWriter.writeValue */
+    private static int valueType(Object value) {
+        if (value == null) {
+            return ColumnarFormat.TYPE_NULL;
+        } else if (value instanceof Double || value instanceof Float) {
+            return ColumnarFormat.TYPE_DOUBLE;
+        } else if (value instanceof Number && !(value instanceof java.math.BigDecimal)
+                && !(value instanceof java.math.BigInteger)) {
+            return ColumnarFormat.TYPE_LONG;
+        } else if (value instanceof Boolean) {
+            return ColumnarFormat.TYPE_BOOLEAN;
+        } else if (value instanceof Date) {
+            return ColumnarFormat.TYPE_DATE;
+        }
+        return ColumnarFormat.TYPE_STRING;
+    }
+}
@@ -0,0 +1,192 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.execution.ExecutionManager;
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue and drain task between the alarm and audit callers and Kafka.
+ */
+
+public class DispatchQueue<T> {
+
+    /** Hands a batch of events to Kafka, returns how many of them were sent */
+    public interface BatchHandler<T> {
+        int dispatch(List<T> batch);
+    }
+
+    private static final String TASK_OWNER = "KafkaDispatch";
+    private static final int MAX_BATCH = 500;
+    private static final long POLL_MS = 250;
+    // the drain task loops until stopped, the rate only matters if it ever returns early
+    private static final int RESTART_MS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger("Kafka." + getClass().getSimpleName());
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final KafkaSettingsRecord.overflowPolicies policy;
+    private final BatchHandler<T> handler;
+    private final Consumer<T> spillHandler;
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+
+    // held while a batch is taken from the queue and dispatched, so stop() can wait for it
+    private final Object drainLock = new Object();
+
+    private volatile boolean running;
+    private ExecutionManager executionManager;
+
+    public DispatchQueue(String name, int capacity, KafkaSettingsRecord.overflowPolicies policy,
+                         BatchHandler<T> handler, Consumer<T> spillHandler) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.policy = policy;
+        this.handler = handler;
+        this.spillHandler = spillHandler;
+    }
+
+    /** The queue owns the execution manager from here on and shuts it down in stop() */
+    public synchronized void start(ExecutionManager executionManager) {
+        if (running) {
+            return;
+        }
+        running = true;
+        this.executionManager = executionManager;
+        executionManager.register(TASK_OWNER, name, this::drain, RESTART_MS);
+    }
+
+    /** Lets the drain task finish its batch, then sends whatever is still queued on the calling thread */
+    public synchronized void stop() {
+        running = false;
+        if (executionManager != null) {
+            executionManager.unRegister(TASK_OWNER, name);
+        }
+
+        synchronized (drainLock) {
+            List<T> remaining = new ArrayList<>();
+            while (queue.drainTo(remaining, MAX_BATCH) > 0) {
+                handle(remaining);
+                remaining.clear();
+            }
+        }
+
+        if (executionManager != null) {
+            executionManager.shutdown();
+            executionManager = null;
+        }
+    }
+
+    /**
+     * @return false when the queue is stopped, the caller then dispatches the event itself. A caller can still
+     * hold a queue that is being replaced, so an event that lands after stop() drained the queue is taken back
+     * rather than left behind.
+     */
+    public boolean offer(T item) {
+        if (!running) {
+            return false;
+        }
+        if (!queue.offer(item)) {
+            switch (policy) {
+                case Block:
+                    try {
+                        while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                            if (!running) {
+                                return false;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        dropped.increment();
+                        return true;
+                    }
+                    break;
+                case DropOldest:
+                    while (!queue.offer(item)) {
+                        if (queue.poll() != null) {
+                            dropped.increment();
+                        }
+                    }
+                    break;
+                case Spill:
+                default:
+                    spilled.increment();
+                    spillHandler.accept(item);
+                    return true;
+            }
+        }
+
+        // stop() clears running before it drains, if the drain took the event it is handled there
+        return running || !queue.remove(item);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    public KafkaSettingsRecord.overflowPolicies getPolicy() {
+        return policy;
+    }
+
+    /** Takes up to MAX_BATCH queued events at a time, the handler sends each batch in one go */
+    private void drain() {
+        List<T> batch = new ArrayList<>(MAX_BATCH);
+
+        while (running) {
+            synchronized (drainLock) {
+                try {
+                    T first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    handle(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /** The handler counts its own failures, anything it throws is logged so the drain task keeps going */
+    private void handle(List<T> batch) {
+        try {
+            dispatched.add(handler.dispatch(batch));
+        } catch (Exception e) {
+            logger.error("Error dispatching " + batch.size() + " events from queue " + name, e);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.alarming.AlarmEvent;
+import com.inductiveautomation.ignition.common.alarming.EventData;
+import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default encoder, the JSON documents the module has always sent.
+ */
+
+public class JsonEncoder implements SinkEncoder {
+
+    private static final ThreadLocal<BinaryWriter> WRITER = ThreadLocal.withInitial(() -> new BinaryWriter(4096));
+    private static final int MAX_CACHED_STRINGS = 1024;
+    // type and quality repeat across nearly every value, their encoded form is cached
+    private static final Map<Object, byte[]> ENCODED = new ConcurrentHashMap<>();
+
+    private static final byte[] TYPE = ascii(",\"type\":");
+    private static final byte[] QUALITY = ascii(",\"quality\":");
+    private static final byte[] VALUE = ascii(",\"value\":");
+    private static final byte[] EPOCHMS = ascii(",\"epochms\":");
+    private static final byte[] COUNT = ascii("\"count\":");
+    private static final byte[] VALUES = ascii(",\"values\":[");
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encodeTagValue(String gatewayName, String provider, String tagPath, HistoricalTagValue value)
+            throws IOException {
+        try {
+            return toBytes(tagJson(tagPath, value)
+                    .put("gatewayName", gatewayName)
+                    .put("provider", provider));
+        } catch (JSONException e) {
+            throw new IOException("Error encoding tag value " + tagPath, e);
+        }
+    }
+
+    @Override
+    public byte[] encodeTagValue(CachedTagPath path, HistoricalTagValue value) {
+        BinaryWriter out = WRITER.get().reset();
+        out.writeBytes(path.getJsonHead());
+        writeTag(out, path, value);
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeCachedTagBatch(String gatewayName, String provider, List<CachedTagPath> tagPaths,
+                                       List<HistoricalTagValue> values) {
+        BinaryWriter out = WRITER.get().reset();
+        if (tagPaths.isEmpty()) {
+            writeHead(out, gatewayName, provider);
+        } else {
+            out.writeBytes(tagPaths.get(0).getJsonHead());
+        }
+        out.writeBytes(COUNT);
+        writeLong(out, values.size());
+        out.writeBytes(VALUES);
+
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            out.writeByte('{');
+            writeTag(out, tagPaths.get(i), values.get(i));
+        }
+        out.writeByte(']');
+        out.writeByte('}');
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] encodeTagBatch(String gatewayName, String provider, List<String> tagPaths,
+                                 List<HistoricalTagValue> values) throws IOException {
+        try {
+            JSONArray array = new JSONArray();
+            for (int i = 0; i < values.size(); i++) {
+                array.put(tagJson(tagPaths.get(i), values.get(i)));
+            }
+
+            return toBytes(new JSONObject()
+                    .put("gatewayName", gatewayName)
+                    .put("provider", provider)
+                    .put("count", array.length())
+                    .put("values", array));
+        } catch (JSONException e) {
+            throw new IOException("Error encoding tag batch for provider " + provider, e);
+        }
+    }
+
+    @Override
+    public byte[] encodeTagSummary(TagSummary summary) throws IOException {
+        CachedTagPath path = summary.getPath();
+        try {
+            return toBytes(new JSONObject()
+                    .put("gatewayName", path.getGatewayName())
+                    .put("provider", path.getProvider())
+                    .put("tagPath", path.getPath())
+                    .put("windowStart", summary.getWindowStart())
+                    .put("windowEnd", summary.getWindowEnd())
+                    .put("count", summary.getCount())
+                    .put("min", summary.getMin())
+                    .put("max", summary.getMax())
+                    .put("avg", summary.getAvg())
+                    .put("last", summary.getLast()));
+        } catch (JSONException e) {
+            throw new IOException("Error encoding tag summary " + path.getPath(), e);
+        }
+    }
+
+    @Override
+    public byte[] encodeAlarm(String gatewayName, String provider, String tagPath, String displayPath,
+                              AlarmEvent alarm, EventData data) throws IOException {
+        try {
+            return toBytes(new JSONObject()
+                    .put("uuid", alarm.getId().toString())
+                    .put("gatewayName", gatewayName)
+                    .put("provider", provider)
+                    .put("tagPath", tagPath)
+                    .put("displayPath", displayPath)
+                    .put("priority", alarm.getPriority().ordinal())
+                    .put("eventType", alarm.getState().ordinal())
+                    .put("eventData", String.valueOf(data.getRawValueMap()))
+                    .put("eventFlags", alarm.getLastEventState().ordinal())
+                    .put("epochms", data.getTimestamp()));
+        } catch (JSONException e) {
+            throw new IOException("Error encoding alarm " + alarm.getId(), e);
+        }
+    }
+
+    @Override
+    public byte[] encodeAudit(AuditRecord record) throws IOException {
+        try {
+            return toBytes(new JSONObject()
+                    .put("epochms", record.getTimestamp().getTime())
+                    .put("originatingSystem", record.getOriginatingSystem())
+                    .put("originatingContext", record.getOriginatingContext())
+                    .put("actor", record.getActor())
+                    .put("actorHost", record.getActorHost())
+                    .put("action", record.getAction())
+                    .put("actionTarget", record.getActionTarget())
+                    .put("actionValue", record.getActionValue())
+                    .put("statusCode", record.getStatusCode()));
+        } catch (JSONException e) {
+            throw new IOException("Error encoding audit record " + record, e);
+        }
+    }
+
+    private static JSONObject tagJson(String tagPath, HistoricalTagValue value) throws JSONException {
+        return new JSONObject()
+                .put("tagPath", tagPath)
+                .put("type", value.getTypeClass())
+                .put("quality", value.getQuality())
+                .put("value", String.valueOf(value.getValue()))
+                .put("epochms", value.getTimestamp().getTime());
+    }
+
+    /** "tagPath":"..","type":"..","quality":"..","value":"..","epochms":n} the same fields tagJson puts */
+    private static void writeTag(BinaryWriter out, CachedTagPath path, HistoricalTagValue value) {
+        out.writeBytes(path.getJsonPath());
+        out.writeBytes(TYPE);
+        out.writeBytes(encoded(value.getTypeClass()));
+        out.writeBytes(QUALITY);
+        out.writeBytes(encoded(value.getQuality()));
+        out.writeBytes(VALUE);
+        writeValue(out, value.getValue());
+        out.writeBytes(EPOCHMS);
+        writeLong(out, value.getTimestamp().getTime());
+        out.writeByte('}');
+    }
+
+    private static byte[] encoded(Object o) {
+        byte[] bytes = ENCODED.get(o);
+        if (bytes == null) {
+            if (ENCODED.size() >= MAX_CACHED_STRINGS) {
+                ENCODED.clear();
+            }
+            BinaryWriter out = new BinaryWriter(32);
+            writeString(out, String.valueOf(o));
+            bytes = out.toByteArray();
+            if (o != null) {
+                ENCODED.put(o, bytes);
+            }
+        }
+        return bytes;
+    }
+
+    /** Values are sent as strings, like String.valueOf in tagJson, integers are written without a String */
+    private static void writeValue(BinaryWriter out, Object v) {
+        if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) {
+            out.writeByte('"');
+            writeLong(out, ((Number) v).longValue());
+            out.writeByte('"');
+        } else {
+            writeString(out, String.valueOf(v));
+        }
+    }
+
+    /** {"gatewayName":"..","provider":"..", */
+    static void writeHead(BinaryWriter out, String gatewayName, String provider) {
+        out.writeByte('{');
+        writeField(out, "gatewayName", gatewayName);
+        out.writeByte(',');
+        writeField(out, "provider", provider);
+        out.writeByte(',');
+    }
+
+    static void writeField(BinaryWriter out, String name, String value) {
+        writeString(out, name);
+        out.writeByte(':');
+        writeString(out, value);
+    }
+
+    /** A quoted JSON string, escaped the way JSONObject escapes it */
+    static void writeString(BinaryWriter out, String s) {
+        if (s == null) {
+            out.writeBytes(NULL);
+            return;
+        }
+        out.writeByte('"');
+        out.writeUtf8(needsEscape(s) ? escape(s) : s);
+        out.writeByte('"');
+    }
+
+    private static final byte[] NULL = ascii("null");
+
+    private static boolean needsEscape(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\' || c == '/' || c < ' ' || (c >= '\u0080' && c < '\u00a0')
+                    || (c >= '\u2000' && c < '\u2100')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        char previous = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    sb.append('\\').append(c);
+                    break;
+                case '/':
+                    if (previous == '<') {
+                        sb.append('\\');
+                    }
+                    sb.append(c);
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                        String hex = Integer.toHexString(c);
+                        sb.append("\\u");
+                        for (int pad = hex.length(); pad < 4; pad++) {
+                            sb.append('0');
+                        }
+                        sb.append(hex);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+            previous = c;
+        }
+        return sb.toString();
+    }
+
+    private static void writeLong(BinaryWriter out, long n) {
+        if (n == Long.MIN_VALUE) {
+            out.writeUtf8(String.valueOf(n));
+            return;
+        }
+        if (n < 0) {
+            out.writeByte('-');
+            n = -n;
+        }
+        long divisor = 1;
+        while (n / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.writeByte((int) ('0' + (n / divisor) % 10));
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] toBytes(JSONObject json) {
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
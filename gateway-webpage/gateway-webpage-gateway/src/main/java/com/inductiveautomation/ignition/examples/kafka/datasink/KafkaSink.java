@@ -1,34 +1,64 @@
 package com.inductiveautomation.ignition.examples.kafka.datasink;
 
+import com.inductiveautomation.ignition.common.execution.ExecutionManager;
 import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
-import com.inductiveautomation.ignition.gateway.model.GatewayContext;
-import org.apache.kafka.clients.producer.KafkaProducer;
-import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.config.SslConfigs;
-import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Written By: Nick Robinson
  * Date: 05-Oct-2021
- * Content: kafka producer and SSL settings, actual sending of data to Kafka
+ * Content: actual sending of data to Kafka, the producer itself is shared through the ProducerRegistry
  */
 
 public class KafkaSink extends BaseSink{
 
-    private static GatewayContext context;
     private static Logger logger = LoggerFactory.getLogger("Kafka");
-    private KafkaProducer<String, String> producer;
+    private static final String SPILL_TASK_OWNER = "KafkaSpill";
+    private static final int SPILL_REPLAY_RATE_MS = 2000;
+    private static final int SPILL_REPLAY_BATCH = 500;
+    private static final int SPILL_REPLAY_MAX_BATCHES = 20;
+    private static final long SPILL_ACK_TIMEOUT_MS = 30000;
+    private final ProducerRegistry producers;
+    private final KafkaSettingsRecord.producerProfiles profile;
+    private final String brokerList;
+    private Producer<byte[], byte[]> producer;
+    private final long storeTimeoutMs;
+    private ExecutionManager executionManager;
+    private volatile boolean spilling = false;
+    private volatile boolean replaying = false;
+    // direct sends that could still end up in the spill log
+    private final AtomicInteger unacked = new AtomicInteger();
 
-    public KafkaSink(String pipelineName, KafkaSettingsRecord kafkaSettings) {
+    public KafkaSink(String pipelineName, KafkaSettingsRecord kafkaSettings, ProducerRegistry producers,
+                     KafkaSettingsRecord.producerProfiles profile) {
+        this(pipelineName, kafkaSettings, producers, profile, kafkaSettings.getBrokerList());
+    }
+
+    /**
+     * A sink for one of the named connections. Its producer is its own unless another sink uses the same
+     * brokers and settings, so a slow or unreachable cluster only backs up the sinks sending to it.
+     */
+    public KafkaSink(String pipelineName, KafkaSettingsRecord kafkaSettings, ProducerRegistry producers,
+                     KafkaSettingsRecord.producerProfiles profile, String brokerList) {
         super(pipelineName);
         this.config = kafkaSettings;
+        this.producers = producers;
+        this.profile = profile;
+        this.brokerList = brokerList;
+        this.storeTimeoutMs = kafkaSettings.getStoreTimeout() * 1000L;
         resetProducer(kafkaSettings);
     }
 
@@ -36,97 +66,293 @@ public class KafkaSink extends BaseSink{
         this.stats.put(signature, new MessageStats(signature));
     }
 
+    /**
+     * Records sent directly are written to the spill log when they can't be delivered. From the first
+     * undeliverable record until the log has been replayed, new records go to the log as well, so everything
+     * after that point reaches Kafka in the order it was sent. Records that were already in flight when the
+     * brokers went away are spilled as their sends fail, which can be after later records that got through.
+     * The sink owns the execution manager from here on and shuts it down when it closes, replay waits on acks
+     * so it should be a single thread of its own rather than the gateway's shared one.
+     */
+    public void enableSpill(SpillLog spill, ExecutionManager executionManager) {
+        this.spill = spill;
+        this.executionManager = executionManager;
+        this.spilling = !spill.isEmpty();
+        executionManager.register(SPILL_TASK_OWNER, getPipelineName(), this::replaySpill, SPILL_REPLAY_RATE_MS);
+    }
+
     @Override
     public void sendDataWithProducer(SinkData value) throws IOException {
-        ProducerRecord<String, String> record =
-                new ProducerRecord<>(value.getTopic(), value.getValue());
-        sendProducerData(value.getSignature(), record);
+        sendProducerData(value, null);
     }
 
     @Override
     public void sendPipelineDataWithProducer(SinkData data) throws IOException {
-        ProducerRecord<String, String> record =
-                new ProducerRecord<>(data.getTopic(), data.getValue());
-        sendProducerData(data.getSignature(), record);
+        sendProducerData(data, null);
     }
 
-    private void sendProducerData(String signature, ProducerRecord<String, String> record) {
+    /**
+     * Sends every record before waiting on any of them, so they travel in as few producer batches as the batch
+     * size allows, then waits until all are acked or the store timeout passes. If any record was not acked
+     * this throws and the caller keeps the whole batch; records that did get through are sent again on retry.
+     */
+    @Override
+    public void sendBatchWithProducer(List<SinkData> batch) throws IOException {
+        if (this.producer == null) {
+            throw new IOException("Sink " + getPipelineName() + " has no producer");
+        }
+
+        List<Future<RecordMetadata>> acks = new ArrayList<>(batch.size());
+        for (SinkData data : batch) {
+            acks.add(sendProducerData(data, null));
+        }
+
+        long deadline = System.currentTimeMillis() + storeTimeoutMs;
+        int failed = 0;
+        Exception cause = null;
+
+        for (Future<RecordMetadata> ack : acks) {
+            if (ack == null) {
+                failed++;
+                continue;
+            }
+            try {
+                ack.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                failed++;
+                cause = cause == null ? e : cause;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for acks on " + getPipelineName(), e);
+            }
+        }
+
+        if (failed > 0) {
+            throw new IOException(String.format("%d of %d records for %s were not acknowledged",
+                    failed, batch.size(), getPipelineName()), cause);
+        }
+    }
+
+    @Override
+    public void sendDirectWithProducer(SinkData data) throws IOException {
+        SpillLog log = this.spill;
+        if (log != null) {
+            synchronized (log) {
+                if (spilling) {
+                    spillRecord(log, data);
+                    return;
+                }
+            }
+        }
+        sendProducerData(data, log);
+    }
+
+    /** The whole batch goes to the spill log or to the producer, the producer batches the sends itself */
+    @Override
+    public void sendDirectBatchWithProducer(List<SinkData> batch) throws IOException {
+        SpillLog log = this.spill;
+        if (log != null) {
+            synchronized (log) {
+                if (spilling) {
+                    for (SinkData data : batch) {
+                        spillRecord(log, data);
+                    }
+                    return;
+                }
+            }
+        }
+        for (SinkData data : batch) {
+            sendProducerData(data, log);
+        }
+    }
+
+    /**
+     * Success and failure are counted when the broker acks (or the producer gives up), not when send() returns.
+     * send() only throws for errors it does not hand to the callback, so each record is counted once.
+     */
+    private Future<RecordMetadata> sendProducerData(SinkData data, SpillLog log) {
+        ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(data.getTopic(), data.getKey(), data.getValue());
+        MessageStats known = this.stats.get(data.getSignature());
+        // a signature without stats is still sent, its counts just aren't kept anywhere
+        MessageStats stat = known != null ? known : new MessageStats(data.getSignature());
+        long start = System.nanoTime();
+        stat.addOneInFlight();
+        if (log != null) {
+            unacked.incrementAndGet();
+        }
+
         try {
-            this.producer.send(record);
-            this.addOneSuccessCount(signature);
+            return this.producer.send(record, (metadata, exception) -> {
+                stat.removeOneInFlight();
+                if (exception == null) {
+                    stat.addOneSuccessCount();
+                    stat.recordAckLatency(System.nanoTime() - start);
+                } else if (log != null) {
+                    startSpilling(log, data);
+                } else {
+                    logger.warn(String.format("Data (%s) was not delivered due to error: %s", String.valueOf(record), exception.toString()));
+                    stat.addOneFailedCount();
+                }
+                if (log != null) {
+                    unacked.decrementAndGet();
+                }
+            });
         } catch (Exception e) {
-            logger.warn(String.format("Data (%s) was not sent due to error: %s", String.valueOf(record), e.toString()));
-            this.addOneFailedCount(signature);
+            stat.removeOneInFlight();
+            if (log != null) {
+                unacked.decrementAndGet();
+                startSpilling(log, data);
+            } else {
+                logger.warn(String.format("Data (%s) was not sent due to error: %s", String.valueOf(record), e.toString()));
+                stat.addOneFailedCount();
+            }
+            return null;
         }
     }
 
-    public void resetProducer(KafkaSettingsRecord kafkaSettings) {
-        Thread.currentThread().setContextClassLoader(null); //Testing from stack overflow
-        Properties props = new Properties();
-
-        props.setProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaSettings.getBrokerList());
-        props.setProperty(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        props.setProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+    /**
+     * The spilling flag is only set or cleared while holding the log's lock, the same one its appends take,
+     * so replay can't see an empty log and clear the flag while a record is on its way into it.
+     */
+    private void startSpilling(SpillLog log, SinkData data) {
+        synchronized (log) {
+            spilling = true;
+            spillRecord(log, data);
+        }
+    }
 
-        // safe producer settings
-        props.setProperty(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
-        props.setProperty(ProducerConfig.ACKS_CONFIG, "all");
-        props.setProperty(ProducerConfig.RETRIES_CONFIG, Integer.toString(Integer.MAX_VALUE));
-        props.setProperty(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "5");
+    private boolean stopSpillingIfEmpty(SpillLog log) {
+        synchronized (log) {
+            if (log.isEmpty()) {
+                spilling = false;
+                return true;
+            }
+            return false;
+        }
+    }
 
-        if (kafkaSettings.getUseSSL()){
-            this.producer = new KafkaProducer<String, String>(getSSLProps(props));
-        } else {
-            this.producer = new KafkaProducer<String, String>(props);
+    private void spillRecord(SpillLog log, SinkData data) {
+        if (!log.append(data)) {
+            logger.warn(String.format("Data (%s) was dropped, spill log %s is full or closed", data, log.getName()));
+            addOneFailedCount(data.getSignature());
         }
-        this.resetStats();
     }
 
-    private Properties getSSLProps(Properties props){
-        String homePath = getGatewayHome();
-        String sep = File.separator;
+    /**
+     * Run by the execution manager. Replays the spill log in batches, waiting for every record of a batch to
+     * be acked before the replay position moves past it. If the brokers are still unreachable the batch stays
+     * in the log and is tried again on the next run. A run stops after a bounded number of batches so a large
+     * backlog is worked off over several runs and closing the sink never waits on more than one batch.
+     */
+    void replaySpill() {
+        SpillLog log = this.spill;
+        Producer<byte[], byte[]> p = this.producer;
+        if (log == null || p == null) {
+            return;
+        }
+        if (stopSpillingIfEmpty(log)) {
+            return;
+        }
+
+        replaying = true;
+        try {
+            for (int sent = 0; sent < SPILL_REPLAY_MAX_BATCHES && this.spill == log; ) {
+                SpillLog.Batch batch = log.read(SPILL_REPLAY_BATCH);
+                if (batch.isEmpty()) {
+                    if (!batch.hasProgress()) {
+                        break;
+                    }
+                    log.commit(batch);
+                    continue;
+                }
+
+                List<Future<RecordMetadata>> acks = new ArrayList<>(batch.getRecords().size());
+                for (SinkData data : batch.getRecords()) {
+                    acks.add(p.send(new ProducerRecord<>(data.getTopic(), data.getKey(), data.getValue())));
+                }
 
-        logger.debug("homepath = " + homePath);
-        props.put(SslConfigs.SSL_PROTOCOL_CONFIG,"SSL");
-        props.put("security.protocol","SSL");
-        props.put(SslConfigs.SSL_ENDPOINT_IDENTIFICATION_ALGORITHM_CONFIG,"");
+                long deadline = System.currentTimeMillis() + SPILL_ACK_TIMEOUT_MS;
+                for (Future<RecordMetadata> ack : acks) {
+                    ack.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
 
-        // Keystore settings
-        String keystorePath = homePath+String.format("%swebserver%sssl.pfx",sep,sep,sep);
-        logger.debug("SSL Keystore Path: " + keystorePath);
+                log.commit(batch);
+                sent++;
+                for (SinkData data : batch.getRecords()) {
+                    MessageStats stat = this.stats.get(data.getSignature());
+                    if (stat != null) {
+                        stat.addOneSuccessCount();
+                    }
+                }
+            }
 
-        if(fileExists(keystorePath)) {
-            props.put(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, keystorePath);
-            props.put(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, keyStorePwd);
-            props.put(SslConfigs.SSL_KEY_PASSWORD_CONFIG,keyStorePwd);
+            if (stopSpillingIfEmpty(log)) {
+                logger.info("Spill log " + log.getName() + " replayed, sending directly again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.debug("Spill replay for " + getPipelineName() + " paused: " + e);
+        } finally {
+            replaying = false;
         }
+    }
 
-        // Truststore settings
-        String truststorePath = homePath+String.format("%sdata%scertificates%struststore.jks",sep,sep,sep);
-        logger.debug("SSL TrustStore Path: " + truststorePath);
+    @Override
+    public String getSpillState() {
+        if (this.spill == null) {
+            return "Off";
+        }
+        return replaying ? "Replaying" : spilling ? "Spilling" : "Idle";
+    }
 
-        if (fileExists(truststorePath)) {
-            props.put(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, truststorePath);
-            props.put(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, trustStorePwd);
+    public void resetProducer(KafkaSettingsRecord kafkaSettings) {
+        Producer<byte[], byte[]> previous = this.producer;
+        this.producer = producers.acquire(kafkaSettings, profile, brokerList);
+        if (previous != null) {
+            producers.release(previous);
         }
-        return props;
+        this.resetStats();
     }
 
-    private static String getGatewayHome(){
-        String absPath = context.getSystemManager().getDataDir().getAbsolutePath();
-        return absPath.substring(0,absPath.lastIndexOf(File.separator));
+    /**
+     * The producer can be shared and outlive this sink, so records still in flight get up to the store timeout
+     * to be acked or spilled before the log closes. Any that fail after that are counted as failed.
+     */
+    private void awaitUnacked() {
+        long deadline = System.currentTimeMillis() + storeTimeoutMs;
+        while (unacked.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (unacked.get() > 0) {
+            logger.warn(String.format("Closing spill log of %s with %d records still in flight",
+                    getPipelineName(), unacked.get()));
+        }
     }
 
-    private static boolean fileExists(String path){
-        File fObj = new File(path);
-        return fObj.exists();
+    @Override
+    public String getBrokerEndpoints() {
+        return brokerList;
     }
 
     @Override
     public void closeProducer() {
+        if (this.spill != null) {
+            executionManager.unRegister(SPILL_TASK_OWNER, getPipelineName());
+            executionManager.shutdown();
+            awaitUnacked();
+            this.spill.close();
+            this.spill = null;
+        }
         if (this.producer != null) {
-            logger.info("Closing producer for sink " + getPipelineName());
-            this.producer.close();
+            logger.info("Releasing producer for sink " + getPipelineName());
+            producers.release(this.producer);
+            this.producer = null;
         }
     }
 }
@@ -0,0 +1,111 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in microseconds, percentiles are accurate to within 25%.
+ */
+
+public class LatencyHistogram {
+
+    private static final int LINEAR = 8;
+    private static final int SUB_BUCKETS = 4;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalMicros = new LongAdder();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        totalMicros.add(micros);
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /** Upper bound in milliseconds of the bucket holding the given percentile (0-100), 0 when empty */
+    public double getPercentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return upperBoundOf(i) / 1000.0;
+            }
+        }
+        return upperBoundOf(BUCKETS - 1) / 1000.0;
+    }
+
+    public double getSumSeconds() {
+        return totalMicros.sum() / 1_000_000.0;
+    }
+
+    /**
+     * Values at or below each bound, from one pass over the buckets, with the total count appended. A bucket
+     * straddling a bound isn't counted for it, so the counts are low by at most that bucket's width (25%).
+     *
+     * @param boundsMicros ascending upper bounds in microseconds
+     */
+    public long[] getCumulativeCounts(long[] boundsMicros) {
+        long[] cumulative = new long[boundsMicros.length + 1];
+        int bound = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            while (bound < boundsMicros.length && upperBoundOf(i) > boundsMicros[bound]) {
+                cumulative[bound++] = seen;
+            }
+            seen += counts.get(i);
+        }
+        while (bound < boundsMicros.length) {
+            cumulative[bound++] = seen;
+        }
+        cumulative[boundsMicros.length] = seen;
+        return cumulative;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalMicros.reset();
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) ((micros >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+        return LINEAR + (exponent - 3) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR) {
+            return index + 1;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + 3;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        return (1L << exponent) + ((sub + 1L) << (exponent - 2));
+    }
+}
@@ -1,47 +1,94 @@
 package com.inductiveautomation.ignition.examples.kafka.datasink;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Written By: Nick Robinson
  * Date: 05-Oct-2021
  * Content: Definition and tracking of sink statistics
+ *      Updated from history, alarm, audit and producer threads at once, so every counter is lock-free
+ *      and the hot path does not allocate.
  */
 
 public class MessageStats {
 
-    private LocalDateTime lastMessageTime;
-    private long successCount, failedCount;
+    private volatile long lastMessageTime;
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final RateWindow messageRate = new RateWindow();
+    private final RateWindow failureRate = new RateWindow();
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
     private String name;
 
     public MessageStats(String source){
         this.name = source;
-        this.successCount = 0;
-        this.failedCount = 0;
     }
 
     public long getSuccessCount() {
-        return successCount;
+        return successCount.sum();
     }
 
     public long getFailedCount() {
-        return failedCount;
+        return failedCount.sum();
     }
 
     public void addOneFailedCount() {
-        failedCount++;
+        failedCount.increment();
+        failureRate.add(System.currentTimeMillis(), 1);
     }
 
     public void addOneSuccessCount() {
-        successCount++;
+        successCount.increment();
+        messageRate.add(System.currentTimeMillis(), 1);
+    }
+
+    public void addOneInFlight() {
+        inFlight.increment();
+    }
+
+    public void removeOneInFlight() {
+        inFlight.decrement();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public void recordAckLatency(long nanos) {
+        ackLatency.recordNanos(nanos);
+    }
+
+    public double getAckLatencyMillis(double percentile) {
+        return ackLatency.getPercentileMillis(percentile);
+    }
+
+    public LatencyHistogram getAckLatency() {
+        return ackLatency;
+    }
+
+    /** Messages per second averaged over the last given number of minutes (at most 15) */
+    public double getMessageRate(int minutes) {
+        return messageRate.getRate(System.currentTimeMillis(), minutes * 60);
+    }
+
+    public double getFailureRate(int minutes) {
+        return failureRate.getRate(System.currentTimeMillis(), minutes * 60);
     }
 
     public void setLastMessageTime() {
-        this.lastMessageTime = LocalDateTime.now();
+        this.lastMessageTime = System.currentTimeMillis();
     }
 
     public String getLastMessageTime() {
-        return String.valueOf(lastMessageTime);
+        long time = this.lastMessageTime;
+        if (time == 0) {
+            return "null";
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).toString();
     }
 
     public String getSourceName() {
@@ -49,8 +96,11 @@ public class MessageStats {
     }
 
     public void reset() {
-        this.successCount = 0;
-        this.failedCount = 0;
-        this.lastMessageTime = null;
+        this.successCount.reset();
+        this.failedCount.reset();
+        this.lastMessageTime = 0;
+        this.messageRate.reset();
+        this.failureRate.reset();
+        this.ackLatency.reset();
     }
 }
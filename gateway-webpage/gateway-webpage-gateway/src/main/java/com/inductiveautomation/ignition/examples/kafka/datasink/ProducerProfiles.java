@@ -0,0 +1,63 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Named producer tunings for latency, throughput or in between.
+ */
+
+public final class ProducerProfiles {
+
+    private ProducerProfiles() {
+    }
+
+    // delivery.timeout.ms must stay >= linger.ms + request.timeout.ms or the producer refuses to start
+    public static void apply(Properties props, KafkaSettingsRecord.producerProfiles profile) {
+        switch (profile) {
+            case LowLatency:
+                props.setProperty(ProducerConfig.LINGER_MS_CONFIG, "0");
+                props.setProperty(ProducerConfig.BATCH_SIZE_CONFIG, "16384");
+                props.setProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+                props.setProperty(ProducerConfig.BUFFER_MEMORY_CONFIG, "16777216");
+                props.setProperty(ProducerConfig.MAX_BLOCK_MS_CONFIG, "5000");
+                props.setProperty(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, "15000");
+                props.setProperty(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, "30000");
+                break;
+            case MaxThroughput:
+                props.setProperty(ProducerConfig.LINGER_MS_CONFIG, "50");
+                props.setProperty(ProducerConfig.BATCH_SIZE_CONFIG, "262144");
+                props.setProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+                props.setProperty(ProducerConfig.BUFFER_MEMORY_CONFIG, "134217728");
+                props.setProperty(ProducerConfig.MAX_BLOCK_MS_CONFIG, "30000");
+                props.setProperty(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, "30000");
+                props.setProperty(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, "300000");
+                break;
+            case Balanced:
+            default:
+                props.setProperty(ProducerConfig.LINGER_MS_CONFIG, "5");
+                props.setProperty(ProducerConfig.BATCH_SIZE_CONFIG, "65536");
+                props.setProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+                props.setProperty(ProducerConfig.BUFFER_MEMORY_CONFIG, "33554432");
+                props.setProperty(ProducerConfig.MAX_BLOCK_MS_CONFIG, "10000");
+                props.setProperty(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, "30000");
+                props.setProperty(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, "120000");
+                break;
+        }
+    }
+
+    /** Advanced overrides win over the profile, serializers are owned by the module and can't be overridden */
+    public static void applyOverrides(Properties props, Map<String, String> overrides) {
+        for (Map.Entry<String, String> override : overrides.entrySet()) {
+            String key = override.getKey();
+            if (key.equals(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG)
+                    || key.equals(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG)) {
+                continue;
+            }
+            props.setProperty(key, override.getValue());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import com.inductiveautomation.ignition.gateway.model.GatewayContext;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.config.SslConfigs;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Reference counted producers shared by the sinks with the same connection settings and profile.
+ */
+
+public class ProducerRegistry {
+
+    private static final String keyStorePwd = "ignition";
+    private static final String trustStorePwd = "Ignition2021!";
+    // records not acked by then fail, sinks with a spill log keep them
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Logger logger = LoggerFactory.getLogger("Kafka." + getClass().getSimpleName());
+    private final GatewayContext context;
+    private final Map<String, SharedProducer> producersByKey = new HashMap<>();
+    private final Map<Producer<byte[], byte[]>, SharedProducer> producersByInstance = new IdentityHashMap<>();
+
+    public ProducerRegistry(GatewayContext context) {
+        this.context = context;
+    }
+
+    public Producer<byte[], byte[]> acquire(KafkaSettingsRecord kafkaSettings,
+                                            KafkaSettingsRecord.producerProfiles profile) {
+        return acquire(kafkaSettings, profile, kafkaSettings.getBrokerList());
+    }
+
+    /** A producer for one of the named connections, every other setting comes from the settings record */
+    public synchronized Producer<byte[], byte[]> acquire(KafkaSettingsRecord kafkaSettings,
+                                                         KafkaSettingsRecord.producerProfiles profile,
+                                                         String brokerList) {
+        Properties props = getProducerProps(kafkaSettings, profile, brokerList);
+        String key = new TreeMap<>(props).toString();
+
+        SharedProducer shared = producersByKey.get(key);
+        if (shared == null) {
+            logger.info("Creating " + profile + " producer for " + brokerList);
+            shared = new SharedProducer(key, createProducer(props));
+            producersByKey.put(key, shared);
+            producersByInstance.put(shared.producer, shared);
+        }
+        shared.references++;
+        return shared.producer;
+    }
+
+    /**
+     * Closes the producer once the last sink using it lets go. Closing waits for in-flight records, so it
+     * happens outside the lock, where unreachable brokers can't hold up other sinks acquiring producers.
+     */
+    public void release(Producer<byte[], byte[]> producer) {
+        synchronized (this) {
+            SharedProducer shared = producersByInstance.get(producer);
+            if (shared == null || --shared.references > 0) {
+                return;
+            }
+            producersByKey.remove(shared.key);
+            producersByInstance.remove(producer);
+        }
+
+        logger.info("Closing producer, no sinks left using it");
+        producer.close(CLOSE_TIMEOUT);
+    }
+
+    public synchronized int size() {
+        return producersByKey.size();
+    }
+
+    protected Producer<byte[], byte[]> createProducer(Properties props) {
+        Thread.currentThread().setContextClassLoader(null); //Testing from stack overflow
+        return new KafkaProducer<byte[], byte[]>(props);
+    }
+
+    protected Properties getProducerProps(KafkaSettingsRecord kafkaSettings,
+                                          KafkaSettingsRecord.producerProfiles profile, String brokerList) {
+        Properties props = new Properties();
+
+        props.setProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerList);
+        props.setProperty(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        props.setProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+
+        // safe producer settings
+        props.setProperty(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        props.setProperty(ProducerConfig.ACKS_CONFIG, "all");
+        props.setProperty(ProducerConfig.RETRIES_CONFIG, Integer.toString(Integer.MAX_VALUE));
+        props.setProperty(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "5");
+
+        if (kafkaSettings.getBalancedPartitioner()) {
+            props.setProperty(ProducerConfig.PARTITIONER_CLASS_CONFIG, BalancedPartitioner.class.getName());
+        }
+
+        ProducerProfiles.apply(props, profile);
+        ProducerProfiles.applyOverrides(props, kafkaSettings.getProducerOverrides());
+        ProducerProfiles.applyOverrides(props, kafkaSettings.getProfileOverrides(profile));
+
+        if (kafkaSettings.getUseSSL()) {
+            addSSLProps(props);
+        }
+        return props;
+    }
+
+    /** The gateway's keystore and truststore, also used by the command topic consumer */
+    public void addSSLProps(Properties props){
+        String homePath = getGatewayHome();
+        String sep = File.separator;
+
+        logger.debug("homepath = " + homePath);
+        props.put(SslConfigs.SSL_PROTOCOL_CONFIG,"SSL");
+        props.put("security.protocol","SSL");
+        props.put(SslConfigs.SSL_ENDPOINT_IDENTIFICATION_ALGORITHM_CONFIG,"");
+
+        // Keystore settings
+        String keystorePath = homePath+String.format("%swebserver%sssl.pfx",sep,sep,sep);
+        logger.debug("SSL Keystore Path: " + keystorePath);
+
+        if(fileExists(keystorePath)) {
+            props.put(SslConfigs.SSL_KEYSTORE_LOCATION_CONFIG, keystorePath);
+            props.put(SslConfigs.SSL_KEYSTORE_PASSWORD_CONFIG, keyStorePwd);
+            props.put(SslConfigs.SSL_KEY_PASSWORD_CONFIG,keyStorePwd);
+        }
+
+        // Truststore settings
+        String truststorePath = homePath+String.format("%sdata%scertificates%struststore.jks",sep,sep,sep);
+        logger.debug("SSL TrustStore Path: " + truststorePath);
+
+        if (fileExists(truststorePath)) {
+            props.put(SslConfigs.SSL_TRUSTSTORE_LOCATION_CONFIG, truststorePath);
+            props.put(SslConfigs.SSL_TRUSTSTORE_PASSWORD_CONFIG, trustStorePwd);
+        }
+    }
+
+    private String getGatewayHome(){
+        String absPath = context.getSystemManager().getDataDir().getAbsolutePath();
+        return absPath.substring(0,absPath.lastIndexOf(File.separator));
+    }
+
+    private static boolean fileExists(String path){
+        File fObj = new File(path);
+        return fObj.exists();
+    }
+
+    private static class SharedProducer {
+        private final String key;
+        private final Producer<byte[], byte[]> producer;
+        private int references;
+
+        private SharedProducer(String key, Producer<byte[], byte[]> producer) {
+            this.key = key;
+            this.producer = producer;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free ring of per-second counters covering the last 15 minutes.
+ */
+
+public class RateWindow {
+
+    public static final int SECONDS = 15 * 60;
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLongArray slots = new AtomicLongArray(SECONDS);
+
+    public void add(long nowMillis, long n) {
+        long second = (nowMillis / 1000) & COUNT_MASK;
+        int index = (int) (second % SECONDS);
+
+        while (true) {
+            long current = slots.get(index);
+            long updated = (current >>> 32) == second
+                    ? current + Math.min(n, COUNT_MASK - (current & COUNT_MASK))
+                    : (second << 32) | Math.min(n, COUNT_MASK);
+            if (slots.compareAndSet(index, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /** Average events per second over the last windowSeconds, including the current partial second */
+    public double getRate(long nowMillis, int windowSeconds) {
+        int window = Math.min(Math.max(windowSeconds, 1), SECONDS);
+        long second = (nowMillis / 1000) & COUNT_MASK;
+        long total = 0;
+
+        for (int i = 0; i < window; i++) {
+            long slotSecond = (second - i) & COUNT_MASK;
+            long slot = slots.get((int) (slotSecond % SECONDS));
+            if ((slot >>> 32) == slotSecond) {
+                total += slot & COUNT_MASK;
+            }
+        }
+        return (double) total / window;
+    }
+
+    public void reset() {
+        for (int i = 0; i < SECONDS; i++) {
+            slots.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kafka record keys for the configured key strategy.
+ */
+
+public class RecordKeys {
+
+    private static final int MAX_CACHED_KEYS = 100_000;
+
+    private final KafkaSettingsRecord.recordKeys strategy;
+    private final Map<String, Map<String, byte[]>> cache = new ConcurrentHashMap<>();
+    private final AtomicInteger cached = new AtomicInteger();
+
+    public RecordKeys(KafkaSettingsRecord.recordKeys strategy) {
+        this.strategy = strategy;
+    }
+
+    public KafkaSettingsRecord.recordKeys getStrategy() {
+        return strategy;
+    }
+
+    public byte[] tagKey(String provider, String tagPath) {
+        switch (strategy) {
+            case TagPath:
+            case ProviderAndPath:
+                return cachedKey(provider, tagPath);
+            default:
+                return null;
+        }
+    }
+
+    public byte[] batchKey(String provider) {
+        return strategy == KafkaSettingsRecord.recordKeys.None ? null : cachedKey(provider, "");
+    }
+
+    public byte[] alarmKey(String uuid, String provider, String tagPath) {
+        switch (strategy) {
+            case AlarmUuid:
+                return uuid.getBytes(StandardCharsets.UTF_8);
+            case TagPath:
+            case ProviderAndPath:
+                return cachedKey(provider, tagPath);
+            default:
+                return null;
+        }
+    }
+
+    private byte[] cachedKey(String provider, String tagPath) {
+        Map<String, byte[]> paths = cache.get(provider);
+        if (paths == null) {
+            paths = cache.computeIfAbsent(provider, p -> new ConcurrentHashMap<>());
+        }
+
+        byte[] key = paths.get(tagPath);
+        if (key == null) {
+            if (cached.get() >= MAX_CACHED_KEYS) {
+                cache.clear();
+                cached.set(0);
+            }
+            key = buildKey(provider, tagPath).getBytes(StandardCharsets.UTF_8);
+            if (paths.putIfAbsent(tagPath, key) == null) {
+                cached.incrementAndGet();
+            }
+        }
+        return key;
+    }
+
+    private String buildKey(String provider, String tagPath) {
+        if (tagPath.isEmpty()) {
+            return provider;
+        }
+        return strategy == KafkaSettingsRecord.recordKeys.ProviderAndPath ? "[" + provider + "]" + tagPath : tagPath;
+    }
+}
@@ -0,0 +1,44 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+/**
+ * Destination of a routing rule: a connection, and the topic to use there.
+ */
+
+public class Route {
+
+    private final String connection;
+    private final String topic;
+
+    Route(String connection, String topic) {
+        this.connection = connection;
+        this.topic = topic;
+    }
+
+    public String getConnection() {
+        return connection;
+    }
+
+    /** @return null when the stream's own topic is used */
+    public String getTopic() {
+        return topic;
+    }
+
+    public String topicOr(String streamTopic) {
+        return topic == null ? streamTopic : topic;
+    }
+
+    /** Records on the default connection are sent by the stream's own sink */
+    public boolean isDefaultConnection() {
+        return RouteTable.DEFAULT_CONNECTION.equals(connection);
+    }
+
+    /** Name of the sink sending this route's records, and the signature of those records */
+    public String getSinkName() {
+        return RouteTable.sinkName(connection);
+    }
+
+    @Override
+    public String toString() {
+        return topic == null ? connection : connection + "/" + topic;
+    }
+}
@@ -0,0 +1,13 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import java.io.IOException;
+
+/**
+ * Hands a record to the store and forward queue of the named sink.
+ */
+
+@FunctionalInterface
+public interface RouteForwarder {
+
+    void forward(String sinkName, SinkData data) throws IOException;
+}
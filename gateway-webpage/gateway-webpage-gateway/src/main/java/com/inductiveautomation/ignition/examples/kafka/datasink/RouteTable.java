@@ -0,0 +1,162 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routing rules from the settings record, compiled once per settings change.
+ */
+
+public class RouteTable {
+
+    public static final String DEFAULT_CONNECTION = "default";
+    private static final String SINK_PREFIX = "kafka-route-";
+
+    private static final Logger logger = LoggerFactory.getLogger("Kafka.RouteTable");
+
+    private final Map<String, String> connections;
+    private final Node providers = new Node();
+    private final Route[] alarmRoutes = new Route[KafkaSettingsRecord.alarmPriorities.values().length];
+    private int ruleCount = 0;
+
+    private RouteTable(Map<String, String> connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Rules are tag:[provider]folder/sub=connection/topic and alarm:High=connection/topic, the topic can be left
+     * out. Rules naming an unknown connection or with bad syntax are logged and skipped.
+     */
+    public static RouteTable compile(KafkaSettingsRecord settings) {
+        Map<String, String> connections = new LinkedHashMap<>(settings.getConnections());
+        if (connections.remove(DEFAULT_CONNECTION) != null) {
+            logger.warn("Connection name '" + DEFAULT_CONNECTION + "' is reserved for the Brokers setting, ignored");
+        }
+
+        RouteTable table = new RouteTable(Collections.unmodifiableMap(connections));
+        for (String rule : settings.getRoutes()) {
+            String problem = table.add(rule);
+            if (problem != null) {
+                logger.warn("Ignoring route '" + rule + "': " + problem);
+            }
+        }
+        return table;
+    }
+
+    public static String sinkName(String connection) {
+        return SINK_PREFIX + connection;
+    }
+
+    private String add(String rule) {
+        int split = rule.lastIndexOf('=');
+        int kind = rule.indexOf(':');
+        if (kind < 0 || split < kind) {
+            return "expected tag:[provider]path=connection/topic or alarm:Priority=connection/topic";
+        }
+
+        String target = rule.substring(split + 1).trim();
+        int slash = target.indexOf('/');
+        String connection = slash < 0 ? target : target.substring(0, slash).trim();
+        String topic = slash < 0 || slash == target.length() - 1 ? null : target.substring(slash + 1).trim();
+        if (!connection.equals(DEFAULT_CONNECTION) && !connections.containsKey(connection)) {
+            return "no connection named '" + connection + "'";
+        }
+        Route route = new Route(connection, topic);
+
+        String type = rule.substring(0, kind).trim().toLowerCase(Locale.ROOT);
+        String match = rule.substring(kind + 1, split).trim();
+        if (type.equals("alarm")) {
+            for (KafkaSettingsRecord.alarmPriorities priority : KafkaSettingsRecord.alarmPriorities.values()) {
+                if (priority.name().equalsIgnoreCase(match)) {
+                    alarmRoutes[priority.ordinal()] = route;
+                    ruleCount++;
+                    return null;
+                }
+            }
+            return "unknown alarm priority '" + match + "'";
+        }
+        if (!type.equals("tag")) {
+            return "unknown rule type '" + type + "'";
+        }
+
+        if (!match.startsWith("[") || match.indexOf(']') < 2) {
+            return "tag rules start with the [provider]";
+        }
+        int close = match.indexOf(']');
+        Node node = providers.child(match.substring(1, close));
+        for (String folder : match.substring(close + 1).split("/")) {
+            if (!folder.trim().isEmpty()) {
+                node = node.child(folder.trim());
+            }
+        }
+        node.route = route;
+        ruleCount++;
+        return null;
+    }
+
+    /**
+     * @param tagPath the path without its provider, folders separated by '/'
+     * @return the deepest rule covering the tag, null when none does
+     */
+    public Route resolveTag(String provider, String tagPath) {
+        Node node = providers.get(provider);
+        if (node == null) {
+            return null;
+        }
+
+        Route best = node.route;
+        int start = 0;
+        while (start < tagPath.length()) {
+            int end = tagPath.indexOf('/', start);
+            if (end < 0) {
+                end = tagPath.length();
+            }
+            node = node.get(tagPath.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            if (node.route != null) {
+                best = node.route;
+            }
+            start = end + 1;
+        }
+        return best;
+    }
+
+    /** @return the rule for the priority, null when there is none */
+    public Route resolveAlarm(int priority) {
+        return priority >= 0 && priority < alarmRoutes.length ? alarmRoutes[priority] : null;
+    }
+
+    /** Named connections and their broker lists, without the default connection */
+    public Map<String, String> getConnections() {
+        return connections;
+    }
+
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    private static class Node {
+        private Map<String, Node> children;
+        private Route route;
+
+        Node get(String name) {
+            return children == null ? null : children.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        Node child(String name) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(name.toLowerCase(Locale.ROOT), n -> new Node());
+        }
+    }
+}
@@ -4,19 +4,35 @@ import com.inductiveautomation.ignition.gateway.history.DatasourceData;
 import com.inductiveautomation.ignition.gateway.history.HistoricalData;
 import com.inductiveautomation.ignition.gateway.history.HistoryFlavor;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+
 public class SinkData implements HistoricalData {
 
-    private String topic, value, signature;
+    /**
+     * Pinned to the UID the JVM computed for the original String-valued class, so records already
+     * sitting in the store and forward cache still deserialize; see {@link #readObject}.
+     */
+    private static final long serialVersionUID = -8461264903003025456L;
+
+    private String topic, signature;
+    private byte[] key, value;
+
+    public SinkData(String topic, byte[] value,  String signature) {
+        this(topic, null, value, signature);
+    }
 
-    public SinkData(String topic, String value,  String signature) {
+    public SinkData(String topic, byte[] key, byte[] value,  String signature) {
         this.topic = topic;
+        this.key = key;
         this.value = value;
         this.signature = signature;
     }
 
     @Override
     public String toString() {
-        return "Topic: " + topic +  " Value: " + value;
+        return "Topic: " + topic +  " Value: " + value.length + " bytes";
     }
 
     @Override
@@ -43,7 +59,26 @@ public class SinkData implements HistoricalData {
         return topic;
     }
 
-    public String getValue() {
+    public byte[] getKey() {
+        return this.key;
+    }
+
+    public byte[] getValue() {
         return this.value;
     }
+
+    /**
+     * Accepts both the current layout and the original one, where value was a String and there was
+     * no key. Old values are converted to the UTF-8 bytes the String serializer would have sent.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.topic = (String) fields.get("topic", null);
+        this.signature = (String) fields.get("signature", null);
+        this.key = (byte[]) fields.get("key", null);
+        Object stored = fields.get("value", null);
+        this.value = stored instanceof String
+                ? ((String) stored).getBytes(StandardCharsets.UTF_8)
+                : (byte[]) stored;
+    }
 }
@@ -0,0 +1,49 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.alarming.AlarmEvent;
+import com.inductiveautomation.ignition.common.alarming.EventData;
+import com.inductiveautomation.ignition.gateway.audit.AuditRecord;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns tag history, alarm and audit events into Kafka record values. Implementations must be thread safe.
+ */
+
+public interface SinkEncoder {
+
+    String getName();
+
+    byte[] encodeTagValue(String gatewayName, String provider, String tagPath, HistoricalTagValue value)
+            throws IOException;
+
+    /** tagPaths and values are parallel lists, the envelope holds gatewayName and provider once */
+    byte[] encodeTagBatch(String gatewayName, String provider, List<String> tagPaths, List<HistoricalTagValue> values)
+            throws IOException;
+
+    /** The same document as encodeTagValue, built from the fragments the TagPathCache prepared for the path */
+    default byte[] encodeTagValue(CachedTagPath path, HistoricalTagValue value) throws IOException {
+        return encodeTagValue(path.getGatewayName(), path.getProvider(), path.getPath(), value);
+    }
+
+    /** The same document as encodeTagBatch, all paths belong to the given gatewayName and provider */
+    default byte[] encodeCachedTagBatch(String gatewayName, String provider, List<CachedTagPath> tagPaths,
+                                        List<HistoricalTagValue> values) throws IOException {
+        List<String> paths = new ArrayList<>(tagPaths.size());
+        for (CachedTagPath path : tagPaths) {
+            paths.add(path.getPath());
+        }
+        return encodeTagBatch(gatewayName, provider, paths, values);
+    }
+
+    /** One TagAggregator window of one tag */
+    byte[] encodeTagSummary(TagSummary summary) throws IOException;
+
+    byte[] encodeAlarm(String gatewayName, String provider, String tagPath, String displayPath,
+                       AlarmEvent alarm, EventData data) throws IOException;
+
+    byte[] encodeAudit(AuditRecord record) throws IOException;
+}
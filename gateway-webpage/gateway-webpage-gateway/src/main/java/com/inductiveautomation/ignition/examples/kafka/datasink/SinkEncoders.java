@@ -0,0 +1,27 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+
+/**
+ * Lookup of the encoder selected for a topic in the settings record.
+ */
+
+public final class SinkEncoders {
+
+    private static final SinkEncoder JSON = new JsonEncoder();
+    private static final SinkEncoder BINARY = new BinaryEncoder();
+    private static final SinkEncoder COLUMNAR = new ColumnarEncoder();
+
+    private SinkEncoders() {
+    }
+
+    public static SinkEncoder get(KafkaSettingsRecord.encoders type) {
+        if (type == KafkaSettingsRecord.encoders.Binary) {
+            return BINARY;
+        }
+        if (type == KafkaSettingsRecord.encoders.Columnar) {
+            return COLUMNAR;
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,498 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local log of the records a sink could not deliver, replayed in order once the brokers are
+ * back. All state changes synchronize on the log itself, so a caller holding its lock sees a stable log.
+ */
+public class SpillLog {
+    private static final Logger logger = LoggerFactory.getLogger("Kafka.SpillLog");
+    // a record is [length][crc32][payload], the length written last so a record cut short by a crash reads as
+    // the end of the log; segments are preallocated and zero filled, a length of 0 marks the end
+    private static final int HEADER = 8;
+    private static final String SUFFIX = ".seg";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String LOCK = "lock";
+
+    private final String name;
+    private final File dir;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    private final List<File> unreleased = new ArrayList<>();
+
+    private long writeSegment = 0;
+    private MappedByteBuffer writeBuffer;
+
+    private long readSegment = 0;
+    private int readOffset = 0;
+    private MappedByteBuffer readBuffer;
+    private long readBufferSegment = -1;
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private boolean closed = false;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong corrupt = new AtomicLong();
+
+    /** Segments larger than the quota are shrunk to it, the log never holds more than quotaBytes on disk */
+    public SpillLog(String name, File dir, int segmentBytes, long quotaBytes) throws IOException {
+        if (segmentBytes <= HEADER || quotaBytes <= HEADER) {
+            throw new IllegalArgumentException("Spill segment size and quota must be larger than a record header");
+        }
+        this.name = name;
+        this.dir = dir;
+        this.segmentBytes = (int) Math.min(segmentBytes, quotaBytes);
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, quotaBytes / this.segmentBytes);
+        open();
+    }
+
+    private void open() throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create spill directory " + dir);
+        }
+        lock();
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            unlock();
+            throw e;
+        }
+    }
+
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(new File(dir, LOCK).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Spill directory " + dir + " is in use by another spill log");
+        }
+    }
+
+    private void unlock() {
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            lockChannel.close();
+        } catch (IOException e) {
+            logger.warn("Unable to release lock on spill directory " + dir + ": " + e);
+        }
+    }
+
+    private void load() throws IOException {
+        File[] files = dir.listFiles((d, n) -> n.endsWith(SUFFIX));
+        if (files != null) {
+            for (File f : files) {
+                try {
+                    segments.put(Long.parseLong(f.getName().substring(0, f.getName().length() - SUFFIX.length())), f);
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file in spill directory: " + f);
+                }
+            }
+        }
+
+        readCheckpoint();
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        // everything before the checkpoint has been replayed already
+        Iterator<Map.Entry<Long, File>> it = segments.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, File> e = it.next();
+            if (e.getKey() < readSegment) {
+                deleteSegment(e.getValue());
+                it.remove();
+            }
+        }
+        if (segments.isEmpty()) {
+            readOffset = 0;
+            return;
+        }
+        if (!segments.containsKey(readSegment)) {
+            readSegment = segments.firstKey();
+            readOffset = 0;
+        }
+
+        writeSegment = segments.lastKey();
+        writeBuffer = map(segments.get(writeSegment));
+        writeBuffer.position(scanEnd(writeBuffer));
+
+        logger.info(String.format("Opened spill log %s with %d segments, %d bytes to replay",
+                name, segments.size(), getBacklogBytes()));
+    }
+
+    /**
+     * Appends one record. Returns false if the record was rejected because the disk quota is used up, the
+     * record doesn't fit in a segment or the log is closed.
+     */
+    public synchronized boolean append(SinkData data) {
+        if (closed) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        byte[] payload = encode(data);
+        int size = HEADER + payload.length;
+
+        try {
+            if (size > segmentBytes) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (writeBuffer == null || writeBuffer.remaining() < size) {
+                if (!roll()) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+
+            int pos = writeBuffer.position();
+            writeBuffer.position(pos + HEADER);
+            writeBuffer.put(payload);
+            writeBuffer.putInt(pos + 4, (int) crc.getValue());
+            writeBuffer.putInt(pos, payload.length);
+
+            appended.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            logger.error("Unable to append to spill log " + name + ": " + e);
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    private boolean roll() throws IOException {
+        if (segments.size() >= maxSegments) {
+            return false;
+        }
+        if (writeBuffer != null) {
+            writeBuffer.force();
+        }
+
+        writeSegment = segments.isEmpty() ? Math.max(1, readSegment) : segments.lastKey() + 1;
+        File f = new File(dir, String.format("%020d%s", writeSegment, SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(segmentBytes);
+        }
+        segments.put(writeSegment, f);
+        writeBuffer = map(f);
+
+        if (segments.size() == 1) {
+            readSegment = writeSegment;
+            readOffset = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Reads up to max records from the replay position without moving it; commit the batch once the records
+     * are acknowledged. Corrupt records are counted and the rest of their segment is skipped.
+     */
+    public synchronized Batch read(int max) throws IOException {
+        checkOpen();
+        List<SinkData> records = new ArrayList<>(Math.min(max, 1024));
+        long segment = readSegment;
+        int offset = readOffset;
+
+        while (records.size() < max && segments.containsKey(segment)) {
+            ByteBuffer buf = readBuffer(segment);
+            int length = offset + HEADER <= segmentBytes ? buf.getInt(offset) : 0;
+
+            if (length <= 0 || offset + HEADER + length > segmentBytes) {
+                if (segment >= writeSegment) {
+                    break;
+                }
+                segment = segments.higherKey(segment);
+                offset = 0;
+                continue;
+            }
+
+            byte[] payload = new byte[length];
+            ByteBuffer view = buf.duplicate();
+            view.position(offset + HEADER);
+            view.get(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != buf.getInt(offset + 4)) {
+                corrupt.incrementAndGet();
+                logger.warn(String.format("Corrupt record in spill log %s segment %d at %d, skipping the rest of the segment",
+                        name, segment, offset));
+                if (segment >= writeSegment) {
+                    offset = writeBuffer.position();
+                    break;
+                }
+                segment = segments.higherKey(segment);
+                offset = 0;
+                continue;
+            }
+
+            records.add(decode(payload));
+            offset += HEADER + length;
+        }
+        return new Batch(records, segment, offset, segment != readSegment || offset != readOffset);
+    }
+
+    /**
+     * Moves the replay position past the batch, persists it and deletes the segments it finished.
+     */
+    public synchronized void commit(Batch batch) throws IOException {
+        checkOpen();
+        readSegment = batch.segment;
+        readOffset = batch.offset;
+        replayed.addAndGet(batch.records.size());
+
+        Iterator<Map.Entry<Long, File>> it = segments.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, File> e = it.next();
+            if (e.getKey() >= readSegment) {
+                break;
+            }
+            if (e.getKey() == readBufferSegment) {
+                readBuffer = null;
+                readBufferSegment = -1;
+            }
+            deleteSegment(e.getValue());
+            it.remove();
+        }
+
+        // once caught up the active segment can go as well, the next append starts a fresh one
+        if (readSegment == writeSegment && writeBuffer != null && readOffset >= writeBuffer.position()
+                && segments.size() == 1) {
+            File active = segments.remove(writeSegment);
+            writeBuffer = null;
+            readBuffer = null;
+            readBufferSegment = -1;
+            readSegment = writeSegment + 1;
+            readOffset = 0;
+            deleteSegment(active);
+        }
+
+        writeCheckpoint();
+    }
+
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty() || getBacklogBytes() <= 0;
+    }
+
+    /** Bytes between the replay position and the end of the log, including unused space at segment ends */
+    public synchronized long getBacklogBytes() {
+        if (segments.isEmpty() || writeBuffer == null) {
+            return 0;
+        }
+        long between = segments.subMap(readSegment, true, writeSegment, false).size();
+        return between * segmentBytes + writeBuffer.position() - readOffset;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getAppended() {
+        return appended.get();
+    }
+
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getCorrupt() {
+        return corrupt.get();
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writeBuffer != null) {
+            writeBuffer.force();
+        }
+        writeBuffer = null;
+        readBuffer = null;
+        readBufferSegment = -1;
+        unlock();
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Spill log " + name + " is closed");
+        }
+    }
+
+    private ByteBuffer readBuffer(long segment) throws IOException {
+        if (segment == writeSegment && writeBuffer != null) {
+            return writeBuffer;
+        }
+        if (readBufferSegment != segment) {
+            readBuffer = map(segments.get(segment));
+            readBufferSegment = segment;
+        }
+        return readBuffer;
+    }
+
+    private MappedByteBuffer map(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() < segmentBytes) {
+                raf.setLength(segmentBytes);
+            }
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    /** Finds the end of the valid records in a segment, stopping at the first empty or torn record */
+    private int scanEnd(ByteBuffer buf) {
+        int offset = 0;
+        while (offset + HEADER <= segmentBytes) {
+            int length = buf.getInt(offset);
+            if (length <= 0 || offset + HEADER + length > segmentBytes) {
+                break;
+            }
+            offset += HEADER + length;
+        }
+        return offset;
+    }
+
+    private void deleteSegment(File f) {
+        // a segment that is still mapped can't be deleted on Windows until the mapping is collected
+        if (!f.delete() && f.exists()) {
+            unreleased.add(f);
+        }
+        unreleased.removeIf(u -> u.delete() || !u.exists());
+    }
+
+    private void readCheckpoint() {
+        File f = new File(dir, CHECKPOINT);
+        if (!f.isFile()) {
+            return;
+        }
+        try {
+            String[] parts = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+            readSegment = Long.parseLong(parts[0]);
+            readOffset = Integer.parseInt(parts[1]);
+        } catch (Exception e) {
+            logger.warn("Unreadable spill checkpoint for " + name + ", replaying from the oldest segment: " + e);
+            readSegment = 0;
+            readOffset = 0;
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        File tmp = new File(dir, CHECKPOINT + ".tmp");
+        Files.write(tmp.toPath(), (readSegment + " " + readOffset).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), new File(dir, CHECKPOINT).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] encode(SinkData data) {
+        byte[] topic = data.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] signature = data.getSignature().getBytes(StandardCharsets.UTF_8);
+        byte[] key = data.getKey();
+        byte[] value = data.getValue();
+
+        ByteBuffer buf = ByteBuffer.allocate(16 + topic.length + signature.length
+                + (key == null ? 0 : key.length) + value.length);
+        buf.putInt(topic.length).put(topic);
+        buf.putInt(signature.length).put(signature);
+        buf.putInt(key == null ? -1 : key.length);
+        if (key != null) {
+            buf.put(key);
+        }
+        buf.putInt(value.length).put(value);
+        return buf.array();
+    }
+
+    private static SinkData decode(byte[] payload) {
+        ByteBuffer buf = ByteBuffer.wrap(payload);
+        String topic = readString(buf);
+        String signature = readString(buf);
+        int keyLength = buf.getInt();
+        byte[] key = null;
+        if (keyLength >= 0) {
+            key = new byte[keyLength];
+            buf.get(key);
+        }
+        byte[] value = new byte[buf.getInt()];
+        buf.get(value);
+        return new SinkData(topic, key, value, signature);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records read from the log, with the position just after the last of them.
+     */
+    public static class Batch {
+        private final List<SinkData> records;
+        private final long segment;
+        private final int offset;
+        private final boolean moved;
+
+        Batch(List<SinkData> records, long segment, int offset, boolean moved) {
+            this.records = records;
+            this.segment = segment;
+            this.offset = offset;
+            this.moved = moved;
+        }
+
+        public List<SinkData> getRecords() {
+            return records;
+        }
+
+        public boolean isEmpty() {
+            return records.isEmpty();
+        }
+
+        /** False when the batch ends where the replay position already is, there is nothing to commit */
+        public boolean hasProgress() {
+            return moved;
+        }
+    }
+}
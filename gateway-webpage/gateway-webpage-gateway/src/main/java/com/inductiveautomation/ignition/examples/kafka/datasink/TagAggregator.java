@@ -0,0 +1,233 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * min/max/sum/last/count of every tag over fixed windows aligned to the epoch, emitted as one TagSummary
+ * per tag per window.
+ */
+public class TagAggregator {
+
+    public interface Emitter {
+        void emit(TagSummary summary);
+    }
+
+    private static final long EMPTY = 0;
+    private static final float LOAD_FACTOR = 0.7f;
+    private static final int MAX_TAGS = 1 << 20;
+    // scan classes and store and forward deliver values a little after they were taken
+    private static final long GRACE_MS = 5000;
+
+    private final long windowMs;
+    private Emitter emitter;
+    private final TagSummary summary = new TagSummary();
+
+    // open-addressing table keyed by the CachedTagPath filter key, running values in parallel arrays
+    private long[] keys;
+    private CachedTagPath[] paths;
+    private long[] windows;
+    private long[] counts;
+    private double[] mins;
+    private double[] maxs;
+    private double[] sums;
+    private double[] lasts;
+    private long[] lastTimes;
+    private int size = 0;
+
+    private final LongAdder aggregated = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder emitted = new LongAdder();
+
+    public TagAggregator(int windowSeconds, Emitter emitter) {
+        this.windowMs = Math.max(1, windowSeconds) * 1000L;
+        this.emitter = emitter;
+        allocate(1024);
+    }
+
+    /** Open windows move with the aggregator when the sink is rebuilt, their summaries go to the new sink */
+    public synchronized void setEmitter(Emitter emitter) {
+        this.emitter = emitter;
+    }
+
+    public synchronized void add(CachedTagPath path, HistoricalTagValue value) {
+        Object v = value.getValue();
+        if (!(v instanceof Number || v instanceof Boolean)
+                || (value.getQuality() != null && !value.getQuality().isGood())) {
+            skipped.increment();
+            return;
+        }
+        double d = v instanceof Boolean ? ((Boolean) v ? 1 : 0) : ((Number) v).doubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            skipped.increment();
+            return;
+        }
+
+        long time = value.getTimestamp() == null ? System.currentTimeMillis() : value.getTimestamp().getTime();
+        long window = Math.floorDiv(time, windowMs);
+        long key = path.getFilterKey();
+        int slot = find(key);
+
+        if (keys[slot] == EMPTY) {
+            if (size >= MAX_TAGS) {
+                skipped.increment();
+                return;
+            }
+            keys[slot] = key;
+            paths[slot] = path;
+            size++;
+            start(slot, window, d, time);
+            if (size > keys.length * LOAD_FACTOR) {
+                grow();
+            }
+            return;
+        }
+
+        if (time <= lastTimes[slot]) {
+            late.increment();
+            return;
+        }
+
+        if (window != windows[slot]) {
+            if (counts[slot] > 0) {
+                emit(slot);
+            }
+            start(slot, window, d, time);
+            return;
+        }
+
+        if (counts[slot] == 0) {
+            start(slot, window, d, time);
+            return;
+        }
+        counts[slot]++;
+        mins[slot] = Math.min(mins[slot], d);
+        maxs[slot] = Math.max(maxs[slot], d);
+        sums[slot] += d;
+        lasts[slot] = d;
+        lastTimes[slot] = time;
+        aggregated.increment();
+    }
+
+    /**
+     * Emits the windows that ended more than GRACE_MS before now, later values for them count as late.
+     */
+    public synchronized void flush(long now) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && counts[slot] > 0 && (windows[slot] + 1) * windowMs + GRACE_MS <= now) {
+                close(slot);
+            }
+        }
+    }
+
+    /**
+     * Emits every open window, partial or not, used when the sink shuts down.
+     */
+    public synchronized void flushAll() {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && counts[slot] > 0) {
+                close(slot);
+            }
+        }
+    }
+
+    private void close(int slot) {
+        emit(slot);
+        counts[slot] = 0;
+        lastTimes[slot] = Math.max(lastTimes[slot], (windows[slot] + 1) * windowMs - 1);
+    }
+
+    private void start(int slot, long window, double d, long time) {
+        windows[slot] = window;
+        counts[slot] = 1;
+        mins[slot] = d;
+        maxs[slot] = d;
+        sums[slot] = d;
+        lasts[slot] = d;
+        lastTimes[slot] = time;
+        aggregated.increment();
+    }
+
+    private void emit(int slot) {
+        long start = windows[slot] * windowMs;
+        summary.set(paths[slot], start, start + windowMs, counts[slot], mins[slot], maxs[slot],
+                sums[slot] / counts[slot], lasts[slot]);
+        emitter.emit(summary);
+        emitted.increment();
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        CachedTagPath[] oldPaths = paths;
+        long[] oldWindows = windows;
+        long[] oldCounts = counts;
+        double[] oldMins = mins;
+        double[] oldMaxs = maxs;
+        double[] oldSums = sums;
+        double[] oldLasts = lasts;
+        long[] oldTimes = lastTimes;
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                paths[slot] = oldPaths[i];
+                windows[slot] = oldWindows[i];
+                counts[slot] = oldCounts[i];
+                mins[slot] = oldMins[i];
+                maxs[slot] = oldMaxs[i];
+                sums[slot] = oldSums[i];
+                lasts[slot] = oldLasts[i];
+                lastTimes[slot] = oldTimes[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        paths = new CachedTagPath[capacity];
+        windows = new long[capacity];
+        counts = new long[capacity];
+        mins = new double[capacity];
+        maxs = new double[capacity];
+        sums = new double[capacity];
+        lasts = new double[capacity];
+        lastTimes = new long[capacity];
+    }
+
+    public long getWindowSeconds() {
+        return windowMs / 1000;
+    }
+
+    public synchronized int getTrackedTags() {
+        return size;
+    }
+
+    public long getAggregated() {
+        return aggregated.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getLate() {
+        return late.sum();
+    }
+
+    public long getEmitted() {
+        return emitted.sum();
+    }
+}
@@ -0,0 +1,74 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CachedTagPath per TagPath. Past MAX_CACHED_PATHS the paths not used since the last sweep are evicted.
+ */
+
+public class TagPathCache {
+
+    private static final int MAX_CACHED_PATHS = 100_000;
+
+    private final String gatewayName;
+    private final RouteTable routes;
+    private final Map<TagPath, Slot> cache = new ConcurrentHashMap<>();
+
+    private Iterator<Slot> hand;
+
+    public TagPathCache(String gatewayName, RouteTable routes) {
+        this.gatewayName = gatewayName;
+        this.routes = routes;
+    }
+
+    public CachedTagPath get(String provider, TagPath source) {
+        Slot slot = cache.get(source);
+        if (slot != null && slot.path.getProvider().equals(provider)) {
+            slot.referenced = true;
+            return slot.path;
+        }
+        if (slot == null && cache.size() >= MAX_CACHED_PATHS) {
+            evictOne();
+        }
+        String path = source.toString().replace("[" + provider + "]", "");
+        CachedTagPath cached = new CachedTagPath(gatewayName, provider, path, routes.resolveTag(provider, path));
+        cache.put(source, new Slot(cached));
+        return cached;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /** Clears the referenced bit of the paths it passes and removes the first one that was already clear */
+    private synchronized void evictOne() {
+        for (int i = 0, max = 2 * cache.size() + 1; i < max; i++) {
+            if (hand == null || !hand.hasNext()) {
+                hand = cache.values().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Slot slot = hand.next();
+            if (slot.referenced) {
+                slot.referenced = false;
+            } else {
+                hand.remove();
+                return;
+            }
+        }
+    }
+
+    private static final class Slot {
+        private final CachedTagPath path;
+        private volatile boolean referenced;
+
+        private Slot(CachedTagPath path) {
+            this.path = path;
+        }
+    }
+}
@@ -1,16 +1,21 @@
 package com.inductiveautomation.ignition.examples.kafka.datasink;
 
+import com.inductiveautomation.ignition.common.execution.ExecutionManager;
 import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
 import com.inductiveautomation.ignition.gateway.history.HistoricalData;
 import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
 import com.inductiveautomation.ignition.gateway.history.sf.BasicDataTransaction;
 import com.inductiveautomation.ignition.gateway.sqltags.model.BasicScanclassHistorySet;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Written By: Nick Robinson
@@ -18,54 +23,361 @@ import java.io.IOException;
  * Content:
  *      When the history manager calls "storeData" it will come here.
  *      Tag history data structure is defined here
+ *      Records routed to another connection are handed to that connection's sink through the RouteForwarder
  */
 
 public class TagSink extends KafkaSink{
 
+    private static final String AGGREGATE_TASK_OWNER = "KafkaTagAggregation";
+    private static final int AGGREGATE_FLUSH_RATE_MS = 1000;
+
     private String topic;
+    private boolean batched;
+    private int batchSize;
+    private SinkEncoder encoder;
+    private RecordKeys keys;
+    // swapped when only the filter settings change, see updateFilter
+    private volatile TagValueFilter filter;
+    private final TagPathCache paths;
+    private final RouteTable routes;
+    private RouteForwarder forwarder;
+    private final boolean raw;
+    private TagAggregator aggregator;
+    // set once a replacement sink took over the open windows, see adoptAggregation
+    private volatile boolean aggregationHandedOver = false;
+    private String aggregateTopic;
+    private String aggregateSignature;
+    private final Queue<SinkData> summaries = new ConcurrentLinkedQueue<>();
+    private ExecutionManager executionManager;
     private final Logger logger = LoggerFactory.getLogger("Kafka." + getClass().getSimpleName());
 
-    public TagSink(String pipeLineName, KafkaSettingsRecord kafkaSettings) {
-        super(pipeLineName, kafkaSettings);
+    public TagSink(String pipeLineName, KafkaSettingsRecord kafkaSettings, ProducerRegistry producers,
+                   RouteTable routes) {
+        super(pipeLineName, kafkaSettings, producers, kafkaSettings.getTagHistoryProfile());
         // topic can be changed from the gateway UI
         this.topic = kafkaSettings.getTagHistoryTopic();
+        this.batched = kafkaSettings.isTagHistoryBatched();
+        this.batchSize = kafkaSettings.getTagBatchSize();
+        this.encoder = SinkEncoders.get(kafkaSettings.getTagHistoryEncoder());
+        this.keys = new RecordKeys(kafkaSettings.getTagHistoryKey());
+        this.routes = routes;
+        this.paths = new TagPathCache(this.hostName, routes);
+        this.filter = createFilter(kafkaSettings);
         this.stats.put(pipeLineName, new MessageStats(pipeLineName));
+
+        KafkaSettingsRecord.tagAggregations aggregation = kafkaSettings.getTagAggregation();
+        this.raw = aggregation != KafkaSettingsRecord.tagAggregations.Aggregated;
+        if (aggregation != KafkaSettingsRecord.tagAggregations.Raw) {
+            this.aggregateTopic = kafkaSettings.getTagAggregationTopic();
+            this.aggregateSignature = pipeLineName + "-aggregates";
+            this.aggregator = new TagAggregator(kafkaSettings.getTagAggregationWindow(), this::queueSummary);
+            this.stats.put(aggregateSignature, new MessageStats(aggregateSignature));
+        }
+    }
+
+    private static TagValueFilter createFilter(KafkaSettingsRecord kafkaSettings) {
+        if (kafkaSettings.getTagFilter() == KafkaSettingsRecord.tagFilters.Off) {
+            return null;
+        }
+        return new TagValueFilter(kafkaSettings.getTagFilter(), kafkaSettings.getTagDeadband(),
+                kafkaSettings.getTagHeartbeat());
     }
 
+    /**
+     * Replaces the filter without rebuilding the sink. The new filter starts without last values, so the
+     * next value of every tag is sent.
+     */
+    public void updateFilter(KafkaSettingsRecord kafkaSettings) {
+        this.filter = createFilter(kafkaSettings);
+        logger.info("Tag filter of " + getPipelineName() + " set to " + kafkaSettings.getTagFilter());
+    }
+
+    public void setForwarder(RouteForwarder forwarder) {
+        this.forwarder = forwarder;
+    }
+
+    /**
+     * Summaries are sent from the execution manager, so windows of tags that stopped changing are emitted
+     * once they end, independent of the history manager's transactions.
+     */
+    public void startAggregation(ExecutionManager executionManager) {
+        if (aggregator != null) {
+            this.executionManager = executionManager;
+            executionManager.register(AGGREGATE_TASK_OWNER, getPipelineName(), this::flushAggregates,
+                    AGGREGATE_FLUSH_RATE_MS);
+        }
+    }
+
+    /**
+     * Takes over the open windows and unsent summaries of the sink this one replaces, so a settings change
+     * doesn't split a window into two summaries. If the window length changed the previous sink emits its
+     * open windows as they are when it closes.
+     */
+    public void adoptAggregation(TagSink previous) {
+        if (aggregator == null || previous == null || previous.aggregator == null
+                || previous.aggregator.getWindowSeconds() != aggregator.getWindowSeconds()) {
+            return;
+        }
+        previous.aggregationHandedOver = true;
+        previous.aggregator.setEmitter(this::queueSummary);
+        this.aggregator = previous.aggregator;
+
+        SinkData summary;
+        while ((summary = previous.summaries.poll()) != null) {
+            summaries.add(summary);
+        }
+    }
+
+    /**
+     * Every scan set of the transaction is encoded first and the records go out as one batch; this returns
+     * once Kafka has acked all of them, or throws so the history manager retries the transaction.
+     * Values that can't be encoded are logged and left out, retrying would not change them.
+     * Tag summaries that couldn't be sent come back through here as well, see storeSummaries.
+     */
     @Override
     public void storeData(HistoricalData data) throws IOException {
-        int pathIndex = 0;
+        TagValueFilter filter = this.filter;
+        List<SinkData> records = new ArrayList<>();
 
         for (HistoricalData row : BasicDataTransaction.class.cast(data).getData()) {
+            if (row instanceof SinkData) {
+                records.add(storedSummary((SinkData) row));
+                continue;
+            }
             BasicScanclassHistorySet scanset = BasicScanclassHistorySet.class.cast(row);
             if (scanset.size() == 0) continue;
 
-            String gatewayName = this.hostName;
             String provider = scanset.getProviderName();
-            pathIndex = provider.length() + 2;
 
+            if (aggregator != null) {
                 for (HistoricalTagValue tagValue : scanset) {
-                    try{
-                        String json = new JSONObject()
-                                .put("gatewayName", gatewayName)
-                                .put("provider", provider)
-                                .put("tagPath", tagValue.getSource().toString().replace("["+provider+"]", ""))
-                                .put("type", tagValue.getTypeClass())
-                                .put("quality", tagValue.getQuality())
-                                .put("value", String.valueOf(tagValue.getValue()))
-                                .put("epochms", tagValue.getTimestamp().getTime())
-                                .toString();
-
-                        SinkData value = new SinkData(topic, json, this.getPipelineName());
-                        this.sendDataWithProducer(value);
-
-                    } catch (JSONException e) {
-                        logger.error("Error sending tag: " +  e.toString());
-                    }
+                    aggregator.add(paths.get(provider, tagValue.getSource()), tagValue);
                 }
+            }
+            if (!raw) continue;
+
+            if (batched) {
+                addBatched(provider, scanset, filter, records);
+            } else {
+                addIndividual(provider, scanset, filter, records);
+            }
+        }
+
+        List<SinkData> routed = new ArrayList<>();
+        if (!routes.isEmpty()) {
+            records = splitRouted(records, routed);
         }
-        if (pathIndex > 0) {
+
+        if (!records.isEmpty()) {
+            try {
+                sendBatchWithProducer(records);
+            } catch (IOException e) {
+                // the retry has to resend these values, not compare them with values that never arrived
+                if (filter != null) {
+                    invalidateFilter(filter, data);
+                }
+                throw e;
+            }
             setLastMessageTime(this.name);
         }
+
+        // only once the local records are acked, a failed send is retried whole and would forward these again
+        for (SinkData record : routed) {
+            forwarder.forward(record.getSignature(), record);
+        }
+    }
+
+    /**
+     * Moves records for other connections into routed and returns the ones this sink sends. The other sinks
+     * have their own store and forward queue and producer, so a slow cluster doesn't hold this one up.
+     */
+    private List<SinkData> splitRouted(List<SinkData> records, List<SinkData> routed) {
+        List<SinkData> local = new ArrayList<>(records.size());
+        for (SinkData record : records) {
+            if (record.getSignature().equals(this.name) || record.getSignature().equals(aggregateSignature)) {
+                local.add(record);
+            } else {
+                routed.add(record);
+            }
+        }
+        return local;
+    }
+
+    /** A record on the route's connection and topic, signed by the sink that sends it */
+    private SinkData record(Route route, byte[] key, byte[] bytes) {
+        if (route == null) {
+            return new SinkData(topic, key, bytes, this.getPipelineName());
+        }
+        String signature = route.isDefaultConnection() ? this.getPipelineName() : route.getSinkName();
+        return new SinkData(route.topicOr(topic), key, bytes, signature);
+    }
+
+    private void invalidateFilter(TagValueFilter filter, HistoricalData data) {
+        for (HistoricalData row : BasicDataTransaction.class.cast(data).getData()) {
+            if (row instanceof SinkData) continue;
+            BasicScanclassHistorySet scanset = BasicScanclassHistorySet.class.cast(row);
+            String provider = scanset.getProviderName();
+            for (HistoricalTagValue tagValue : scanset) {
+                filter.invalidate(paths.get(provider, tagValue.getSource()).getFilterKey());
+            }
+        }
+    }
+
+    /** Called by the aggregator while it holds its lock, so this only encodes and queues the summary */
+    private void queueSummary(TagSummary summary) {
+        CachedTagPath path = summary.getPath();
+        try {
+            byte[] bytes = encoder.encodeTagSummary(summary);
+            summaries.add(new SinkData(aggregateTopic, keys.tagKey(path.getProvider(), path.getPath()), bytes,
+                    aggregateSignature));
+        } catch (IOException e) {
+            logger.error("Error encoding tag summary: " + e.toString());
+        }
+    }
+
+    void flushAggregates() {
+        aggregator.flush(System.currentTimeMillis());
+        sendSummaries();
+    }
+
+    private void sendSummaries() {
+        List<SinkData> batch = new ArrayList<>();
+        SinkData summary;
+        while ((summary = summaries.poll()) != null) {
+            batch.add(summary);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            sendBatchWithProducer(batch);
+            setLastMessageTime(aggregateSignature);
+        } catch (IOException e) {
+            logger.warn("Tag summaries were not delivered, keeping them with store and forward: " + e.toString());
+            storeSummaries(batch);
+        }
+    }
+
+    /**
+     * The windows are already closed, so summaries that couldn't be sent go into this sink's store and forward
+     * queue and are retried from storeData like any other transaction.
+     */
+    private void storeSummaries(List<SinkData> batch) {
+        for (SinkData summary : batch) {
+            try {
+                if (forwarder == null) {
+                    throw new IOException("no store and forward for " + getPipelineName());
+                }
+                forwarder.forward(getPipelineName(), summary);
+            } catch (IOException e) {
+                logger.error("Tag summary was dropped: " + e.toString());
+                addOneFailedCount(aggregateSignature);
+            }
+        }
+    }
+
+    /** A stored summary keeps its signature while aggregation is on, otherwise it is counted with the raw values */
+    private SinkData storedSummary(SinkData summary) {
+        if (aggregateSignature != null) {
+            return summary;
+        }
+        return new SinkData(summary.getTopic(), summary.getKey(), summary.getValue(), this.name);
+    }
+
+    /**
+     * Open windows are emitted as they are, so a restart loses no aggregated values. After a settings change
+     * the replacement sink has taken them over instead, see adoptAggregation.
+     */
+    @Override
+    public void closeProducer() {
+        if (aggregator != null) {
+            if (executionManager != null) {
+                executionManager.unRegister(AGGREGATE_TASK_OWNER, getPipelineName());
+                executionManager = null;
+            }
+            if (!aggregationHandedOver) {
+                aggregator.flushAll();
+            }
+            sendSummaries();
+        }
+        super.closeProducer();
+    }
+
+    /** @return null when aggregation is off */
+    public TagAggregator getAggregator() {
+        return aggregator;
+    }
+
+    /** @return null when tag filtering is off */
+    public TagValueFilter getFilter() {
+        return filter;
+    }
+
+    private void addIndividual(String provider, BasicScanclassHistorySet scanset, TagValueFilter filter,
+                               List<SinkData> records) {
+        for (HistoricalTagValue tagValue : scanset) {
+            try{
+                CachedTagPath tagPath = paths.get(provider, tagValue.getSource());
+                if (filter != null && !filter.accept(provider, tagPath.getFilterKey(), tagValue)) continue;
+                byte[] bytes = encoder.encodeTagValue(tagPath, tagValue);
+                records.add(record(tagPath.getRoute(), keys.tagKey(provider, tagPath.getPath()), bytes));
+
+            } catch (IOException e) {
+                logger.error("Error encoding tag: " +  e.toString());
+            }
+        }
+    }
+
+    /**
+     * Encodes the scan set as envelopes holding gatewayName and provider once, with the values in an array.
+     * A batch size of 0 puts the whole scan set in one envelope. Tags with different routes go in separate
+     * envelopes, the null key holds the tags no rule covers.
+     */
+    private void addBatched(String provider, BasicScanclassHistorySet scanset, TagValueFilter filter,
+                            List<SinkData> records) {
+        int chunk = batchSize > 0 ? batchSize : scanset.size();
+        Map<Route, Envelope> envelopes = new HashMap<>();
+
+        for (HistoricalTagValue tagValue : scanset) {
+            CachedTagPath tagPath = paths.get(provider, tagValue.getSource());
+            if (filter != null && !filter.accept(provider, tagPath.getFilterKey(), tagValue)) continue;
+
+            Envelope envelope = envelopes.computeIfAbsent(tagPath.getRoute(),
+                    route -> new Envelope(Math.min(chunk, scanset.size())));
+            envelope.tagPaths.add(tagPath);
+            envelope.values.add(tagValue);
+
+            if (envelope.values.size() >= chunk) {
+                addEnvelope(provider, tagPath.getRoute(), envelope, records);
+            }
+        }
+
+        for (Map.Entry<Route, Envelope> entry : envelopes.entrySet()) {
+            if (!entry.getValue().values.isEmpty()) {
+                addEnvelope(provider, entry.getKey(), entry.getValue(), records);
+            }
+        }
+    }
+
+    private void addEnvelope(String provider, Route route, Envelope envelope, List<SinkData> records) {
+        try {
+            byte[] bytes = encoder.encodeCachedTagBatch(this.hostName, provider, envelope.tagPaths, envelope.values);
+            records.add(record(route, keys.batchKey(provider), bytes));
+        } catch (IOException e) {
+            logger.error("Error encoding tag batch: " +  e.toString());
+        }
+        envelope.tagPaths.clear();
+        envelope.values.clear();
+    }
+
+    private static class Envelope {
+        private final List<CachedTagPath> tagPaths;
+        private final List<HistoricalTagValue> values;
+
+        private Envelope(int capacity) {
+            this.tagPaths = new ArrayList<>(capacity);
+            this.values = new ArrayList<>(capacity);
+        }
     }
 }
@@ -0,0 +1,45 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+/**
+ * min/max/avg/last/count of one tag over one aggregation window.
+ */
+
+public class TagSummary {
+
+    private CachedTagPath path;
+    private long windowStart;
+    private long windowEnd;
+    private long count;
+    private double min;
+    private double max;
+    private double avg;
+    private double last;
+
+    void set(CachedTagPath path, long windowStart, long windowEnd, long count, double min, double max, double avg,
+             double last) {
+        this.path = path;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.avg = avg;
+        this.last = last;
+    }
+
+    public CachedTagPath getPath() { return path; }
+
+    public long getWindowStart() { return windowStart; }
+
+    public long getWindowEnd() { return windowEnd; }
+
+    public long getCount() { return count; }
+
+    public double getMin() { return min; }
+
+    public double getMax() { return max; }
+
+    public double getAvg() { return avg; }
+
+    public double getLast() { return last; }
+}
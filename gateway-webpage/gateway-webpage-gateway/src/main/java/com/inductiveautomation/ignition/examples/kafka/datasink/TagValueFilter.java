@@ -0,0 +1,251 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops tag values that don't differ enough from the last value sent for the same tag.
+ */
+public class TagValueFilter {
+    private static final long EMPTY = 0;
+    private static final byte INTEGER = 1;
+    private static final byte FLOAT = 2;
+    private static final byte OTHER = 3;
+    private static final float LOAD_FACTOR = 0.7f;
+    private static final int MAX_TAGS = 1 << 22;
+
+    private final KafkaSettingsRecord.tagFilters mode;
+    private final double deadband;
+    private final long heartbeatMs;
+
+    // open-addressing table keyed by a 64 bit hash of provider and path, last sent values in parallel arrays
+    private long[] keys;
+    private long[] lastBits;
+    private Object[] lastValues;
+    private long[] lastTimes;
+    private int[] lastQualities;
+    private byte[] kinds;
+    private int size = 0;
+
+    private final Map<String, ProviderStats> providers = new ConcurrentHashMap<>();
+
+    public TagValueFilter(KafkaSettingsRecord.tagFilters mode, double deadband, int heartbeatSeconds) {
+        this.mode = mode;
+        this.deadband = Math.abs(deadband);
+        this.heartbeatMs = heartbeatSeconds * 1000L;
+        allocate(1024);
+    }
+
+    /**
+     * @return true if the value should be sent, in which case it becomes the tag's last sent value
+     */
+    public boolean accept(String provider, String tagPath, HistoricalTagValue value) {
+        return accept(provider, hash(provider, tagPath), value);
+    }
+
+    /**
+     * @param key the hash of provider and path, as CachedTagPath.getFilterKey holds it
+     */
+    public synchronized boolean accept(String provider, long key, HistoricalTagValue value) {
+        ProviderStats stats = providers.computeIfAbsent(provider, ProviderStats::new);
+        stats.received.increment();
+
+        Object v = value.getValue();
+        byte kind = kindOf(v);
+        long bits = kind == INTEGER ? toLong(v) : kind == FLOAT ? Double.doubleToLongBits(((Number) v).doubleValue()) : 0;
+        int quality = value.getQuality() == null ? 0 : value.getQuality().getCode();
+        long time = value.getTimestamp() == null ? System.currentTimeMillis() : value.getTimestamp().getTime();
+
+        int slot = find(key);
+
+        if (keys[slot] == EMPTY) {
+            if (size >= MAX_TAGS) {
+                // table is full, untracked tags are sent as they are
+                stats.passed.increment();
+                return true;
+            }
+            keys[slot] = key;
+            size++;
+            store(slot, kind, bits, kind == OTHER ? v : null, quality, time);
+            if (size > keys.length * LOAD_FACTOR) {
+                grow();
+            }
+            stats.passed.increment();
+            return true;
+        }
+
+        if (changed(slot, kind, bits, v, quality, time)) {
+            store(slot, kind, bits, kind == OTHER ? v : null, quality, time);
+            stats.passed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean changed(int slot, byte kind, long bits, Object v, int quality, long time) {
+        if (kinds[slot] != kind || lastQualities[slot] != quality) {
+            return true;
+        }
+        if (heartbeatMs > 0 && time - lastTimes[slot] >= heartbeatMs) {
+            return true;
+        }
+        if (kind == OTHER) {
+            return !Objects.deepEquals(v, lastValues[slot]);
+        }
+        if (bits == lastBits[slot]) {
+            return false;
+        }
+
+        double last, current;
+        if (kind == INTEGER) {
+            // the values differ, the deadband is checked on doubles, which is only approximate past 2^53
+            last = lastBits[slot];
+            current = bits;
+        } else {
+            last = Double.longBitsToDouble(lastBits[slot]);
+            current = Double.longBitsToDouble(bits);
+            if (Double.isNaN(last) || Double.isNaN(current)) {
+                return Double.isNaN(last) != Double.isNaN(current);
+            }
+        }
+
+        double delta = Math.abs(current - last);
+        switch (mode) {
+            case Absolute:
+                return deadband == 0 || delta > deadband;
+            case Percent:
+                return last == 0 || deadband == 0 || delta > Math.abs(last) * deadband / 100.0;
+            default:
+                return kind == INTEGER || delta != 0;
+        }
+    }
+
+    private void store(int slot, byte kind, long bits, Object value, int quality, long time) {
+        kinds[slot] = kind;
+        lastBits[slot] = bits;
+        lastValues[slot] = value;
+        lastQualities[slot] = quality;
+        lastTimes[slot] = time;
+    }
+
+    /**
+     * Makes the next value of the tag pass, used when a transaction the value was in could not be delivered.
+     */
+    public void invalidate(String provider, String tagPath) {
+        invalidate(hash(provider, tagPath));
+    }
+
+    public synchronized void invalidate(long key) {
+        int slot = find(key);
+        if (keys[slot] != EMPTY) {
+            kinds[slot] = 0;
+            lastValues[slot] = null;
+        }
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldBits = lastBits;
+        Object[] oldValues = lastValues;
+        long[] oldTimes = lastTimes;
+        int[] oldQualities = lastQualities;
+        byte[] oldKinds = kinds;
+
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                store(slot, oldKinds[i], oldBits[i], oldValues[i], oldQualities[i], oldTimes[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        lastBits = new long[capacity];
+        lastValues = new Object[capacity];
+        lastTimes = new long[capacity];
+        lastQualities = new int[capacity];
+        kinds = new byte[capacity];
+    }
+
+    /** 64 bit FNV-1a over provider and path, 0 is kept for empty slots */
+    static long hash(String provider, String tagPath) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < provider.length(); i++) {
+            h = (h ^ provider.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ '/') * 0x100000001b3L;
+        for (int i = 0; i < tagPath.length(); i++) {
+            h = (h ^ tagPath.charAt(i)) * 0x100000001b3L;
+        }
+        return h == EMPTY ? 1 : h;
+    }
+
+    private static byte kindOf(Object v) {
+        if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte
+                || v instanceof Boolean) {
+            return INTEGER;
+        }
+        return v instanceof Float || v instanceof Double ? FLOAT : OTHER;
+    }
+
+    private static long toLong(Object v) {
+        if (v instanceof Boolean) {
+            return (Boolean) v ? 1 : 0;
+        }
+        return ((Number) v).longValue();
+    }
+
+    public synchronized int getTrackedTags() {
+        return size;
+    }
+
+    public Collection<ProviderStats> getProviderStats() {
+        return providers.values();
+    }
+
+    public static class ProviderStats {
+        private final String provider;
+        private final LongAdder received = new LongAdder();
+        private final LongAdder passed = new LongAdder();
+
+        private ProviderStats(String provider) {
+            this.provider = provider;
+        }
+
+        public String getProvider() {
+            return provider;
+        }
+
+        public long getReceived() {
+            return received.sum();
+        }
+
+        public long getPassed() {
+            return passed.sum();
+        }
+
+        /** Fraction of values that were filtered out */
+        public double getFilteredRatio() {
+            long r = received.sum();
+            return r == 0 ? 0 : 1.0 - (double) passed.sum() / r;
+        }
+    }
+}
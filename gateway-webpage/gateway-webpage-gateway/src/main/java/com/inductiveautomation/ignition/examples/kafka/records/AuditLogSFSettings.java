@@ -9,6 +9,8 @@ public class AuditLogSFSettings extends PersistentRecord {
     public final static RecordMeta<AuditLogSFSettings> META = new RecordMeta<AuditLogSFSettings>(
             AuditLogSFSettings.class, "AuditLogSFSettings");
 
+    public enum partitionModes { None, Daily, Weekly };
+
     public static final LongField ProfileId = new LongField(META, "ProfileId", SFieldFlags.SPRIMARY_KEY);
     public static final ReferenceField<AuditProfileRecord> Profile = new ReferenceField<AuditProfileRecord>(META,
             AuditProfileRecord.META, "Profile", ProfileId);
@@ -17,6 +19,15 @@ public class AuditLogSFSettings extends PersistentRecord {
     public static final ReferenceField<DatasourceRecord> Datasource = new ReferenceField<DatasourceRecord>(META,
             DatasourceRecord.META, "Datasource", DatasourceId);
     public static final IntField Retention = new IntField(META, "Retention", SFieldFlags.SMANDATORY).setDefault(90);
+    public static final IntField BatchSize = new IntField(META, "BatchSize", SFieldFlags.SMANDATORY).setDefault(500);
+    public static final IntField BatchWindow = new IntField(META, "BatchWindow", SFieldFlags.SMANDATORY).setDefault(1000);
+    public static final IntField PurgeChunkSize = new IntField(META, "PurgeChunkSize", SFieldFlags.SMANDATORY)
+            .setDefault(5000);
+    public static final IntField PurgePause = new IntField(META, "PurgePause", SFieldFlags.SMANDATORY).setDefault(100);
+    public static final IntField RecentBufferSize = new IntField(META, "RecentBufferSize", SFieldFlags.SMANDATORY)
+            .setDefault(10000);
+    public static final EnumField<partitionModes> Partitioning = new EnumField<>(META, "Partitioning",
+            partitionModes.class, SFieldFlags.SMANDATORY).setDefault(partitionModes.None);
 
     public static final BooleanField AutoCreate = new BooleanField(META, "AutoCreate").setDefault(true);
     public static final StringField TableName = new StringField(META, "TableName", SFieldFlags.SMANDATORY)
@@ -43,7 +54,8 @@ public class AuditLogSFSettings extends PersistentRecord {
             SFieldFlags.SMANDATORY).setDefault("ORIGINATING_CONTEXT");
 
     static final Category Main = new Category("AuditLogSFSettings.Category.Main.Name", 1000).include(Datasource,
-            Retention, TableName, AutoCreate);
+            Retention, BatchSize, BatchWindow, PurgeChunkSize, PurgePause, Partitioning, RecentBufferSize, TableName,
+            AutoCreate);
 
     static final Category Columns = new Category("DatasourceAuditProfileProperties.Category.Columns.Name", 2000, true)
             .include(KeyColumn, TimestampColumn, ActorColumn, ActorHostColumn, ActionColumn, ActionTargetColumn,
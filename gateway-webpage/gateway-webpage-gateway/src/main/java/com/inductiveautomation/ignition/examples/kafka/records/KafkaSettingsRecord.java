@@ -6,12 +6,19 @@ import org.json.JSONObject;
 import simpleorm.dataset.SFieldFlags;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.BooleanField;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.Category;
+import com.inductiveautomation.ignition.gateway.localdb.persistence.DoubleField;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.IdentityField;
+import com.inductiveautomation.ignition.gateway.localdb.persistence.IntField;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.PersistentRecord;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.RecordMeta;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.StringField;
 import com.inductiveautomation.ignition.gateway.localdb.persistence.EnumField;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Written By: Nick Robinson
  * Date: 06-Oct-2021
@@ -26,6 +33,13 @@ public class KafkaSettingsRecord extends PersistentRecord {
 
     public static final IdentityField Id = new IdentityField(META);
     public enum alarmPriorities { Diagnostic, Low, Medium, High, Critical };
+    public enum tagHistoryModes { Individual, Batched };
+    public enum encoders { Json, Binary, Columnar };
+    public enum producerProfiles { LowLatency, Balanced, MaxThroughput };
+    public enum recordKeys { None, TagPath, ProviderAndPath, AlarmUuid };
+    public enum overflowPolicies { Block, DropOldest, Spill };
+    public enum tagFilters { Off, ChangeOnly, Absolute, Percent };
+    public enum tagAggregations { Raw, Aggregated, Both };
 
     //Kafka Settings
     public static final StringField BrokerList = new StringField(META, "Brokers", SFieldFlags.SMANDATORY);
@@ -34,7 +48,17 @@ public class KafkaSettingsRecord extends PersistentRecord {
     public static final BooleanField UseStoreAndFwd = new BooleanField(META, "UseStoreAndFwd").setDefault(false);
     public static final BooleanField UseSSL = new BooleanField(META, "UseSSL").setDefault(false);
 
+    // Individual sends one record per tag value, Batched sends one record per scan class set (or per chunk of values)
+    public static final EnumField<tagHistoryModes> TagHistoryMode =
+            new EnumField<>(META, "TagHistoryMode", tagHistoryModes.class, SFieldFlags.SMANDATORY).
+                    setDefault(tagHistoryModes.Individual);
+    public static final IntField TagBatchSize = new IntField(META, "TagBatchSize", SFieldFlags.SMANDATORY).setDefault(0);
+    public static final EnumField<encoders> TagHistoryEncoder =
+            new EnumField<>(META, "TagHistoryEncoder", encoders.class, SFieldFlags.SMANDATORY).setDefault(encoders.Json);
+
     public static final StringField AlarmsTopic = new StringField(META, "AlarmsTopic", SFieldFlags.SMANDATORY);
+    public static final EnumField<encoders> AlarmsEncoder =
+            new EnumField<>(META, "AlarmsEncoder", encoders.class, SFieldFlags.SMANDATORY).setDefault(encoders.Json);
 
     public static final EnumField<alarmPriorities> MinimumPriority =
             new EnumField<>(META, "MinimumPriority", alarmPriorities.class, SFieldFlags.SMANDATORY).
@@ -46,17 +70,108 @@ public class KafkaSettingsRecord extends PersistentRecord {
     public static final BooleanField AlarmsEnabled = new BooleanField(META, "AlarmsEnabled").setDefault(false);
 
     public static final StringField AuditTopic = new StringField(META, "AuditTopic", SFieldFlags.SMANDATORY);
+    public static final EnumField<encoders> AuditEncoder =
+            new EnumField<>(META, "AuditEncoder", encoders.class, SFieldFlags.SMANDATORY).setDefault(encoders.Json);
     public static final BooleanField AuditEnabled = new BooleanField(META, "AuditEnabled").setDefault(false);
 
+    // Producer tuning, sinks with different profiles get their own producer
+    public static final EnumField<producerProfiles> TagHistoryProfile =
+            new EnumField<>(META, "TagHistoryProfile", producerProfiles.class, SFieldFlags.SMANDATORY).
+                    setDefault(producerProfiles.MaxThroughput);
+    public static final EnumField<producerProfiles> AlarmsProfile =
+            new EnumField<>(META, "AlarmsProfile", producerProfiles.class, SFieldFlags.SMANDATORY).
+                    setDefault(producerProfiles.LowLatency);
+    public static final EnumField<producerProfiles> AuditProfile =
+            new EnumField<>(META, "AuditProfile", producerProfiles.class, SFieldFlags.SMANDATORY).
+                    setDefault(producerProfiles.Balanced);
+    public static final StringField ProducerOverrides = new StringField(META, "ProducerOverrides", SFieldFlags.SDESCRIPTIVE);
+    public static final StringField LowLatencyOverrides =
+            new StringField(META, "LowLatencyOverrides", SFieldFlags.SDESCRIPTIVE);
+    public static final StringField BalancedOverrides =
+            new StringField(META, "BalancedOverrides", SFieldFlags.SDESCRIPTIVE);
+    public static final StringField MaxThroughputOverrides =
+            new StringField(META, "MaxThroughputOverrides", SFieldFlags.SDESCRIPTIVE);
+
+    // Record keys and partitioning
+    public static final EnumField<recordKeys> TagHistoryKey =
+            new EnumField<>(META, "TagHistoryKey", recordKeys.class, SFieldFlags.SMANDATORY).setDefault(recordKeys.None);
+    public static final EnumField<recordKeys> AlarmsKey =
+            new EnumField<>(META, "AlarmsKey", recordKeys.class, SFieldFlags.SMANDATORY).setDefault(recordKeys.None);
+    public static final BooleanField BalancedPartitioner = new BooleanField(META, "BalancedPartitioner").setDefault(false);
+
+    // Alarm and audit dispatch queues
+    public static final IntField DispatchQueueSize =
+            new IntField(META, "DispatchQueueSize", SFieldFlags.SMANDATORY).setDefault(10000);
+    public static final EnumField<overflowPolicies> DispatchOverflow =
+            new EnumField<>(META, "DispatchOverflow", overflowPolicies.class, SFieldFlags.SMANDATORY).
+                    setDefault(overflowPolicies.Spill);
+
+    public static final IntField StoreTimeout =
+            new IntField(META, "StoreTimeout", SFieldFlags.SMANDATORY).setDefault(30);
+
+    // Local spill log for records sent directly while the brokers are unreachable
+    public static final BooleanField SpillEnabled = new BooleanField(META, "SpillEnabled").setDefault(false);
+    public static final IntField SpillQuota = new IntField(META, "SpillQuota", SFieldFlags.SMANDATORY).setDefault(1024);
+    public static final IntField SpillSegmentSize =
+            new IntField(META, "SpillSegmentSize", SFieldFlags.SMANDATORY).setDefault(64);
+
+    // Prometheus metrics route, restricted like the status page
+    public static final BooleanField MetricsEnabled = new BooleanField(META, "MetricsEnabled").setDefault(false);
+
+    // Tag history filtering
+    public static final EnumField<tagFilters> TagFilter =
+            new EnumField<>(META, "TagFilter", tagFilters.class, SFieldFlags.SMANDATORY).setDefault(tagFilters.Off);
+    public static final DoubleField TagDeadband = new DoubleField(META, "TagDeadband").setDefault(0.0);
+    public static final IntField TagHeartbeat = new IntField(META, "TagHeartbeat", SFieldFlags.SMANDATORY).setDefault(0);
+
+    // Tag history aggregation
+    public static final EnumField<tagAggregations> TagAggregation =
+            new EnumField<>(META, "TagAggregation", tagAggregations.class, SFieldFlags.SMANDATORY).
+                    setDefault(tagAggregations.Raw);
+    public static final IntField TagAggregationWindow =
+            new IntField(META, "TagAggregationWindow", SFieldFlags.SMANDATORY).setDefault(60);
+    public static final StringField TagAggregationTopic =
+            new StringField(META, "TagAggregationTopic", SFieldFlags.SDESCRIPTIVE);
+
+    // Additional Kafka connections and the rules routing records to them
+    public static final StringField Connections = new StringField(META, "Connections", SFieldFlags.SDESCRIPTIVE);
+    public static final StringField Routes = new StringField(META, "Routes", SFieldFlags.SDESCRIPTIVE);
+
+    // Tag writes consumed from a command topic
+    public static final BooleanField CommandsEnabled = new BooleanField(META, "CommandsEnabled").setDefault(false);
+    public static final StringField CommandTopic = new StringField(META, "CommandTopic", SFieldFlags.SDESCRIPTIVE);
+    public static final StringField CommandGroup = new StringField(META, "CommandGroup", SFieldFlags.SDESCRIPTIVE);
+    public static final IntField CommandBatchSize =
+            new IntField(META, "CommandBatchSize", SFieldFlags.SMANDATORY).setDefault(500);
+    public static final StringField CommandAllowList = new StringField(META, "CommandAllowList", SFieldFlags.SDESCRIPTIVE);
+
     // Categories for record entries, ordered by integer, titles come from KafkaSettingsRecord.properties
     static final Category Configuration = new Category("KafkaSettingsRecord.Category.Configuration", 1000).include(
-            BrokerList, TagHistoryTopic, Enabled, UseStoreAndFwd, UseSSL
+            BrokerList, TagHistoryTopic, TagHistoryMode, TagBatchSize, TagHistoryEncoder, Enabled, UseStoreAndFwd, UseSSL
     );
     static final Category Alarms = new Category("KafkaSettingsRecord.Category.Alarms", 1001).include(
-            AlarmsTopic, MinimumPriority, Source, DispPath, SrcPath, AlarmsEnabled
+            AlarmsTopic, AlarmsEncoder, MinimumPriority, Source, DispPath, SrcPath, AlarmsEnabled
     );
     static final Category Audit = new Category("KafkaSettingsRecord.Category.Audit", 1002).include(
-            AuditTopic, AuditEnabled
+            AuditTopic, AuditEncoder, AuditEnabled
+    );
+    static final Category Tuning = new Category("KafkaSettingsRecord.Category.Tuning", 1003, true).include(
+            TagHistoryProfile, AlarmsProfile, AuditProfile, ProducerOverrides, LowLatencyOverrides, BalancedOverrides,
+            MaxThroughputOverrides, TagHistoryKey, AlarmsKey,
+            BalancedPartitioner, DispatchQueueSize, DispatchOverflow, StoreTimeout, SpillEnabled, SpillQuota,
+            SpillSegmentSize, MetricsEnabled
+    );
+    static final Category Filtering = new Category("KafkaSettingsRecord.Category.Filtering", 1004, true).include(
+            TagFilter, TagDeadband, TagHeartbeat
+    );
+    static final Category Aggregation = new Category("KafkaSettingsRecord.Category.Aggregation", 1005, true).include(
+            TagAggregation, TagAggregationWindow, TagAggregationTopic
+    );
+    static final Category Routing = new Category("KafkaSettingsRecord.Category.Routing", 1006, true).include(
+            Connections, Routes
+    );
+    static final Category Commands = new Category("KafkaSettingsRecord.Category.Commands", 1007, true).include(
+            CommandTopic, CommandGroup, CommandBatchSize, CommandAllowList, CommandsEnabled
     );
 
     // record entry accessors
@@ -80,6 +195,31 @@ public class KafkaSettingsRecord extends PersistentRecord {
 
     public void setTagHistoryTopic(String topic) { setString(TagHistoryTopic, topic); }
 
+    public tagHistoryModes getTagHistoryMode() { return getEnum(TagHistoryMode); }
+
+    public void setTagHistoryMode(tagHistoryModes mode) { setEnum(TagHistoryMode, mode); }
+
+    public Boolean isTagHistoryBatched() { return getTagHistoryMode() == tagHistoryModes.Batched; }
+
+    public int getTagBatchSize() {
+        Integer size = getInt(TagBatchSize);
+        return size == null ? 0 : Math.max(0, size);
+    }
+
+    public void setTagBatchSize(int size) { setInt(TagBatchSize, size); }
+
+    public encoders getTagHistoryEncoder() { return getEnum(TagHistoryEncoder); }
+
+    public void setTagHistoryEncoder(encoders encoder) { setEnum(TagHistoryEncoder, encoder); }
+
+    public encoders getAlarmsEncoder() { return getEnum(AlarmsEncoder); }
+
+    public void setAlarmsEncoder(encoders encoder) { setEnum(AlarmsEncoder, encoder); }
+
+    public encoders getAuditEncoder() { return getEnum(AuditEncoder); }
+
+    public void setAuditEncoder(encoders encoder) { setEnum(AuditEncoder, encoder); }
+
     public void setEnabled(Boolean enabled) {
         setBoolean(Enabled, enabled);
     }
@@ -132,6 +272,222 @@ public class KafkaSettingsRecord extends PersistentRecord {
         return getBoolean(AuditEnabled);
     }
 
+    public producerProfiles getTagHistoryProfile() { return getEnum(TagHistoryProfile); }
+
+    public void setTagHistoryProfile(producerProfiles profile) { setEnum(TagHistoryProfile, profile); }
+
+    public producerProfiles getAlarmsProfile() { return getEnum(AlarmsProfile); }
+
+    public void setAlarmsProfile(producerProfiles profile) { setEnum(AlarmsProfile, profile); }
+
+    public producerProfiles getAuditProfile() { return getEnum(AuditProfile); }
+
+    public void setAuditProfile(producerProfiles profile) { setEnum(AuditProfile, profile); }
+
+    /** Comma separated producer config entries for every profile, e.g. "linger.ms=20, batch.size=131072" */
+    public Map<String, String> getProducerOverrides() { return parseOverrides(getString(ProducerOverrides)); }
+
+    public void setProducerOverrides(String overrides) { setString(ProducerOverrides, overrides); }
+
+    /** Overrides of the sinks using this profile, applied after getProducerOverrides() */
+    public Map<String, String> getProfileOverrides(producerProfiles profile) {
+        return parseOverrides(getString(profileOverridesField(profile)));
+    }
+
+    public void setProfileOverrides(producerProfiles profile, String overrides) {
+        setString(profileOverridesField(profile), overrides);
+    }
+
+    private static StringField profileOverridesField(producerProfiles profile) {
+        switch (profile) {
+            case LowLatency:
+                return LowLatencyOverrides;
+            case MaxThroughput:
+                return MaxThroughputOverrides;
+            case Balanced:
+            default:
+                return BalancedOverrides;
+        }
+    }
+
+    private static Map<String, String> parseOverrides(String raw) {
+        Map<String, String> overrides = new LinkedHashMap<>();
+        if (Strings.isNullOrEmpty(raw)) {
+            return overrides;
+        }
+
+        for (String entry : raw.split(",")) {
+            int split = entry.indexOf('=');
+            if (split > 0) {
+                overrides.put(entry.substring(0, split).trim(), entry.substring(split + 1).trim());
+            }
+        }
+        return overrides;
+    }
+
+    /** Semicolon separated named broker lists, e.g. "east=kafka-e1:9092,kafka-e2:9092; cloud=broker:9093" */
+    public Map<String, String> getConnections() {
+        Map<String, String> connections = new LinkedHashMap<>();
+        for (String entry : getEntries(Connections)) {
+            int split = entry.indexOf('=');
+            if (split > 0) {
+                connections.put(entry.substring(0, split).trim(), entry.substring(split + 1).trim());
+            }
+        }
+        return connections;
+    }
+
+    public void setConnections(String connections) { setString(Connections, connections); }
+
+    /** Semicolon separated routing rules, compiled by RouteTable */
+    public List<String> getRoutes() { return getEntries(Routes); }
+
+    public void setRoutes(String routes) { setString(Routes, routes); }
+
+    private List<String> getEntries(StringField field) {
+        List<String> entries = new ArrayList<>();
+        String raw = getString(field);
+        if (Strings.isNullOrEmpty(raw)) {
+            return entries;
+        }
+
+        for (String entry : raw.split("[;\\n]")) {
+            if (!entry.trim().isEmpty()) {
+                entries.add(entry.trim());
+            }
+        }
+        return entries;
+    }
+
+    public recordKeys getTagHistoryKey() { return getEnum(TagHistoryKey); }
+
+    public void setTagHistoryKey(recordKeys key) { setEnum(TagHistoryKey, key); }
+
+    public recordKeys getAlarmsKey() { return getEnum(AlarmsKey); }
+
+    public void setAlarmsKey(recordKeys key) { setEnum(AlarmsKey, key); }
+
+    public Boolean getBalancedPartitioner() { return getBoolean(BalancedPartitioner); }
+
+    public void setBalancedPartitioner(Boolean balanced) { setBoolean(BalancedPartitioner, balanced); }
+
+    public int getDispatchQueueSize() {
+        Integer size = getInt(DispatchQueueSize);
+        return size == null || size < 1 ? 10000 : size;
+    }
+
+    public void setDispatchQueueSize(int size) { setInt(DispatchQueueSize, size); }
+
+    public overflowPolicies getDispatchOverflow() { return getEnum(DispatchOverflow); }
+
+    public void setDispatchOverflow(overflowPolicies policy) { setEnum(DispatchOverflow, policy); }
+
+    /** How long (in seconds) a store and forward transaction waits for its acks */
+    public int getStoreTimeout() {
+        Integer timeout = getInt(StoreTimeout);
+        return timeout == null || timeout < 1 ? 30 : timeout;
+    }
+
+    public void setStoreTimeout(int timeout) { setInt(StoreTimeout, timeout); }
+
+    public Boolean getSpillEnabled() { return getBoolean(SpillEnabled); }
+
+    public void setSpillEnabled(Boolean enabled) { setBoolean(SpillEnabled, enabled); }
+
+    public Boolean getMetricsEnabled() { return getBoolean(MetricsEnabled); }
+
+    public void setMetricsEnabled(Boolean enabled) { setBoolean(MetricsEnabled, enabled); }
+
+    /** Disk quota of each spill log in megabytes */
+    public int getSpillQuota() {
+        Integer quota = getInt(SpillQuota);
+        return quota == null || quota < 1 ? 1024 : quota;
+    }
+
+    public void setSpillQuota(int quota) { setInt(SpillQuota, quota); }
+
+    /** Size of each spill segment file in megabytes, never more than the quota */
+    public int getSpillSegmentSize() {
+        Integer size = getInt(SpillSegmentSize);
+        return Math.min(size == null || size < 1 ? 64 : Math.min(size, 1024), getSpillQuota());
+    }
+
+    public void setSpillSegmentSize(int size) { setInt(SpillSegmentSize, size); }
+
+    public tagFilters getTagFilter() { return getEnum(TagFilter); }
+
+    public void setTagFilter(tagFilters filter) { setEnum(TagFilter, filter); }
+
+    public double getTagDeadband() {
+        Double deadband = getDouble(TagDeadband);
+        return deadband == null ? 0 : deadband;
+    }
+
+    public void setTagDeadband(double deadband) { setDouble(TagDeadband, deadband); }
+
+    /** Seconds after which an unchanged tag value is sent anyway, 0 never */
+    public int getTagHeartbeat() {
+        Integer heartbeat = getInt(TagHeartbeat);
+        return heartbeat == null || heartbeat < 0 ? 0 : heartbeat;
+    }
+
+    public void setTagHeartbeat(int heartbeat) { setInt(TagHeartbeat, heartbeat); }
+
+    public tagAggregations getTagAggregation() { return getEnum(TagAggregation); }
+
+    public void setTagAggregation(tagAggregations aggregation) { setEnum(TagAggregation, aggregation); }
+
+    /** Length of an aggregation window in seconds */
+    public int getTagAggregationWindow() {
+        Integer window = getInt(TagAggregationWindow);
+        return window == null || window < 1 ? 60 : window;
+    }
+
+    public void setTagAggregationWindow(int window) { setInt(TagAggregationWindow, window); }
+
+    /** Summaries go to the tag history topic + "-aggregates" unless a topic is set */
+    public String getTagAggregationTopic() {
+        String topic = getString(TagAggregationTopic);
+        return Strings.isNullOrEmpty(topic) ? getTagHistoryTopic() + "-aggregates" : topic;
+    }
+
+    public void setTagAggregationTopic(String topic) { setString(TagAggregationTopic, topic); }
+
+    public Boolean getCommandsEnabled() { return getBoolean(CommandsEnabled); }
+
+    public void setCommandsEnabled(Boolean enabled) { setBoolean(CommandsEnabled, enabled); }
+
+    public String getCommandTopic() {
+        String topic = getString(CommandTopic);
+        return Strings.isNullOrEmpty(topic) ? "ignition-commands" : topic;
+    }
+
+    public void setCommandTopic(String topic) { setString(CommandTopic, topic); }
+
+    /** @return null when the consumer group should be named after the gateway */
+    public String getCommandGroup() {
+        String group = getString(CommandGroup);
+        return Strings.isNullOrEmpty(group) ? null : group.trim();
+    }
+
+    public void setCommandGroup(String group) { setString(CommandGroup, group); }
+
+    /** Most command records taken per poll, which bounds the writes held in memory */
+    public int getCommandBatchSize() {
+        Integer size = getInt(CommandBatchSize);
+        return size == null || size < 1 ? 500 : size;
+    }
+
+    public void setCommandBatchSize(int size) { setInt(CommandBatchSize, size); }
+
+    /** @return null when nothing may be written */
+    public String[] getCommandAllowList() {
+        String list = getString(CommandAllowList);
+        return Strings.isNullOrEmpty(list) ? null : list.split(",");
+    }
+
+    public void setCommandAllowList(String list) { setString(CommandAllowList, list); }
+
     public String[] getSource() {
         String src = getString(Source);
         return Strings.isNullOrEmpty(src) ? null : src.split(",");
@@ -160,17 +516,52 @@ public class KafkaSettingsRecord extends PersistentRecord {
             String json = new JSONObject()
                     .put("Brokers", getBrokerList())
                     .put("TagHistoryTopic", getTagHistoryTopic())
+                    .put("TagHistoryMode", getTagHistoryMode().toString())
+                    .put("TagBatchSize", getTagBatchSize())
+                    .put("TagHistoryEncoder", getTagHistoryEncoder().toString())
                     .put("Enabled", getEnabled())
                     .put("UseStoreAndFwd", getUseStoreAndfwd())
                     .put("UseSSL", getUseSSL())
                     .put("AlarmsTopic", getAlarmsTopic())
+                    .put("AlarmsEncoder", getAlarmsEncoder().toString())
                     .put("MinimumPriority", getAlarmPriorityString())
                     .put("Source", getSource())
                     .put("DispPath", getDispPath())
                     .put("SrcPath", getSrcPath())
                     .put("AlarmsEnabled", getAlarmsEnabled())
                     .put("AuditTopic", getAuditTopic())
+                    .put("AuditEncoder", getAuditEncoder().toString())
                     .put("AuditEnabled", getAuditEnabled())
+                    .put("TagHistoryProfile", getTagHistoryProfile().toString())
+                    .put("AlarmsProfile", getAlarmsProfile().toString())
+                    .put("AuditProfile", getAuditProfile().toString())
+                    .put("ProducerOverrides", getString(ProducerOverrides))
+                    .put("LowLatencyOverrides", getString(LowLatencyOverrides))
+                    .put("BalancedOverrides", getString(BalancedOverrides))
+                    .put("MaxThroughputOverrides", getString(MaxThroughputOverrides))
+                    .put("TagHistoryKey", getTagHistoryKey().toString())
+                    .put("AlarmsKey", getAlarmsKey().toString())
+                    .put("BalancedPartitioner", getBalancedPartitioner())
+                    .put("DispatchQueueSize", getDispatchQueueSize())
+                    .put("DispatchOverflow", getDispatchOverflow().toString())
+                    .put("StoreTimeout", getStoreTimeout())
+                    .put("TagFilter", getTagFilter().toString())
+                    .put("TagDeadband", getTagDeadband())
+                    .put("TagHeartbeat", getTagHeartbeat())
+                    .put("TagAggregation", getTagAggregation().toString())
+                    .put("TagAggregationWindow", getTagAggregationWindow())
+                    .put("TagAggregationTopic", getTagAggregationTopic())
+                    .put("Connections", getString(Connections))
+                    .put("Routes", getString(Routes))
+                    .put("SpillEnabled", getSpillEnabled())
+                    .put("SpillQuota", getSpillQuota())
+                    .put("SpillSegmentSize", getSpillSegmentSize())
+                    .put("MetricsEnabled", getMetricsEnabled())
+                    .put("CommandsEnabled", getCommandsEnabled())
+                    .put("CommandTopic", getCommandTopic())
+                    .put("CommandGroup", getCommandGroup())
+                    .put("CommandBatchSize", getCommandBatchSize())
+                    .put("CommandAllowList", getCommandAllowList())
                     .toString();
             return json;
         } catch (JSONException e) {
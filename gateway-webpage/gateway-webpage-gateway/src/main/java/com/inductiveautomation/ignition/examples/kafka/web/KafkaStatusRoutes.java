@@ -1,20 +1,12 @@
 package com.inductiveautomation.ignition.examples.kafka.web;
 
-import com.inductiveautomation.ignition.examples.kafka.datasink.BaseSink;
-import com.inductiveautomation.ignition.examples.kafka.datasink.MessageStats;
+import com.inductiveautomation.ignition.examples.kafka.GatewayScriptModule;
 import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
 import com.inductiveautomation.ignition.gateway.dataroutes.RequestContext;
 import com.inductiveautomation.ignition.gateway.dataroutes.RouteGroup;
 import com.inductiveautomation.ignition.gateway.dataroutes.WicketAccessControl;
-import com.inductiveautomation.ignition.gateway.localdb.persistence.PersistenceSession;
-import com.inductiveautomation.ignition.gateway.model.GatewayContext;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import simpleorm.dataset.SQuery;
 
 import javax.servlet.http.HttpServletResponse;
-import java.util.Collection;
 
 /**
  * Written By: Nick Robinson
@@ -22,15 +14,18 @@ import java.util.Collection;
  * Content:
  *      Definition of API URL and response content
  *      Response structure is influenced by ease of use on status page
+ *      Both routes serve the StatusCache snapshot, /metrics in Prometheus text format when enabled in the settings
  */
 public class KafkaStatusRoutes {
 
     private RouteGroup routes;
-    private Collection<BaseSink> sinks;
+    private GatewayScriptModule scriptModule;
+    private StatusCache statusCache;
 
-    public KafkaStatusRoutes(Collection<BaseSink> dataSinks, RouteGroup group) {
+    public KafkaStatusRoutes(GatewayScriptModule scriptModule, StatusCache statusCache, RouteGroup group) {
         this.routes = group;
-        this.sinks = dataSinks;
+        this.scriptModule = scriptModule;
+        this.statusCache = statusCache;
     }
 
     public void mountRoutes() {
@@ -39,64 +34,32 @@ public class KafkaStatusRoutes {
                 .type(RouteGroup.TYPE_JSON)
                 .restrict(WicketAccessControl.STATUS_SECTION)
                 .mount();
-    }
-
-    public JSONObject getConnectionsStatus(RequestContext requestContext, HttpServletResponse httpServletResponse) throws JSONException {
-        GatewayContext context = requestContext.getGatewayContext();
-        JSONObject json = new JSONObject();
-        PersistenceSession session = context.getPersistenceInterface().getSession();
-
-        try {
-            SQuery<KafkaSettingsRecord> query = new SQuery<>(KafkaSettingsRecord.META);
-            KafkaSettingsRecord config = session.queryOne(query);
-
-            if (config != null){
-                json.put("count", String.valueOf(this.sinks.size()));
-                json.put("Enabled", config.getEnabled());
-                json.put("UseStoreAndForward", config.getUseStoreAndfwd());
-                json.put("AlarmsEnabled", config.getAlarmsEnabled());
-                json.put("AuditEnabled", config.getAuditEnabled());
-                JSONArray jsonArray = new JSONArray();
-                json.put("connections", jsonArray);
-
-                JSONObject connectionJson = new JSONObject();
-                jsonArray.put(connectionJson);
-                connectionJson.put("Brokers", config.getBrokerList());
-                connectionJson.put("TagHistoryTopic", config.getTagHistoryTopic());
-                connectionJson.put("isSSL", config.getUseSSL());
-                connectionJson.put("AlarmsTopic", config.getAlarmsTopic());
-                connectionJson.put("MinimumPriority", config.getAlarmPriorityString());
-                connectionJson.put("Source", config.getSource());
-                connectionJson.put("DispPath", config.getDispPath());
-                connectionJson.put("SrcPath", config.getSrcPath());
-                connectionJson.put("AuditTopic", config.getAuditTopic());
 
-                JSONArray sinksArray = new JSONArray();
-                json.put("sinks", sinksArray);
+        // same access as the status page, the MetricsEnabled setting also decides whether this answers
+        routes.newRoute("/metrics")
+                .handler(this::getMetrics)
+                .type(PrometheusWriter.CONTENT_TYPE)
+                .restrict(WicketAccessControl.STATUS_SECTION)
+                .mount();
+    }
 
-                for (BaseSink sink : this.sinks) {
-                    JSONObject sinkJson = new JSONObject();
-                    sinksArray.put(sinkJson);
-                    sinkJson.put("name", sink.getPipelineName());
+    public String getConnectionsStatus(RequestContext requestContext, HttpServletResponse httpServletResponse) {
+        StatusSnapshot snapshot = statusCache.get();
+        return snapshot == null ? "{}" : snapshot.getStatusJson();
+    }
 
-                    JSONArray statsArray = new JSONArray();
-                    sinkJson.put("stats", statsArray);
+    public String getMetrics(RequestContext requestContext, HttpServletResponse httpServletResponse) {
+        KafkaSettingsRecord config = scriptModule.getSettings();
+        if (config == null || !config.getMetricsEnabled()) {
+            httpServletResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return "Kafka metrics are disabled\n";
+        }
 
-                    for (MessageStats stats : sink.getStats()) {
-                        JSONObject statJson = new JSONObject();
-                        statsArray.put(statJson);
-                        statJson.put("MessageCount", stats.getSuccessCount());
-                        statJson.put("FailedCount", stats.getFailedCount());
-                        statJson.put("Source", stats.getSourceName());
-                        statJson.put("LastMessageTime", stats.getLastMessageTime());
-                        statJson.put("Started", sink.getLiveTime());
-                        statJson.put("LifeSpan", sink.getLifeSpanDays());
-                    }
-                }
-            }
-        } finally {
-            session.close();
+        StatusSnapshot snapshot = statusCache.get();
+        if (snapshot == null) {
+            httpServletResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return "Kafka metrics are not available yet\n";
         }
-        return json;
+        return snapshot.getMetrics();
     }
-}
\ No newline at end of file
+}
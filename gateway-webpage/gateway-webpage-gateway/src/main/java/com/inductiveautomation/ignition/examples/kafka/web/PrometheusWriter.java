@@ -0,0 +1,74 @@
+package com.inductiveautomation.ignition.examples.kafka.web;
+
+/**
+ * Writes the Prometheus text exposition format (version 0.0.4).
+ */
+
+class PrometheusWriter {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String PREFIX = "ignition_kafka_";
+
+    private final StringBuilder out = new StringBuilder(8192);
+
+    PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    PrometheusWriter sample(String name, double value, String... labels) {
+        out.append(PREFIX).append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\"");
+                appendLabelValue(labels[i + 1]);
+                out.append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        appendValue(value);
+        out.append('\n');
+        return this;
+    }
+
+    private void appendLabelValue(String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                out.append("\\\\");
+            } else if (c == '"') {
+                out.append("\\\"");
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private void appendValue(double value) {
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
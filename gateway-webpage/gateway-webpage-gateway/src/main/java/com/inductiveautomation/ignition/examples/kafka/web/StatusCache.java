@@ -0,0 +1,53 @@
+package com.inductiveautomation.ignition.examples.kafka.web;
+
+import com.inductiveautomation.ignition.common.execution.ExecutionManager;
+import com.inductiveautomation.ignition.examples.kafka.GatewayScriptModule;
+import org.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latest StatusSnapshot, rebuilt every couple of seconds so the status routes only read a reference.
+ */
+
+public class StatusCache {
+
+    private static final String TASK_OWNER = "KafkaStatus";
+    private static final String TASK_NAME = "snapshot";
+    private static final int REFRESH_RATE_MS = 2000;
+
+    private final Logger logger = LoggerFactory.getLogger("Kafka.StatusCache");
+    private final GatewayScriptModule scriptModule;
+    private volatile StatusSnapshot snapshot;
+
+    public StatusCache(GatewayScriptModule scriptModule) {
+        this.scriptModule = scriptModule;
+    }
+
+    public void start(ExecutionManager executionManager) {
+        executionManager.register(TASK_OWNER, TASK_NAME, this::refresh, REFRESH_RATE_MS);
+    }
+
+    public void stop(ExecutionManager executionManager) {
+        executionManager.unRegister(TASK_OWNER, TASK_NAME);
+    }
+
+    public void refresh() {
+        try {
+            this.snapshot = StatusSnapshot.build(scriptModule);
+        } catch (JSONException | RuntimeException e) {
+            // keep serving the previous snapshot, the next refresh tries again
+            logger.warn("Unable to refresh Kafka status: " + e);
+        }
+    }
+
+    /** Built on first use when a request arrives before the first refresh ran */
+    public StatusSnapshot get() {
+        StatusSnapshot current = this.snapshot;
+        if (current == null) {
+            refresh();
+            current = this.snapshot;
+        }
+        return current;
+    }
+}
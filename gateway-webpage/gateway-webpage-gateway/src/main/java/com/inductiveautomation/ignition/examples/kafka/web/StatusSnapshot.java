@@ -0,0 +1,441 @@
+package com.inductiveautomation.ignition.examples.kafka.web;
+
+import com.inductiveautomation.ignition.examples.kafka.GatewayScriptModule;
+import com.inductiveautomation.ignition.examples.kafka.auditlogsf.AuditLogSF;
+import com.inductiveautomation.ignition.examples.kafka.auditlogsf.RecentAuditBuffer;
+import com.inductiveautomation.ignition.examples.kafka.commands.CommandConsumer;
+import com.inductiveautomation.ignition.examples.kafka.datasink.BaseSink;
+import com.inductiveautomation.ignition.examples.kafka.datasink.DispatchQueue;
+import com.inductiveautomation.ignition.examples.kafka.datasink.MessageStats;
+import com.inductiveautomation.ignition.examples.kafka.datasink.SpillLog;
+import com.inductiveautomation.ignition.examples.kafka.datasink.TagAggregator;
+import com.inductiveautomation.ignition.examples.kafka.datasink.TagSink;
+import com.inductiveautomation.ignition.examples.kafka.datasink.TagValueFilter;
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The status page JSON and the Prometheus metrics, rendered together from the live sinks.
+ */
+
+public final class StatusSnapshot {
+
+    // ack latency histogram bounds in microseconds, and the same in seconds as the le labels
+    private static final long[] LATENCY_BOUNDS = {
+            500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000
+    };
+    private static final String[] LATENCY_LABELS = {
+            "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5",
+            "1", "2.5", "5", "10", "30"
+    };
+    private static final int[] RATE_WINDOWS = {1, 5, 15};
+
+    private final String statusJson;
+    private final String metrics;
+    private final long createdAt;
+
+    private StatusSnapshot(String statusJson, String metrics, long createdAt) {
+        this.statusJson = statusJson;
+        this.metrics = metrics;
+        this.createdAt = createdAt;
+    }
+
+    static StatusSnapshot build(GatewayScriptModule scriptModule) throws JSONException {
+        KafkaSettingsRecord config = scriptModule.getSettings();
+        List<BaseSink> sinks = new ArrayList<>(scriptModule.getDataSinks());
+        List<DispatchQueue<?>> queues = scriptModule.getDispatchQueues();
+        List<AuditLogSF> auditLogs = new ArrayList<>(scriptModule.getAuditLogs());
+        CommandConsumer commands = scriptModule.getCommandConsumer();
+
+        String json = config == null ? "{}" : statusJson(config, sinks, queues, auditLogs, commands).toString();
+        String metrics = metrics(config, sinks, queues, auditLogs, commands);
+        return new StatusSnapshot(json, metrics, System.currentTimeMillis());
+    }
+
+    public String getStatusJson() {
+        return statusJson;
+    }
+
+    public String getMetrics() {
+        return metrics;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    private static JSONObject statusJson(KafkaSettingsRecord config, List<BaseSink> sinks,
+                                         List<DispatchQueue<?>> queues, List<AuditLogSF> auditLogs,
+                                         CommandConsumer commands) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", String.valueOf(sinks.size()));
+        json.put("Enabled", config.getEnabled());
+        json.put("UseStoreAndForward", config.getUseStoreAndfwd());
+        json.put("AlarmsEnabled", config.getAlarmsEnabled());
+        json.put("AuditEnabled", config.getAuditEnabled());
+        JSONArray jsonArray = new JSONArray();
+        json.put("connections", jsonArray);
+
+        JSONObject connectionJson = new JSONObject();
+        jsonArray.put(connectionJson);
+        connectionJson.put("Brokers", config.getBrokerList());
+        connectionJson.put("TagHistoryTopic", config.getTagHistoryTopic());
+        connectionJson.put("TagHistoryMode", config.getTagHistoryMode().toString());
+        connectionJson.put("TagBatchSize", config.getTagBatchSize());
+        connectionJson.put("isSSL", config.getUseSSL());
+        connectionJson.put("AlarmsTopic", config.getAlarmsTopic());
+        connectionJson.put("MinimumPriority", config.getAlarmPriorityString());
+        connectionJson.put("Source", config.getSource());
+        connectionJson.put("DispPath", config.getDispPath());
+        connectionJson.put("SrcPath", config.getSrcPath());
+        connectionJson.put("AuditTopic", config.getAuditTopic());
+        connectionJson.put("TagHistoryProfile", config.getTagHistoryProfile().toString());
+        connectionJson.put("AlarmsProfile", config.getAlarmsProfile().toString());
+        connectionJson.put("AuditProfile", config.getAuditProfile().toString());
+
+        JSONArray sinksArray = new JSONArray();
+        json.put("sinks", sinksArray);
+
+        for (BaseSink sink : sinks) {
+            JSONObject sinkJson = new JSONObject();
+            sinksArray.put(sinkJson);
+            sinkJson.put("name", sink.getPipelineName());
+
+            SpillLog spill = sink.getSpillLog();
+            if (spill != null) {
+                JSONObject spillJson = new JSONObject();
+                sinkJson.put("spill", spillJson);
+                spillJson.put("State", sink.getSpillState());
+                spillJson.put("BacklogBytes", spill.getBacklogBytes());
+                spillJson.put("Segments", spill.getSegmentCount());
+                spillJson.put("Appended", spill.getAppended());
+                spillJson.put("Replayed", spill.getReplayed());
+                spillJson.put("Rejected", spill.getRejected());
+                spillJson.put("Corrupt", spill.getCorrupt());
+            }
+
+            JSONArray statsArray = new JSONArray();
+            sinkJson.put("stats", statsArray);
+
+            for (MessageStats stats : sink.getStats()) {
+                JSONObject statJson = new JSONObject();
+                statsArray.put(statJson);
+                statJson.put("MessageCount", stats.getSuccessCount());
+                statJson.put("FailedCount", stats.getFailedCount());
+                statJson.put("InFlight", stats.getInFlight());
+                statJson.put("MessageRate1m", stats.getMessageRate(1));
+                statJson.put("MessageRate5m", stats.getMessageRate(5));
+                statJson.put("MessageRate15m", stats.getMessageRate(15));
+                statJson.put("FailureRate1m", stats.getFailureRate(1));
+                statJson.put("FailureRate5m", stats.getFailureRate(5));
+                statJson.put("FailureRate15m", stats.getFailureRate(15));
+                statJson.put("AckLatencyP50", stats.getAckLatencyMillis(50));
+                statJson.put("AckLatencyP95", stats.getAckLatencyMillis(95));
+                statJson.put("AckLatencyP99", stats.getAckLatencyMillis(99));
+                statJson.put("Source", stats.getSourceName());
+                statJson.put("LastMessageTime", stats.getLastMessageTime());
+                statJson.put("Started", sink.getLiveTime());
+                statJson.put("LifeSpan", sink.getLifeSpanDays());
+            }
+        }
+
+        JSONArray filterArray = new JSONArray();
+        json.put("tagFilters", filterArray);
+
+        for (BaseSink sink : sinks) {
+            TagValueFilter filter = sink instanceof TagSink ? ((TagSink) sink).getFilter() : null;
+            if (filter == null) continue;
+
+            for (TagValueFilter.ProviderStats stats : filter.getProviderStats()) {
+                JSONObject filterJson = new JSONObject();
+                filterArray.put(filterJson);
+                filterJson.put("Provider", stats.getProvider());
+                filterJson.put("Received", stats.getReceived());
+                filterJson.put("Sent", stats.getPassed());
+                filterJson.put("FilteredRatio", stats.getFilteredRatio());
+                filterJson.put("TrackedTags", filter.getTrackedTags());
+            }
+        }
+
+        JSONArray aggregationArray = new JSONArray();
+        json.put("tagAggregations", aggregationArray);
+
+        for (BaseSink sink : sinks) {
+            TagAggregator aggregator = sink instanceof TagSink ? ((TagSink) sink).getAggregator() : null;
+            if (aggregator == null) continue;
+
+            JSONObject aggregationJson = new JSONObject();
+            aggregationArray.put(aggregationJson);
+            aggregationJson.put("Name", sink.getPipelineName());
+            aggregationJson.put("WindowSeconds", aggregator.getWindowSeconds());
+            aggregationJson.put("TrackedTags", aggregator.getTrackedTags());
+            aggregationJson.put("Aggregated", aggregator.getAggregated());
+            aggregationJson.put("Skipped", aggregator.getSkipped());
+            aggregationJson.put("Late", aggregator.getLate());
+            aggregationJson.put("Emitted", aggregator.getEmitted());
+        }
+
+        JSONArray queuesArray = new JSONArray();
+        json.put("queues", queuesArray);
+
+        for (DispatchQueue<?> queue : queues) {
+            JSONObject queueJson = new JSONObject();
+            queuesArray.put(queueJson);
+            queueJson.put("Name", queue.getName());
+            queueJson.put("Policy", queue.getPolicy().toString());
+            queueJson.put("Depth", queue.getDepth());
+            queueJson.put("Capacity", queue.getCapacity());
+            queueJson.put("Dispatched", queue.getDispatched());
+            queueJson.put("Dropped", queue.getDropped());
+            queueJson.put("Spilled", queue.getSpilled());
+        }
+
+        JSONArray auditArray = new JSONArray();
+        json.put("auditLogs", auditArray);
+
+        for (AuditLogSF auditLog : auditLogs) {
+            JSONObject auditJson = new JSONObject();
+            auditArray.put(auditJson);
+            auditJson.put("Name", auditLog.getProfileName());
+            auditJson.put("LastPurgeRows", auditLog.getLastPurgeRows());
+            auditJson.put("LastPurgeMillis", auditLog.getLastPurgeMillis());
+
+            RecentAuditBuffer buffer = auditLog.getRecentBuffer();
+            auditJson.put("BufferEnabled", buffer != null);
+            if (buffer != null) {
+                auditJson.put("BufferSize", buffer.getSize());
+                auditJson.put("BufferCapacity", buffer.getCapacity());
+                auditJson.put("BufferHits", buffer.getHits());
+                auditJson.put("BufferMisses", buffer.getMisses());
+                auditJson.put("BufferHitRatio", buffer.getHitRatio());
+            }
+        }
+
+        JSONArray commandsArray = new JSONArray();
+        json.put("commands", commandsArray);
+
+        if (commands != null) {
+            JSONObject commandJson = new JSONObject();
+            commandsArray.put(commandJson);
+            commandJson.put("Topic", commands.getTopic());
+            commandJson.put("State", !commands.isRunning() ? "Stopped" : commands.isPaused() ? "Paused" : "Polling");
+            commandJson.put("Received", commands.getReceived());
+            commandJson.put("Written", commands.getWritten());
+            commandJson.put("Coalesced", commands.getCoalesced());
+            commandJson.put("Rejected", commands.getRejected());
+            commandJson.put("Denied", commands.getDenied());
+            commandJson.put("Failed", commands.getFailed());
+            commandJson.put("Pauses", commands.getPauses());
+            commandJson.put("Restarts", commands.getRestarts());
+        }
+        return json;
+    }
+
+    private static String metrics(KafkaSettingsRecord config, List<BaseSink> sinks, List<DispatchQueue<?>> queues,
+                                  List<AuditLogSF> auditLogs, CommandConsumer commands) {
+        PrometheusWriter out = new PrometheusWriter();
+
+        out.family("enabled", "gauge", "1 when the Kafka producer is enabled");
+        out.sample("enabled", config != null && config.getEnabled() ? 1 : 0);
+
+        out.family("sink_messages_total", "counter", "Records acknowledged by Kafka");
+        for (BaseSink sink : sinks) {
+            for (MessageStats stats : sink.getStats()) {
+                out.sample("sink_messages_total", stats.getSuccessCount(), sinkLabels(sink, stats));
+            }
+        }
+        out.family("sink_failures_total", "counter", "Records Kafka failed to acknowledge");
+        for (BaseSink sink : sinks) {
+            for (MessageStats stats : sink.getStats()) {
+                out.sample("sink_failures_total", stats.getFailedCount(), sinkLabels(sink, stats));
+            }
+        }
+        out.family("sink_in_flight", "gauge", "Records sent and not yet acknowledged");
+        for (BaseSink sink : sinks) {
+            for (MessageStats stats : sink.getStats()) {
+                out.sample("sink_in_flight", stats.getInFlight(), sinkLabels(sink, stats));
+            }
+        }
+        out.family("sink_message_rate", "gauge", "Acknowledged records per second over the window");
+        for (BaseSink sink : sinks) {
+            for (MessageStats stats : sink.getStats()) {
+                for (int minutes : RATE_WINDOWS) {
+                    out.sample("sink_message_rate", stats.getMessageRate(minutes), "sink", sink.getPipelineName(),
+                            "source", stats.getSourceName(), "window", minutes + "m");
+                }
+            }
+        }
+        out.family("sink_failure_rate", "gauge", "Failed records per second over the window");
+        for (BaseSink sink : sinks) {
+            for (MessageStats stats : sink.getStats()) {
+                for (int minutes : RATE_WINDOWS) {
+                    out.sample("sink_failure_rate", stats.getFailureRate(minutes), "sink", sink.getPipelineName(),
+                            "source", stats.getSourceName(), "window", minutes + "m");
+                }
+            }
+        }
+
+        out.family("sink_ack_latency_seconds", "histogram", "Time from send to acknowledgement by Kafka");
+        for (BaseSink sink : sinks) {
+            for (MessageStats stats : sink.getStats()) {
+                long[] counts = stats.getAckLatency().getCumulativeCounts(LATENCY_BOUNDS);
+                for (int i = 0; i < LATENCY_BOUNDS.length; i++) {
+                    out.sample("sink_ack_latency_seconds_bucket", counts[i], "sink", sink.getPipelineName(),
+                            "source", stats.getSourceName(), "le", LATENCY_LABELS[i]);
+                }
+                long total = counts[LATENCY_BOUNDS.length];
+                out.sample("sink_ack_latency_seconds_bucket", total, "sink", sink.getPipelineName(),
+                        "source", stats.getSourceName(), "le", "+Inf");
+                out.sample("sink_ack_latency_seconds_sum", stats.getAckLatency().getSumSeconds(),
+                        sinkLabels(sink, stats));
+                out.sample("sink_ack_latency_seconds_count", total, sinkLabels(sink, stats));
+            }
+        }
+
+        out.family("spill_backlog_bytes", "gauge", "Bytes in the spill log waiting to be replayed");
+        for (BaseSink sink : sinks) {
+            SpillLog spill = sink.getSpillLog();
+            if (spill != null) out.sample("spill_backlog_bytes", spill.getBacklogBytes(), "sink", sink.getPipelineName());
+        }
+        out.family("spill_segments", "gauge", "Spill log segment files");
+        for (BaseSink sink : sinks) {
+            SpillLog spill = sink.getSpillLog();
+            if (spill != null) out.sample("spill_segments", spill.getSegmentCount(), "sink", sink.getPipelineName());
+        }
+        out.family("spill_appended_total", "counter", "Records written to the spill log");
+        for (BaseSink sink : sinks) {
+            SpillLog spill = sink.getSpillLog();
+            if (spill != null) out.sample("spill_appended_total", spill.getAppended(), "sink", sink.getPipelineName());
+        }
+        out.family("spill_replayed_total", "counter", "Spilled records delivered to Kafka");
+        for (BaseSink sink : sinks) {
+            SpillLog spill = sink.getSpillLog();
+            if (spill != null) out.sample("spill_replayed_total", spill.getReplayed(), "sink", sink.getPipelineName());
+        }
+        out.family("spill_rejected_total", "counter", "Records dropped because the spill quota was full");
+        for (BaseSink sink : sinks) {
+            SpillLog spill = sink.getSpillLog();
+            if (spill != null) out.sample("spill_rejected_total", spill.getRejected(), "sink", sink.getPipelineName());
+        }
+        out.family("spill_corrupt_total", "counter", "Corrupt spill log records skipped on replay");
+        for (BaseSink sink : sinks) {
+            SpillLog spill = sink.getSpillLog();
+            if (spill != null) out.sample("spill_corrupt_total", spill.getCorrupt(), "sink", sink.getPipelineName());
+        }
+
+        out.family("queue_depth", "gauge", "Events waiting in the alarm or audit dispatch queue");
+        for (DispatchQueue<?> queue : queues) {
+            out.sample("queue_depth", queue.getDepth(), "queue", queue.getName());
+        }
+        out.family("queue_capacity", "gauge", "Capacity of the dispatch queue");
+        for (DispatchQueue<?> queue : queues) {
+            out.sample("queue_capacity", queue.getCapacity(), "queue", queue.getName());
+        }
+        out.family("queue_dispatched_total", "counter", "Events taken from the dispatch queue");
+        for (DispatchQueue<?> queue : queues) {
+            out.sample("queue_dispatched_total", queue.getDispatched(), "queue", queue.getName());
+        }
+        out.family("queue_dropped_total", "counter", "Events dropped because the dispatch queue was full");
+        for (DispatchQueue<?> queue : queues) {
+            out.sample("queue_dropped_total", queue.getDropped(), "queue", queue.getName());
+        }
+        out.family("queue_spilled_total", "counter", "Events written to the spill log because the queue was full");
+        for (DispatchQueue<?> queue : queues) {
+            out.sample("queue_spilled_total", queue.getSpilled(), "queue", queue.getName());
+        }
+
+        out.family("tag_filter_received_total", "counter", "Tag values seen by the tag history filter");
+        for (BaseSink sink : sinks) {
+            TagValueFilter filter = sink instanceof TagSink ? ((TagSink) sink).getFilter() : null;
+            if (filter == null) continue;
+            for (TagValueFilter.ProviderStats stats : filter.getProviderStats()) {
+                out.sample("tag_filter_received_total", stats.getReceived(), "provider", stats.getProvider());
+            }
+        }
+        out.family("tag_filter_sent_total", "counter", "Tag values passed by the tag history filter");
+        for (BaseSink sink : sinks) {
+            TagValueFilter filter = sink instanceof TagSink ? ((TagSink) sink).getFilter() : null;
+            if (filter == null) continue;
+            for (TagValueFilter.ProviderStats stats : filter.getProviderStats()) {
+                out.sample("tag_filter_sent_total", stats.getPassed(), "provider", stats.getProvider());
+            }
+        }
+
+        List<TagSink> aggregating = new ArrayList<>();
+        for (BaseSink sink : sinks) {
+            if (sink instanceof TagSink && ((TagSink) sink).getAggregator() != null) {
+                aggregating.add((TagSink) sink);
+            }
+        }
+        out.family("tag_aggregation_tracked_tags", "gauge", "Tags with an open aggregation window");
+        for (TagSink sink : aggregating) {
+            out.sample("tag_aggregation_tracked_tags", sink.getAggregator().getTrackedTags(),
+                    "sink", sink.getPipelineName());
+        }
+        out.family("tag_aggregation_values_total", "counter", "Tag values by what the aggregator did with them");
+        for (TagSink sink : aggregating) {
+            TagAggregator aggregator = sink.getAggregator();
+            out.sample("tag_aggregation_values_total", aggregator.getAggregated(),
+                    "sink", sink.getPipelineName(), "result", "aggregated");
+            out.sample("tag_aggregation_values_total", aggregator.getSkipped(),
+                    "sink", sink.getPipelineName(), "result", "skipped");
+            out.sample("tag_aggregation_values_total", aggregator.getLate(),
+                    "sink", sink.getPipelineName(), "result", "late");
+        }
+        out.family("tag_aggregation_emitted_total", "counter", "Window summaries sent");
+        for (TagSink sink : aggregating) {
+            out.sample("tag_aggregation_emitted_total", sink.getAggregator().getEmitted(),
+                    "sink", sink.getPipelineName());
+        }
+
+        out.family("audit_buffer_size", "gauge", "Audit events held in the recent audit buffer");
+        for (AuditLogSF auditLog : auditLogs) {
+            RecentAuditBuffer buffer = auditLog.getRecentBuffer();
+            if (buffer != null) out.sample("audit_buffer_size", buffer.getSize(), "profile", auditLog.getProfileName());
+        }
+        out.family("audit_buffer_hits_total", "counter", "Audit queries answered from the recent audit buffer");
+        for (AuditLogSF auditLog : auditLogs) {
+            RecentAuditBuffer buffer = auditLog.getRecentBuffer();
+            if (buffer != null) {
+                out.sample("audit_buffer_hits_total", buffer.getHits(), "profile", auditLog.getProfileName());
+            }
+        }
+        out.family("audit_buffer_misses_total", "counter", "Audit queries that went to the database");
+        for (AuditLogSF auditLog : auditLogs) {
+            RecentAuditBuffer buffer = auditLog.getRecentBuffer();
+            if (buffer != null) {
+                out.sample("audit_buffer_misses_total", buffer.getMisses(), "profile", auditLog.getProfileName());
+            }
+        }
+
+        if (commands != null) {
+            String topic = commands.getTopic();
+            out.family("command_records_total", "counter", "Records read from the command topic");
+            out.sample("command_records_total", commands.getReceived(), "topic", topic);
+            out.family("command_writes_total", "counter", "Tag writes from the command topic by result");
+            out.sample("command_writes_total", commands.getWritten(), "topic", topic, "result", "written");
+            out.sample("command_writes_total", commands.getCoalesced(), "topic", topic, "result", "coalesced");
+            out.sample("command_writes_total", commands.getFailed(), "topic", topic, "result", "failed");
+            out.sample("command_writes_total", commands.getDenied(), "topic", topic, "result", "denied");
+            out.family("command_rejected_total", "counter", "Command records that could not be decoded");
+            out.sample("command_rejected_total", commands.getRejected(), "topic", topic);
+            out.family("command_pauses_total", "counter", "Times polling paused for pending tag writes");
+            out.sample("command_pauses_total", commands.getPauses(), "topic", topic);
+            out.family("command_restarts_total", "counter", "Times the command consumer restarted after an error");
+            out.sample("command_restarts_total", commands.getRestarts(), "topic", topic);
+            out.family("command_paused", "gauge", "1 while polling waits for pending tag writes");
+            out.sample("command_paused", commands.isPaused() ? 1 : 0, "topic", topic);
+        }
+        return out.toString();
+    }
+
+    private static String[] sinkLabels(BaseSink sink, MessageStats stats) {
+        return new String[]{"sink", sink.getPipelineName(), "source", stats.getSourceName()};
+    }
+}
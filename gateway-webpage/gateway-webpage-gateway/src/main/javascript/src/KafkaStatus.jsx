@@ -43,6 +43,7 @@ class ConnectOverview extends Component {
                 { header: 'Brokers', weight: 2 },
                 { header: 'Use SSL', weight: 2 },
                 { header: 'Tag History Topic', weight: 2},
+                { header: 'Tag History Mode', weight: 2},
                 { header: 'Alarms Topic', weight: 2},
                 { header: 'Audit Topic', weight: 2}
             ];
@@ -56,11 +57,68 @@ class ConnectOverview extends Component {
                 { header: "Source", weight: 1 },
                 { header: "Messages Sent", weight: 1 },
                 { header: "Failed to Send", weight: 1 },
+                { header: "Msg/s 1/5/15m", weight: 2 },
+                { header: "Fail/s 1/5/15m", weight: 2 },
+                { header: "In Flight", weight: 1 },
+                { header: "Ack Latency p50/p95/p99 (ms)", weight: 2 },
                 { header: "Last Sent", weight: 1 },
                 { header: "Up Time (days)", weight: 1 },
                 { header: "Start Time", weight: 1 }
             ];
 
+            const queueHeaders = [
+                { header: "Queue", weight: 2 },
+                { header: "Overflow Policy", weight: 1 },
+                { header: "Depth", weight: 1 },
+                { header: "Dispatched", weight: 1 },
+                { header: "Dropped", weight: 1 },
+                { header: "Spilled", weight: 1 }
+            ];
+
+            const filterHeaders = [
+                { header: "Tag Provider", weight: 2 },
+                { header: "Received", weight: 1 },
+                { header: "Sent", weight: 1 },
+                { header: "Filtered", weight: 1 }
+            ];
+
+            const aggregationHeaders = [
+                { header: "Sink", weight: 2 },
+                { header: "Window (s)", weight: 1 },
+                { header: "Tags", weight: 1 },
+                { header: "Aggregated / Skipped", weight: 1 },
+                { header: "Late", weight: 1 },
+                { header: "Summaries", weight: 1 }
+            ];
+
+            const spillHeaders = [
+                { header: "Spill Log", weight: 2 },
+                { header: "State", weight: 1 },
+                { header: "Backlog (MB)", weight: 1 },
+                { header: "Segments", weight: 1 },
+                { header: "Spilled / Replayed", weight: 1 },
+                { header: "Rejected", weight: 1 },
+                { header: "Corrupt", weight: 1 }
+            ];
+
+            const auditHeaders = [
+                { header: "Audit Profile", weight: 2 },
+                { header: "Recent Buffer", weight: 1 },
+                { header: "Hits / Misses", weight: 1 },
+                { header: "Hit Ratio", weight: 1 },
+                { header: "Last Purge (rows)", weight: 1 },
+                { header: "Last Purge (ms)", weight: 1 }
+            ];
+
+            const commandHeaders = [
+                { header: "Command Topic", weight: 2 },
+                { header: "State", weight: 1 },
+                { header: "Received", weight: 1 },
+                { header: "Written / Coalesced", weight: 1 },
+                { header: "Rejected / Denied / Failed", weight: 1 },
+                { header: "Pauses", weight: 1 }
+            ];
+
             const connectionCount = connections.count;
             const enabled = connections.Enabled ? 'YES' : 'NO';
             const storeAndFwd = connections.UseStoreAndForward ? 'YES' : 'NO';
@@ -76,6 +134,7 @@ class ConnectOverview extends Component {
                             connection.Brokers,
                             connection.isSSL.toString(),
                             connection.TagHistoryTopic,
+                            tagHistoryMode(connection),
                             connection.AlarmsTopic,
                             connection.AuditTopic
                         ];
@@ -99,6 +158,10 @@ class ConnectOverview extends Component {
                                 s.Source,
                                 s.MessageCount.toString(),
                                 s.FailedCount.toString(),
+                                rates(s.MessageRate1m, s.MessageRate5m, s.MessageRate15m),
+                                rates(s.FailureRate1m, s.FailureRate5m, s.FailureRate15m),
+                                s.InFlight.toString(),
+                                `${s.AckLatencyP50} / ${s.AckLatencyP95} / ${s.AckLatencyP99}`,
                                 s.LastMessageTime,
                                 s.LifeSpan.toString(),
                                 s.Started
@@ -107,6 +170,95 @@ class ConnectOverview extends Component {
                     });
                 }
 
+                const queueList = connections.queues;
+                let queues = [];
+                if (queueList != null) {
+                    queues = queueList.map((q) => {
+                        return [
+                            q.Name,
+                            q.Policy,
+                            `${q.Depth} / ${q.Capacity}`,
+                            q.Dispatched.toString(),
+                            q.Dropped.toString(),
+                            q.Spilled.toString()
+                        ];
+                    });
+                }
+
+                const filterList = connections.tagFilters;
+                let filters = [];
+                if (filterList != null) {
+                    filters = filterList.map((f) => {
+                        return [
+                            f.Provider,
+                            f.Received.toString(),
+                            f.Sent.toString(),
+                            `${(f.FilteredRatio * 100).toFixed(1)}%`
+                        ];
+                    });
+                }
+
+                const aggregationList = connections.tagAggregations;
+                let aggregations = [];
+                if (aggregationList != null) {
+                    aggregations = aggregationList.map((a) => {
+                        return [
+                            a.Name,
+                            a.WindowSeconds.toString(),
+                            a.TrackedTags.toString(),
+                            `${a.Aggregated} / ${a.Skipped}`,
+                            a.Late.toString(),
+                            a.Emitted.toString()
+                        ];
+                    });
+                }
+
+                let spills = [];
+                if (sinkList != null) {
+                    spills = sinkList.filter((sink) => sink.spill != null).map((sink) => {
+                        const sp = sink.spill;
+                        return [
+                            sink.name,
+                            sp.State,
+                            (sp.BacklogBytes / (1024 * 1024)).toFixed(1),
+                            sp.Segments.toString(),
+                            `${sp.Appended} / ${sp.Replayed}`,
+                            sp.Rejected.toString(),
+                            sp.Corrupt.toString()
+                        ];
+                    });
+                }
+
+                const auditList = connections.auditLogs;
+                let auditLogs = [];
+                if (auditList != null) {
+                    auditLogs = auditList.map((a) => {
+                        return [
+                            a.Name,
+                            a.BufferEnabled ? `${a.BufferSize} / ${a.BufferCapacity}` : 'Off',
+                            a.BufferEnabled ? `${a.BufferHits} / ${a.BufferMisses}` : '-',
+                            a.BufferEnabled ? `${(a.BufferHitRatio * 100).toFixed(1)}%` : '-',
+                            a.LastPurgeRows.toString(),
+                            a.LastPurgeMillis.toString()
+                        ];
+                    });
+                }
+
+                const commandList = connections.commands;
+                let commands = [];
+                if (commandList != null) {
+                    commands = commandList.map((c) => {
+                        return [
+                            c.Topic,
+                            c.State,
+                            c.Received.toString(),
+                            `${c.Written} / ${c.Coalesced}`,
+                            `${c.Rejected} / ${c.Denied} / ${c.Failed}`,
+                            c.Pauses.toString()
+                        ];
+                    });
+                }
+
                 return (<div>
                     <div className="row">
                         <div className="small-12 columns">
@@ -154,6 +306,42 @@ class ConnectOverview extends Component {
                             <ItemTable headers={ statHeaders } items={ stats } errorMessage={connectionsError}/>
                         </div>
                     </div>
+                    <div className="row">
+                      <h5>Tag Filtering</h5>
+                        <div className="small-12 columns">
+                            <ItemTable headers={ filterHeaders } items={ filters } errorMessage={connectionsError}/>
+                        </div>
+                    </div>
+                    <div className="row">
+                      <h5>Tag Aggregation</h5>
+                        <div className="small-12 columns">
+                            <ItemTable headers={ aggregationHeaders } items={ aggregations } errorMessage={connectionsError}/>
+                        </div>
+                    </div>
+                    <div className="row">
+                      <h5>Dispatch Queues</h5>
+                        <div className="small-12 columns">
+                            <ItemTable headers={ queueHeaders } items={ queues } errorMessage={connectionsError}/>
+                        </div>
+                    </div>
+                    <div className="row">
+                      <h5>Spill Logs</h5>
+                        <div className="small-12 columns">
+                            <ItemTable headers={ spillHeaders } items={ spills } errorMessage={connectionsError}/>
+                        </div>
+                    </div>
+                    <div className="row">
+                      <h5>Audit Logs</h5>
+                        <div className="small-12 columns">
+                            <ItemTable headers={ auditHeaders } items={ auditLogs } errorMessage={connectionsError}/>
+                        </div>
+                    </div>
+                    <div className="row">
+                      <h5>Tag Write-Back</h5>
+                        <div className="small-12 columns">
+                            <ItemTable headers={ commandHeaders } items={ commands } errorMessage={connectionsError}/>
+                        </div>
+                    </div>
                 </div>);
             } else {
                 return (<div><BlankState { ...BLANK_STATE } /></div>);
@@ -172,6 +360,17 @@ function selector(state) {
     }
 }
 
+function tagHistoryMode(connection) {
+    if (connection.TagHistoryMode !== 'Batched') {
+        return connection.TagHistoryMode;
+    }
+    return connection.TagBatchSize > 0 ? `Batched (${connection.TagBatchSize} values)` : 'Batched (scan set)';
+}
+
+function rates(one, five, fifteen) {
+    return [one, five, fifteen].map(r => r.toFixed(1)).join(' / ');
+}
+
 function mapMany (arr, mapper) {
     return arr.reduce(function (prev, curr, i) {
         return prev.concat(mapper(curr));
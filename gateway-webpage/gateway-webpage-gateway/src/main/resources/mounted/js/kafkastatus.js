@@ -6,5 +6,511 @@ var kafkastatus=function(e){var t={};function n(r){if(t[r])return t[r].exports;v
  *
  * This source code is licensed under the MIT license found in the
  * LICENSE file in the root directory of this source tree.
- */var r="function"==typeof Symbol&&Symbol.for,o=r?Symbol.for("react.element"):60103,i=r?Symbol.for("react.portal"):60106,a=r?Symbol.for("react.fragment"):60107,c=r?Symbol.for("react.strict_mode"):60108,u=r?Symbol.for("react.profiler"):60114,s=r?Symbol.for("react.provider"):60109,l=r?Symbol.for("react.context"):60110,f=r?Symbol.for("react.async_mode"):60111,p=r?Symbol.for("react.concurrent_mode"):60111,d=r?Symbol.for("react.forward_ref"):60112,h=r?Symbol.for("react.suspense"):60113,y=r?Symbol.for("react.suspense_list"):60120,m=r?Symbol.for("react.memo"):60115,b=r?Symbol.for("react.lazy"):60116,v=r?Symbol.for("react.block"):60121,g=r?Symbol.for("react.fundamental"):60117,O=r?Symbol.for("react.responder"):60118,S=r?Symbol.for("react.scope"):60119;function P(e){if("object"==typeof e&&null!==e){var t=e.$$typeof;switch(t){case o:switch(e=e.type){case f:case p:case a:case u:case c:case h:return e;default:switch(e=e&&e.$$typeof){case l:case d:case b:case m:case s:return e;default:return t}}case i:return t}}}function w(e){return P(e)===p}t.AsyncMode=f,t.ConcurrentMode=p,t.ContextConsumer=l,t.ContextProvider=s,t.Element=o,t.ForwardRef=d,t.Fragment=a,t.Lazy=b,t.Memo=m,t.Portal=i,t.Profiler=u,t.StrictMode=c,t.Suspense=h,t.isAsyncMode=function(e){return w(e)||P(e)===f},t.isConcurrentMode=w,t.isContextConsumer=function(e){return P(e)===l},t.isContextProvider=function(e){return P(e)===s},t.isElement=function(e){return"object"==typeof e&&null!==e&&e.$$typeof===o},t.isForwardRef=function(e){return P(e)===d},t.isFragment=function(e){return P(e)===a},t.isLazy=function(e){return P(e)===b},t.isMemo=function(e){return P(e)===m},t.isPortal=function(e){return P(e)===i},t.isProfiler=function(e){return P(e)===u},t.isStrictMode=function(e){return P(e)===c},t.isSuspense=function(e){return P(e)===h},t.isValidElementType=function(e){return"string"==typeof e||"function"==typeof e||e===a||e===p||e===u||e===c||e===h||e===y||"object"==typeof e&&null!==e&&(e.$$typeof===b||e.$$typeof===m||e.$$typeof===s||e.$$typeof===l||e.$$typeof===d||e.$$typeof===g||e.$$typeof===O||e.$$typeof===S||e.$$typeof===v)},t.typeOf=P},function(e,t,n){"use strict";e.exports=function(e,t,n,r,o,i,a,c){if(!e){var u;if(void 0===t)u=new Error("Minified exception occurred; use the non-minified dev environment for the full error message and additional helpful warnings.");else{var s=[n,r,o,i,a,c],l=0;(u=new Error(t.replace(/%s/g,(function(){return s[l++]})))).name="Invariant Violation"}throw u.framesToPop=1,u}}},function(e,t,n){"use strict";n.r(t);var r=n(0),o=n.n(r),i=n(2),a=n(3),c=n(13),u=n.n(c),s=n(4);var l=Object(i.combineReducers)({getConnections:function(){var e=arguments.length>0&&void 0!==arguments[0]?arguments[0]:null,t=arguments.length>1?arguments[1]:void 0;return"kafka/CONNECTIONS_LOAD"===t.type?t.connections:"kafka/CONNECTIONS_ERR"===t.type?null:e},getConnectionsError:function(){var e=arguments.length>0&&void 0!==arguments[0]?arguments[0]:null,t=arguments.length>1?arguments[1]:void 0;return"kafka/CONNECTIONS_ERR"===t.type?t.reason:"kafka/CONNECTIONS_LOAD"===t.type?null:e},connectionName:function(){var e=arguments.length>0&&void 0!==arguments[0]?arguments[0]:null,t=arguments.length>1?arguments[1]:void 0;return"kafka/VIEW_CONNECTION"===t.type?t.connection:"kafka/VIEW_ALL"===t.type?null:e},permissions:function(){var e=arguments.length>0&&void 0!==arguments[0]?arguments[0]:{config:!1},t=arguments.length>1?arguments[1]:void 0;return"kafka/FETCH_PERMISSIONS"===t.type?t.permissions:e},getDetails:function(){var e=arguments.length>0&&void 0!==arguments[0]?arguments[0]:null,t=arguments.length>1?arguments[1]:void 0;return"kafka/CONNECTIONS_DETAIL_LOAD"===t.type?t.connection:"kafka/CONNECTIONS_DETAIL_ERR"===t.type?null:e},getDetailsError:function(){var e=arguments.length>0&&void 0!==arguments[0]?arguments[0]:null,t=arguments.length>1?arguments[1]:void 0;return"kafka/CONNECTIONS_DETAIL_ERR"===t.type?t.reason:"kafka/CONNECTIONS_DETAIL_LOAD"===t.type?null:e}});function f(e){return function(t){fetch("/data/kafka/status/connections",{method:"get",credentials:"same-origin",headers:{Accept:"application/json"}}).then(s.checkStatus).then((function(e){return e.json()})).then((function(n){e()&&t({type:"kafka/CONNECTIONS_LOAD",connections:n})})).catch((function(n){e(),t({type:"kafka/CONNECTIONS_ERR",reason:n.toString()})}))}}var p=n(1);function d(e){return(d="function"==typeof Symbol&&"symbol"==typeof Symbol.iterator?function(e){return typeof e}:function(e){return e&&"function"==typeof Symbol&&e.constructor===Symbol&&e!==Symbol.prototype?"symbol":typeof e})(e)}function h(e,t){for(var n=0;n<t.length;n++){var r=t[n];r.enumerable=r.enumerable||!1,r.configurable=!0,"value"in r&&(r.writable=!0),Object.defineProperty(e,r.key,r)}}function y(e,t){return(y=Object.setPrototypeOf||function(e,t){return e.__proto__=t,e})(e,t)}function m(e){var t=function(){if("undefined"==typeof Reflect||!Reflect.construct)return!1;if(Reflect.construct.sham)return!1;if("function"==typeof Proxy)return!0;try{return Boolean.prototype.valueOf.call(Reflect.construct(Boolean,[],(function(){}))),!0}catch(e){return!1}}();return function(){var n,r=v(e);if(t){var o=v(this).constructor;n=Reflect.construct(r,arguments,o)}else n=r.apply(this,arguments);return b(this,n)}}function b(e,t){if(t&&("object"===d(t)||"function"==typeof t))return t;if(void 0!==t)throw new TypeError("Derived constructors may only return object or undefined");return function(e){if(void 0===e)throw new ReferenceError("this hasn't been initialised - super() hasn't been called");return e}(e)}function v(e){return(v=Object.setPrototypeOf?Object.getPrototypeOf:function(e){return e.__proto__||Object.getPrototypeOf(e)})(e)}var g={image:o.a.createElement("img",{src:"/main/res/alarm-notification/img/blank_alarms.png",alt:""}),heading:"There are no sinks defined.",body:"Kafka sinks allow you to stream data from Ignition to Kafka.",links:[o.a.createElement("a",{className:"primary button",target:"_blank",href:"https://google.com"},"Learn More")]},O=function(e){!function(e,t){if("function"!=typeof t&&null!==t)throw new TypeError("Super expression must either be null or a function");e.prototype=Object.create(t&&t.prototype,{constructor:{value:e,writable:!0,configurable:!0}}),t&&y(e,t)}(a,e);var t,n,r,i=m(a);function a(e){return function(e,t){if(!(e instanceof t))throw new TypeError("Cannot call a class as a function")}(this,a),i.call(this,e)}return t=a,(n=[{key:"componentWillMount",value:function(){var e=this.props.dispatch;this.cancelPoll=Object(s.pollWaitAck)(e,f,5e3)}},{key:"componentWillUnmount",value:function(){this.cancelPoll&&this.cancelPoll()}},{key:"render",value:function(){var e,t=this.props,n=t.connections,r=t.connectionsError;if(null!=n){var i=n.count,a=n.Enabled?"YES":"NO",c=n.UseStoreAndForward?"YES":"NO",u=n.AlarmsEnabled?"YES":"NO",s=n.AuditEnabled?"YES":"NO";if(i>0){var l=n.connections,f=[],d=[];null!=l&&(f=l.map((function(e){return[e.Brokers,e.isSSL.toString(),e.TagHistoryTopic,e.AlarmsTopic,e.AuditTopic]})),d=l.map((function(e){return[e.MinimumPriority,null==e.Source?"none":e.Source,null==e.DispPath?"none":e.DispPath,null==e.SrcPath?"none":e.SrcPath]})));var h=n.sinks,y=[];return null!=h&&(e=function(e){return e.stats.map((function(e){return[e.Source,e.MessageCount.toString(),e.FailedCount.toString(),e.LastMessageTime,e.LifeSpan.toString(),e.Started]}))},y=h.reduce((function(t,n,r){return t.concat(e(n))}),[])),o.a.createElement("div",null,o.a.createElement("div",{className:"row"},o.a.createElement("div",{className:"small-12 columns"},o.a.createElement("div",{className:"page-heading"},o.a.createElement("div",{className:"quick-links"},o.a.createElement("a",{href:"/web/config/hce.hub"},"Configure")),o.a.createElement("h6",null,"Systems"),o.a.createElement("h1",null,"Performance")))),o.a.createElement("div",{className:"row"},o.a.createElement("div",{className:"small-12 medium-5 large-3 columns"},o.a.createElement(p.Gauge,{label:"Kafka Stream Enabled",value:a})),o.a.createElement("div",{className:"small-12 medium-5 large-3 columns"},o.a.createElement(p.Gauge,{label:"Store & Forward Enabled",value:c})),o.a.createElement("div",{className:"small-12 medium-5 large-3 columns"},o.a.createElement(p.Gauge,{label:"Alarm Streaming Enabled",value:u})),o.a.createElement("div",{className:"small-12 medium-5 large-3 columns"},o.a.createElement(p.Gauge,{label:"Audit Streaming Enabled",value:s}))),o.a.createElement("div",{className:"row"},o.a.createElement("h5",null,"Kafka Settings"),o.a.createElement("div",{className:"small-12 columns"},o.a.createElement(p.ItemTable,{headers:[{header:"Brokers",weight:2},{header:"Use SSL",weight:2},{header:"Tag History Topic",weight:2},{header:"Alarms Topic",weight:2},{header:"Audit Topic",weight:2}],items:f,errorMessage:r}))),o.a.createElement("div",{className:"row"},o.a.createElement("h5",null,"Alarm Filters"),o.a.createElement("div",{className:"small-12 columns"},o.a.createElement(p.ItemTable,{headers:[{header:"Minimum Priority",weight:1},{header:"Source",weight:1},{header:"Display Path",weight:1},{header:"Source Path",weight:2}],items:d,errorMessage:r}))),o.a.createElement("div",{className:"row"},o.a.createElement("h5",null,"Message Stats"),o.a.createElement("div",{className:"small-12 columns"},o.a.createElement(p.ItemTable,{headers:[{header:"Source",weight:1},{header:"Messages Sent",weight:1},{header:"Failed to Send",weight:1},{header:"Last Sent",weight:1},{header:"Up Time (days)",weight:1},{header:"Start Time",weight:1}],items:y,errorMessage:r}))))}return o.a.createElement("div",null,o.a.createElement(p.BlankState,g))}return o.a.createElement("div",null,o.a.createElement(p.Loading,null))}}])&&h(t.prototype,n),r&&h(t,r),a}(r.Component);var S=Object(a.connect)((function(e){return{connections:e.getConnections,connectionsError:e.getConnectionsError}}))(O);function P(e){return(P="function"==typeof Symbol&&"symbol"==typeof Symbol.iterator?function(e){return typeof e}:function(e){return e&&"function"==typeof Symbol&&e.constructor===Symbol&&e!==Symbol.prototype?"symbol":typeof e})(e)}function w(e,t){if(!(e instanceof t))throw new TypeError("Cannot call a class as a function")}function E(e,t){for(var n=0;n<t.length;n++){var r=t[n];r.enumerable=r.enumerable||!1,r.configurable=!0,"value"in r&&(r.writable=!0),Object.defineProperty(e,r.key,r)}}function j(e,t){return(j=Object.setPrototypeOf||function(e,t){return e.__proto__=t,e})(e,t)}function T(e){var t=function(){if("undefined"==typeof Reflect||!Reflect.construct)return!1;if(Reflect.construct.sham)return!1;if("function"==typeof Proxy)return!0;try{return Boolean.prototype.valueOf.call(Reflect.construct(Boolean,[],(function(){}))),!0}catch(e){return!1}}();return function(){var n,r=C(e);if(t){var o=C(this).constructor;n=Reflect.construct(r,arguments,o)}else n=r.apply(this,arguments);return _(this,n)}}function _(e,t){if(t&&("object"===P(t)||"function"==typeof t))return t;if(void 0!==t)throw new TypeError("Derived constructors may only return object or undefined");return function(e){if(void 0===e)throw new ReferenceError("this hasn't been initialised - super() hasn't been called");return e}(e)}function C(e){return(C=Object.setPrototypeOf?Object.getPrototypeOf:function(e){return e.__proto__||Object.getPrototypeOf(e)})(e)}var N=Object(i.applyMiddleware)(u.a)(i.createStore)(l),k=function(e){!function(e,t){if("function"!=typeof t&&null!==t)throw new TypeError("Super expression must either be null or a function");e.prototype=Object.create(t&&t.prototype,{constructor:{value:e,writable:!0,configurable:!0}}),t&&j(e,t)}(c,e);var t,n,r,i=T(c);function c(){return w(this,c),i.apply(this,arguments)}return t=c,(n=[{key:"render",value:function(){return o.a.createElement(a.Provider,{store:N},o.a.createElement(S,{dispatch:N.dispatch}))}}])&&E(t.prototype,n),r&&E(t,r),c}(o.a.Component);t.default=k}]);
+ */var r="function"==typeof Symbol&&Symbol.for,o=r?Symbol.for("react.element"):60103,i=r?Symbol.for("react.portal"):60106,a=r?Symbol.for("react.fragment"):60107,c=r?Symbol.for("react.strict_mode"):60108,u=r?Symbol.for("react.profiler"):60114,s=r?Symbol.for("react.provider"):60109,l=r?Symbol.for("react.context"):60110,f=r?Symbol.for("react.async_mode"):60111,p=r?Symbol.for("react.concurrent_mode"):60111,d=r?Symbol.for("react.forward_ref"):60112,h=r?Symbol.for("react.suspense"):60113,y=r?Symbol.for("react.suspense_list"):60120,m=r?Symbol.for("react.memo"):60115,b=r?Symbol.for("react.lazy"):60116,v=r?Symbol.for("react.block"):60121,g=r?Symbol.for("react.fundamental"):60117,O=r?Symbol.for("react.responder"):60118,S=r?Symbol.for("react.scope"):60119;function P(e){if("object"==typeof e&&null!==e){var t=e.$$typeof;switch(t){case o:switch(e=e.type){case f:case p:case a:case u:case c:case h:return e;default:switch(e=e&&e.$$typeof){case l:case d:case b:case m:case s:return e;default:return t}}case i:return t}}}function w(e){return P(e)===p}t.AsyncMode=f,t.ConcurrentMode=p,t.ContextConsumer=l,t.ContextProvider=s,t.Element=o,t.ForwardRef=d,t.Fragment=a,t.Lazy=b,t.Memo=m,t.Portal=i,t.Profiler=u,t.StrictMode=c,t.Suspense=h,t.isAsyncMode=function(e){return w(e)||P(e)===f},t.isConcurrentMode=w,t.isContextConsumer=function(e){return P(e)===l},t.isContextProvider=function(e){return P(e)===s},t.isElement=function(e){return"object"==typeof e&&null!==e&&e.$$typeof===o},t.isForwardRef=function(e){return P(e)===d},t.isFragment=function(e){return P(e)===a},t.isLazy=function(e){return P(e)===b},t.isMemo=function(e){return P(e)===m},t.isPortal=function(e){return P(e)===i},t.isProfiler=function(e){return P(e)===u},t.isStrictMode=function(e){return P(e)===c},t.isSuspense=function(e){return P(e)===h},t.isValidElementType=function(e){return"string"==typeof e||"function"==typeof e||e===a||e===p||e===u||e===c||e===h||e===y||"object"==typeof e&&null!==e&&(e.$$typeof===b||e.$$typeof===m||e.$$typeof===s||e.$$typeof===l||e.$$typeof===d||e.$$typeof===g||e.$$typeof===O||e.$$typeof===S||e.$$typeof===v)},t.typeOf=P},function(e,t,n){"use strict";e.exports=function(e,t,n,r,o,i,a,c){if(!e){var u;if(void 0===t)u=new Error("Minified exception occurred; use the non-minified dev environment for the full error message and additional helpful warnings.");else{var s=[n,r,o,i,a,c],l=0;(u=new Error(t.replace(/%s/g,(function(){return s[l++]})))).name="Invariant Violation"}throw u.framesToPop=1,u}}},function(e,t,n){"use strict";n.r(t);
+var __model = (function () {
+var combineReducers = n(2).combineReducers;
+var checkStatus = n(4).checkStatus;
+
+const CONNECTIONS_LOAD = 'kafka/CONNECTIONS_LOAD';
+const CONNECTIONS_ERR = 'kafka/CONNECTIONS_ERR';
+const CONNECTIONS_DETAIL_LOAD = 'kafka/CONNECTIONS_DETAIL_LOAD';
+const CONNECTIONS_DETAIL_ERR = 'kafka/CONNECTIONS_DETAIL_ERR';
+
+const VIEW_ALL = "kafka/VIEW_ALL";
+const VIEW_CONNECTION = "kafka/VIEW_CONNECTION";
+const FETCH_PERMISSIONS = "kafka/FETCH_PERMISSIONS";
+
+function getConnections(state = null, action) {
+    if (action.type === CONNECTIONS_LOAD) {
+        return action.connections;
+    } else if (action.type === CONNECTIONS_ERR) {
+        return null;
+    }
+    return state;
+}
+
+function getConnectionsError(state = null, action) {
+    if (action.type === CONNECTIONS_ERR) {
+        return action.reason;
+    } else if (action.type === CONNECTIONS_LOAD) {
+        return null;
+    }
+    return state;
+}
+
+function getDetails(state = null, action) {
+    if (action.type === CONNECTIONS_DETAIL_LOAD) {
+        return action.connection;
+    } else if (action.type === CONNECTIONS_DETAIL_ERR) {
+        return null;
+    }
+    return state;
+}
+
+function getDetailsError(state = null, action) {
+    if (action.type === CONNECTIONS_DETAIL_ERR) {
+        return action.reason;
+    } else if (action.type === CONNECTIONS_DETAIL_LOAD) {
+        return null;
+    }
+    return state;
+}
+
+function connectionName(state = null, action) {
+    if (action.type === VIEW_CONNECTION) {
+        return action.connection;
+    } else if (action.type === VIEW_ALL) {
+        return null;
+    }
+    return state;
+}
+
+
+function permissions(state = {'config': false}, action) {
+    if (action.type === FETCH_PERMISSIONS) {
+        return action.permissions;
+    }
+    return state;
+}
+
+const reducer = combineReducers({
+    getConnections,
+    getConnectionsError,
+    connectionName,
+    permissions,
+    getDetails,
+    getDetailsError,
+});
+var __default = reducer;
+
+/*
+ ACTION CREATORS
+ */
+function getConnectionsStatus(startNextPoll) {
+    return function (dispatch) {
+        fetch(`/data/kafka/status/connections`, {
+            method: 'get',
+            credentials: 'same-origin',
+            headers: {
+                'Accept': 'application/json'
+            }
+        })
+            .then(checkStatus)
+            .then(response => response.json())
+            .then(json => {
+                if(startNextPoll()){
+                    dispatch({type: CONNECTIONS_LOAD, connections: json})
+                }
+
+            })
+            .catch(reason => {
+                startNextPoll();
+                dispatch({type: CONNECTIONS_ERR, reason: reason.toString()});
+            });
+    }
+}
+return {default: __default, getConnectionsStatus: getConnectionsStatus};})();
+var __kafkaStatus = (function () {
+/**
+ * Created by Nick Robinson on 05-Oct-21.
+ */
+var React = n.n(n(0)).a, Component = n(0).Component;
+var connect = n(3).connect;
+var pollWaitAck = n(4).pollWaitAck;
+var getConnectionsStatus = __model.getConnectionsStatus;
+var BlankState = n(1).BlankState, Gauge = n(1).Gauge, ItemTable = n(1).ItemTable, Loading = n(1).Loading;
+
+const BLANK_STATE = {
+    image: React.createElement("img", {src: "/main/res/alarm-notification/img/blank_alarms.png", alt: ""}),
+    heading: 'There are no sinks defined.',
+    body: 'Kafka sinks allow you to stream data from Ignition to Kafka.',
+
+    links: [React.createElement("a", {className: "primary button", target: "_blank", href: "https://google.com"}, "Learn More")
+
+
+    ]
+};
+
+class ConnectOverview extends Component {
+    constructor(props) {
+        super(props);
+    }
+
+    componentWillMount() {
+        const {dispatch} = this.props;
+        // // refresh the connection status every 5 seconds, but don't start a new request until the last one has returned
+        this.cancelPoll = pollWaitAck(dispatch, getConnectionsStatus, 5000);
+    }
+
+    componentWillUnmount() {
+        if (this.cancelPoll) {
+            this.cancelPoll();
+        }
+    }
+
+    render() {
+        const {connections, connectionsError} = this.props;
+
+        if (connections != null){
+            const HEADERS = [
+                { header: 'Brokers', weight: 2 },
+                { header: 'Use SSL', weight: 2 },
+                { header: 'Tag History Topic', weight: 2},
+                { header: 'Tag History Mode', weight: 2},
+                { header: 'Alarms Topic', weight: 2},
+                { header: 'Audit Topic', weight: 2}
+            ];
+            const alarmHeaders = [
+                { header: 'Minimum Priority', weight: 1},
+                { header: 'Source', weight: 1 },
+                { header: 'Display Path', weight: 1 },
+                { header: 'Source Path', weight: 2 }
+            ];
+            const statHeaders = [
+                { header: "Source", weight: 1 },
+                { header: "Messages Sent", weight: 1 },
+                { header: "Failed to Send", weight: 1 },
+                { header: "Msg/s 1/5/15m", weight: 2 },
+                { header: "Fail/s 1/5/15m", weight: 2 },
+                { header: "In Flight", weight: 1 },
+                { header: "Ack Latency p50/p95/p99 (ms)", weight: 2 },
+                { header: "Last Sent", weight: 1 },
+                { header: "Up Time (days)", weight: 1 },
+                { header: "Start Time", weight: 1 }
+            ];
+
+            const queueHeaders = [
+                { header: "Queue", weight: 2 },
+                { header: "Overflow Policy", weight: 1 },
+                { header: "Depth", weight: 1 },
+                { header: "Dispatched", weight: 1 },
+                { header: "Dropped", weight: 1 },
+                { header: "Spilled", weight: 1 }
+            ];
+
+            const filterHeaders = [
+                { header: "Tag Provider", weight: 2 },
+                { header: "Received", weight: 1 },
+                { header: "Sent", weight: 1 },
+                { header: "Filtered", weight: 1 }
+            ];
+
+            const aggregationHeaders = [
+                { header: "Sink", weight: 2 },
+                { header: "Window (s)", weight: 1 },
+                { header: "Tags", weight: 1 },
+                { header: "Aggregated / Skipped", weight: 1 },
+                { header: "Late", weight: 1 },
+                { header: "Summaries", weight: 1 }
+            ];
+
+            const spillHeaders = [
+                { header: "Spill Log", weight: 2 },
+                { header: "State", weight: 1 },
+                { header: "Backlog (MB)", weight: 1 },
+                { header: "Segments", weight: 1 },
+                { header: "Spilled / Replayed", weight: 1 },
+                { header: "Rejected", weight: 1 },
+                { header: "Corrupt", weight: 1 }
+            ];
+
+            const auditHeaders = [
+                { header: "Audit Profile", weight: 2 },
+                { header: "Recent Buffer", weight: 1 },
+                { header: "Hits / Misses", weight: 1 },
+                { header: "Hit Ratio", weight: 1 },
+                { header: "Last Purge (rows)", weight: 1 },
+                { header: "Last Purge (ms)", weight: 1 }
+            ];
+
+            const commandHeaders = [
+                { header: "Command Topic", weight: 2 },
+                { header: "State", weight: 1 },
+                { header: "Received", weight: 1 },
+                { header: "Written / Coalesced", weight: 1 },
+                { header: "Rejected / Denied / Failed", weight: 1 },
+                { header: "Pauses", weight: 1 }
+            ];
+
+            const connectionCount = connections.count;
+            const enabled = connections.Enabled ? 'YES' : 'NO';
+            const storeAndFwd = connections.UseStoreAndForward ? 'YES' : 'NO';
+            const alarmsEnabled = connections.AlarmsEnabled ? 'YES' : 'NO';
+            const auditEnabled = connections.AuditEnabled ? 'YES' : 'NO';
+
+            if (connectionCount > 0){
+                const connectionList = connections.connections;
+                let settings = [], alarmSettings = [];
+                if (connectionList != null){
+                    settings = connectionList.map((connection) => {
+                        return [
+                            connection.Brokers,
+                            connection.isSSL.toString(),
+                            connection.TagHistoryTopic,
+                            tagHistoryMode(connection),
+                            connection.AlarmsTopic,
+                            connection.AuditTopic
+                        ];
+                    });
+                    alarmSettings = connectionList.map((connection) => {
+                        return [
+                            connection.MinimumPriority,
+                            connection.Source == null ? 'none' : connection.Source,
+                            connection.DispPath == null ? 'none' : connection.DispPath,
+                            connection.SrcPath == null ? 'none' : connection.SrcPath
+                        ];
+                    });
+                }
+
+                const sinkList = connections.sinks;
+                let stats = [];
+                if (sinkList != null) {
+                    stats = mapMany(sinkList, function(c) {
+                        return c.stats.map(function(s) {
+                            return [
+                                s.Source,
+                                s.MessageCount.toString(),
+                                s.FailedCount.toString(),
+                                rates(s.MessageRate1m, s.MessageRate5m, s.MessageRate15m),
+                                rates(s.FailureRate1m, s.FailureRate5m, s.FailureRate15m),
+                                s.InFlight.toString(),
+                                `${s.AckLatencyP50} / ${s.AckLatencyP95} / ${s.AckLatencyP99}`,
+                                s.LastMessageTime,
+                                s.LifeSpan.toString(),
+                                s.Started
+                            ]
+                        })
+                    });
+                }
+
+                const queueList = connections.queues;
+                let queues = [];
+                if (queueList != null) {
+                    queues = queueList.map((q) => {
+                        return [
+                            q.Name,
+                            q.Policy,
+                            `${q.Depth} / ${q.Capacity}`,
+                            q.Dispatched.toString(),
+                            q.Dropped.toString(),
+                            q.Spilled.toString()
+                        ];
+                    });
+                }
+
+                const filterList = connections.tagFilters;
+                let filters = [];
+                if (filterList != null) {
+                    filters = filterList.map((f) => {
+                        return [
+                            f.Provider,
+                            f.Received.toString(),
+                            f.Sent.toString(),
+                            `${(f.FilteredRatio * 100).toFixed(1)}%`
+                        ];
+                    });
+                }
+
+                const aggregationList = connections.tagAggregations;
+                let aggregations = [];
+                if (aggregationList != null) {
+                    aggregations = aggregationList.map((a) => {
+                        return [
+                            a.Name,
+                            a.WindowSeconds.toString(),
+                            a.TrackedTags.toString(),
+                            `${a.Aggregated} / ${a.Skipped}`,
+                            a.Late.toString(),
+                            a.Emitted.toString()
+                        ];
+                    });
+                }
+
+                let spills = [];
+                if (sinkList != null) {
+                    spills = sinkList.filter((sink) => sink.spill != null).map((sink) => {
+                        const sp = sink.spill;
+                        return [
+                            sink.name,
+                            sp.State,
+                            (sp.BacklogBytes / (1024 * 1024)).toFixed(1),
+                            sp.Segments.toString(),
+                            `${sp.Appended} / ${sp.Replayed}`,
+                            sp.Rejected.toString(),
+                            sp.Corrupt.toString()
+                        ];
+                    });
+                }
+
+                const auditList = connections.auditLogs;
+                let auditLogs = [];
+                if (auditList != null) {
+                    auditLogs = auditList.map((a) => {
+                        return [
+                            a.Name,
+                            a.BufferEnabled ? `${a.BufferSize} / ${a.BufferCapacity}` : 'Off',
+                            a.BufferEnabled ? `${a.BufferHits} / ${a.BufferMisses}` : '-',
+                            a.BufferEnabled ? `${(a.BufferHitRatio * 100).toFixed(1)}%` : '-',
+                            a.LastPurgeRows.toString(),
+                            a.LastPurgeMillis.toString()
+                        ];
+                    });
+                }
+
+                const commandList = connections.commands;
+                let commands = [];
+                if (commandList != null) {
+                    commands = commandList.map((c) => {
+                        return [
+                            c.Topic,
+                            c.State,
+                            c.Received.toString(),
+                            `${c.Written} / ${c.Coalesced}`,
+                            `${c.Rejected} / ${c.Denied} / ${c.Failed}`,
+                            c.Pauses.toString()
+                        ];
+                    });
+                }
+
+                return (React.createElement("div", null, React.createElement("div", {className: "row"}, React.createElement("div", {className: "small-12 columns"}, React.createElement("div", {className: "page-heading"}, React.createElement("div", {className: "quick-links"}, React.createElement("a", {href: "/web/config/hce.hub"}, "Configure"))
+
+, React.createElement("h6", null, "Systems"), React.createElement("h1", null, "Performance"))
+
+
+
+)
+
+)
+
+, React.createElement("div", {className: "row"}, React.createElement("div", {className: "small-12 medium-5 large-3 columns"}, React.createElement(Gauge, {label: "Kafka Stream Enabled", value: enabled}))
+
+, React.createElement("div", {className: "small-12 medium-5 large-3 columns"}, React.createElement(Gauge, {label: "Store & Forward Enabled", value: storeAndFwd}))
+
+, React.createElement("div", {className: "small-12 medium-5 large-3 columns"}, React.createElement(Gauge, {label: "Alarm Streaming Enabled", value: alarmsEnabled}))
+
+, React.createElement("div", {className: "small-12 medium-5 large-3 columns"}, React.createElement(Gauge, {label: "Audit Streaming Enabled", value: auditEnabled}))
+
+)
+
+
+
+
+
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Kafka Settings"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  HEADERS , items:  settings , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Alarm Filters"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  alarmHeaders , items:  alarmSettings , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Message Stats"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  statHeaders , items:  stats , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Tag Filtering"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  filterHeaders , items:  filters , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Tag Aggregation"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  aggregationHeaders , items:  aggregations , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Dispatch Queues"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  queueHeaders , items:  queues , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Spill Logs"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  spillHeaders , items:  spills , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Audit Logs"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  auditHeaders , items:  auditLogs , errorMessage: connectionsError}))
+
+)
+
+
+, React.createElement("div", {className: "row"}, React.createElement("h5", null, "Tag Write-Back"), React.createElement("div", {className: "small-12 columns"}, React.createElement(ItemTable, {headers:  commandHeaders , items:  commands , errorMessage: connectionsError}))
+
+)
+
+
+)
+
+
+
+
+
+
+
+
+
+
+
+);
+            } else {
+                return (React.createElement("div", null, React.createElement(BlankState, Object.assign({}, BLANK_STATE))));
+            }
+
+        }else {
+            return (React.createElement("div", null, React.createElement(Loading, null)));
+        }
+    }
+}
+
+function selector(state) {
+    return {
+        connections: state.getConnections,
+        connectionsError: state.getConnectionsError,
+    }
+}
+
+function tagHistoryMode(connection) {
+    if (connection.TagHistoryMode !== 'Batched') {
+        return connection.TagHistoryMode;
+    }
+    return connection.TagBatchSize > 0 ? `Batched (${connection.TagBatchSize} values)` : 'Batched (scan set)';
+}
+
+function rates(one, five, fifteen) {
+    return [one, five, fifteen].map(r => r.toFixed(1)).join(' / ');
+}
+
+function mapMany (arr, mapper) {
+    return arr.reduce(function (prev, curr, i) {
+        return prev.concat(mapper(curr));
+    },[]);
+}
+
+var __default = connect(selector)(ConnectOverview);
+return {default: __default};})();
+var __index = (function () {
+var React = n.n(n(0)).a;
+var createStore = n(2).createStore, applyMiddleware = n(2).applyMiddleware;
+var Provider = n(3).Provider;
+var thunkMiddleware = n.n(n(13)).a;
+
+var reducer = __model.default;
+var KafkaStatus = __kafkaStatus.default;
+
+const createStoreWithMiddleware = applyMiddleware(thunkMiddleware)(createStore);
+const store = createStoreWithMiddleware(reducer);
+
+const MountableApp = class StatusPageApp extends React.Component {
+    render() {
+        return React.createElement(Provider, {store: store}, React.createElement(KafkaStatus, {dispatch: store.dispatch}))
+    }
+}
+
+var __default = MountableApp;
+return {default: __default};})();
+t.default = __index.default;}]);
 //# sourceMappingURL=kafkastatus.js.map
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.inductiveautomation.ignition.examples.kafka.auditlogsf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SQL LIKE patterns evaluated in memory, as the recent audit buffer filters with them.
+ */
+
+public class LikeMatcherTest {
+
+    private static boolean like(String pattern, String value) {
+        return LikeMatcher.compile(pattern).matches(value);
+    }
+
+    @Test
+    public void percentMatchesAnyRun() {
+        assertTrue(like("tag%", "tag write"));
+        assertTrue(like("tag%", "tag"));
+        assertTrue(like("%write", "tag write"));
+        assertTrue(like("%ag w%", "tag write"));
+        assertTrue(like("%", ""));
+        assertFalse(like("tag%", "a tag write"));
+    }
+
+    @Test
+    public void underscoreMatchesExactlyOne() {
+        assertTrue(like("user_", "user1"));
+        assertFalse(like("user_", "user"));
+        assertFalse(like("user_", "user12"));
+        assertTrue(like("__", "ab"));
+    }
+
+    @Test
+    public void withoutWildcardsTheWholeValueMustMatch() {
+        assertTrue(like("admin", "admin"));
+        assertFalse(like("admin", "administrator"));
+        assertFalse(like("admin", "sysadmin"));
+    }
+
+    @Test
+    public void matchingIgnoresCase() {
+        assertTrue(like("Admin%", "ADMINISTRATOR"));
+        assertTrue(like("ärger%", "ÄRGERLICH"));
+    }
+
+    @Test
+    public void regexCharactersAreLiteral() {
+        assertTrue(like("a.b(c)*", "a.b(c)*"));
+        assertFalse(like("a.b", "axb"));
+        assertTrue(like("[default]%", "[default]Plant/Speed"));
+        assertFalse(like("[default]%", "dPlant"));
+        assertTrue(like("\\Q%", "\\Qanything"));
+        assertTrue(like("line\nbreak%", "line\nbreak here"));
+    }
+
+    @Test
+    public void blankPatternsMatchEverything() {
+        assertNull(LikeMatcher.compile(null));
+        assertNull(LikeMatcher.compile("  "));
+        assertTrue(LikeMatcher.matches(null, "anything"));
+        assertTrue(LikeMatcher.matches(null, null));
+    }
+
+    @Test
+    public void nullValuesNeverMatchAPattern() {
+        assertFalse(like("%", null));
+        assertFalse(LikeMatcher.matches(LikeMatcher.compile("%"), null));
+    }
+}
@@ -0,0 +1,77 @@
+package com.inductiveautomation.ignition.examples.kafka.commands;
+
+import com.inductiveautomation.ignition.common.tags.model.TagPath;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Which tag writes the command allow list lets through.
+ */
+
+public class CommandAllowListTest {
+
+    /** Only toStringPartial is read, the rest of the proxy answers null */
+    private static TagPath path(String partial) {
+        return (TagPath) Proxy.newProxyInstance(TagPath.class.getClassLoader(), new Class<?>[]{TagPath.class},
+                (proxy, method, args) -> method.getName().equals("toStringPartial")
+                        || method.getName().equals("toString") ? partial : null);
+    }
+
+    private static boolean allows(CommandAllowList list, String provider, String partial) {
+        return list.allows(provider, path(partial));
+    }
+
+    @Test
+    public void anEmptyListAllowsNothing() {
+        assertTrue(CommandAllowList.compile(null).isEmpty());
+        CommandAllowList list = CommandAllowList.compile(new String[0]);
+
+        assertTrue(list.isEmpty());
+        assertFalse(allows(list, "default", "Plant/Setpoint"));
+    }
+
+    @Test
+    public void aProviderEntryAllowsTheWholeProvider() {
+        CommandAllowList list = CommandAllowList.compile(new String[]{"[edge]"});
+
+        assertTrue(allows(list, "edge", "Any/Tag"));
+        assertTrue(allows(list, "EDGE", "Tag"));
+        assertFalse(allows(list, "default", "Any/Tag"));
+    }
+
+    @Test
+    public void aFolderEntryAllowsTheFolderAndBelow() {
+        CommandAllowList list = CommandAllowList.compile(new String[]{"[default]Plant/Setpoints/"});
+
+        assertTrue(allows(list, "default", "Plant/Setpoints"));
+        assertTrue(allows(list, "default", "Plant/Setpoints/Line1/Speed"));
+        assertTrue(allows(list, "Default", "/plant/SETPOINTS/Line1/Speed"));
+        assertFalse(allows(list, "default", "Plant/SetpointsOld/Speed"));
+        assertFalse(allows(list, "default", "Plant/Alarms/Reset"));
+        assertFalse(allows(list, "default", "Plant"));
+        assertFalse(allows(list, "other", "Plant/Setpoints/Line1/Speed"));
+    }
+
+    @Test
+    public void relativePathsAreNeverAllowed() {
+        CommandAllowList list = CommandAllowList.compile(new String[]{"[default]Plant/Setpoints", "[edge]"});
+
+        assertFalse(allows(list, "default", "Plant/Setpoints/../Alarms/Reset"));
+        assertFalse(allows(list, "edge", "../Tag"));
+    }
+
+    @Test
+    public void entriesWithoutAProviderAreSkipped() {
+        CommandAllowList list = CommandAllowList.compile(
+                new String[]{"Plant/Setpoints", "[]Plant", " [default] Plant "});
+
+        assertFalse(list.isEmpty());
+        assertFalse(allows(list, "", "Plant"));
+        assertTrue(allows(list, "default", "Plant/Speed"));
+        assertFalse(allows(list, "default", "Office/Speed"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import com.inductiveautomation.ignition.examples.kafka.columnar.ColumnarBatch;
+import com.inductiveautomation.ignition.examples.kafka.columnar.ColumnarDecoder;
+import com.inductiveautomation.ignition.examples.kafka.columnar.ColumnarFormat;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tag batches written by ColumnarEncoder and read back by ColumnarDecoder.
+ */
+
+public class ColumnarEncoderTest {
+
+    private static final long T0 = 1633392000000L;
+
+    private final ColumnarEncoder encoder = new ColumnarEncoder();
+    private final List<String> paths = new ArrayList<>();
+    private final List<HistoricalTagValue> values = new ArrayList<>();
+
+    private void add(String path, Object value, String type, QualityCode quality, Date timestamp) {
+        paths.add(path);
+        values.add(Fixtures.tagValue(value, type, quality, timestamp));
+    }
+
+    @Test
+    public void everyColumnTypeRoundTrips() {
+        Date date = new Date(T0 - 86400000L);
+        add("Line1/Speed", 12.5, "Float", QualityCode.Good, new Date(T0));
+        add("Line1/Count", 42, "Integral", QualityCode.Good, new Date(T0));
+        add("Line1/Count", -7L, "Integral", QualityCode.Good, new Date(T0 + 1000));
+        add("Line1/Running", true, "Boolean", QualityCode.Good, new Date(T0 + 1000));
+        add("Line1/State", "running", "String", QualityCode.Good, new Date(T0 + 2000));
+        add("Line1/Started", date, "DateTime", QualityCode.Good, new Date(T0 + 3000));
+        add("Line1/Speed", null, "Float", QualityCode.Good, new Date(T0 + 3000));
+        // more booleans than fit in one packed byte
+        for (int i = 0; i < 10; i++) {
+            add("Line2/Bit" + i, i % 3 == 0, "Boolean", QualityCode.Good, new Date(T0 + 3000));
+        }
+
+        ColumnarBatch batch = roundTrip();
+
+        assertEquals("gw", batch.getGatewayName());
+        assertEquals("default", batch.getProvider());
+        assertEquals(values.size(), batch.size());
+        for (int i = 0; i < values.size(); i++) {
+            HistoricalTagValue value = values.get(i);
+            assertEquals(paths.get(i), batch.getTagPath(i));
+            assertEquals(value.getTimestamp().getTime(), batch.getTimestamp(i));
+            assertEquals(value.getQuality().getCode(), batch.getQuality(i));
+            assertEquals(((Enum<?>) value.getTypeClass()).ordinal() + 1, batch.getDataType(i));
+        }
+
+        assertEquals(ColumnarFormat.TYPE_DOUBLE, batch.getValueType(0));
+        assertEquals(12.5, batch.getDouble(0), 0.0);
+        assertEquals(ColumnarFormat.TYPE_LONG, batch.getValueType(1));
+        assertEquals(42L, batch.getLong(1));
+        assertEquals(-7L, batch.getValue(2));
+        assertEquals(ColumnarFormat.TYPE_BOOLEAN, batch.getValueType(3));
+        assertTrue(batch.getBoolean(3));
+        assertEquals(ColumnarFormat.TYPE_STRING, batch.getValueType(4));
+        assertEquals("running", batch.getValue(4));
+        assertEquals(ColumnarFormat.TYPE_DATE, batch.getValueType(5));
+        assertEquals(date, batch.getValue(5));
+        assertEquals(ColumnarFormat.TYPE_NULL, batch.getValueType(6));
+        assertNull(batch.getValue(6));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i % 3 == 0, batch.getBoolean(7 + i));
+        }
+    }
+
+    @Test
+    public void missingQualitiesAndTimestampsUseTheSentinels() {
+        add("A", 1.0, "Float", null, new Date(T0));
+        add("B", 2.0, "Float", QualityCode.Good, null);
+        add("C", 3.0, "Float", null, new Date(T0 + 500));
+        add("D", 4.0, "Float", QualityCode.Good, new Date(T0 + 500));
+
+        ColumnarBatch batch = roundTrip();
+
+        assertEquals(ColumnarFormat.NO_QUALITY, batch.getQuality(0));
+        assertEquals(QualityCode.Good.getCode(), batch.getQuality(1));
+        assertEquals(ColumnarFormat.NO_QUALITY, batch.getQuality(2));
+        assertEquals(T0, batch.getTimestamp(0));
+        assertEquals(ColumnarFormat.NO_TIMESTAMP, batch.getTimestamp(1));
+        // the deltas around the sentinel wrap, the rows after it still decode exactly
+        assertEquals(T0 + 500, batch.getTimestamp(2));
+        assertEquals(T0 + 500, batch.getTimestamp(3));
+        assertEquals(4.0, batch.getDouble(3), 0.0);
+    }
+
+    @Test
+    public void emptyBatchRoundTrips() {
+        byte[] record = encoder.encodeTagBatch("gw", "default", Collections.emptyList(), Collections.emptyList());
+
+        assertTrue(ColumnarDecoder.isColumnar(record));
+        ColumnarBatch batch = ColumnarDecoder.decode(record);
+        assertEquals("gw", batch.getGatewayName());
+        assertEquals("default", batch.getProvider());
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void otherRecordsAreNotColumnar() {
+        byte[] record = encoder.encodeTagValue("gw", "default", "A", Fixtures.tagValue(1.0, T0));
+
+        assertFalse(ColumnarDecoder.isColumnar(record));
+    }
+
+    private ColumnarBatch roundTrip() {
+        byte[] record = encoder.encodeTagBatch("gw", "default", paths, values);
+        assertTrue(ColumnarDecoder.isColumnar(record));
+        return ColumnarDecoder.decode(record);
+    }
+}
@@ -0,0 +1,69 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in tag values for the tests, dynamic proxies of the Ignition interface like the benchmark fixtures.
+ */
+
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static HistoricalTagValue tagValue(Object value, long timestamp) {
+        return tagValue(value, "Float", QualityCode.Good, new Date(timestamp));
+    }
+
+    /** @param type name of the data type class constant, e.g. "Float" or "Integral" */
+    static HistoricalTagValue tagValue(Object value, String type, QualityCode quality, Date timestamp) {
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("getValue", value);
+        answers.put("getQuality", quality);
+        answers.put("getTimestamp", timestamp);
+        answers.put("getTypeClass", type);
+        String description = value + "@" + (timestamp == null ? "-" : timestamp.getTime());
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("toString")) {
+                return description;
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            return answer(method.getReturnType(), answers.get(name));
+        };
+        return (HistoricalTagValue) Proxy.newProxyInstance(HistoricalTagValue.class.getClassLoader(),
+                new Class<?>[]{HistoricalTagValue.class}, handler);
+    }
+
+    /** Enum answers are given by name, so the fixtures compile against any SDK enum layout */
+    private static Object answer(Class<?> returnType, Object answer) {
+        if (returnType.isEnum()) {
+            for (Object constant : returnType.getEnumConstants()) {
+                if (((Enum<?>) constant).name().equals(answer)) {
+                    return constant;
+                }
+            }
+            return returnType.getEnumConstants()[0];
+        }
+        if (returnType == boolean.class) {
+            return answer != null && (Boolean) answer;
+        }
+        if (returnType.isPrimitive()) {
+            return answer != null ? answer : returnType == long.class ? (Object) 0L : (Object) 0;
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,119 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiling routing rules and resolving tags and alarms against them.
+ */
+
+public class RouteTableTest {
+
+    private static RouteTable compile(String... rules) {
+        Map<String, String> connections = new LinkedHashMap<>();
+        connections.put("east", "kafka-e1:9092");
+        connections.put("cloud", "broker:9093");
+        List<String> routes = Arrays.asList(rules);
+
+        return RouteTable.compile(new KafkaSettingsRecord() {
+            @Override
+            public Map<String, String> getConnections() { return connections; }
+
+            @Override
+            public List<String> getRoutes() { return routes; }
+        });
+    }
+
+    @Test
+    public void theDeepestTagRuleWins() {
+        RouteTable table = compile(
+                "tag:[default]Plant=east",
+                "tag:[default]Plant/Line2=cloud/line2-history",
+                "tag:[edge]=east/edge");
+
+        assertEquals("east", table.resolveTag("default", "Plant/Line1/Speed").toString());
+        assertEquals("cloud/line2-history", table.resolveTag("default", "Plant/Line2/Speed").toString());
+        assertEquals("cloud/line2-history", table.resolveTag("default", "Plant/Line2").toString());
+        assertEquals("east/edge", table.resolveTag("edge", "Anything/At/All").toString());
+        assertNull(table.resolveTag("default", "Office/Temperature"));
+        assertNull(table.resolveTag("other", "Plant/Line1/Speed"));
+    }
+
+    @Test
+    public void providersAndFoldersMatchCaseInsensitively() {
+        RouteTable table = compile("tag:[Default] Plant / Line1 =east");
+
+        assertEquals("east", table.resolveTag("default", "plant/LINE1/Speed").getConnection());
+        // only whole folder names match
+        assertNull(table.resolveTag("default", "Plant/Line10/Speed"));
+    }
+
+    @Test
+    public void alarmRulesMatchByPriority() {
+        RouteTable table = compile("alarm:critical=cloud/alarms", "alarm:High=default/high-alarms");
+
+        Route critical = table.resolveAlarm(KafkaSettingsRecord.alarmPriorities.Critical.ordinal());
+        assertEquals("cloud", critical.getConnection());
+        assertEquals("alarms", critical.getTopic());
+        assertEquals(RouteTable.sinkName("cloud"), critical.getSinkName());
+        assertFalse(critical.isDefaultConnection());
+
+        Route high = table.resolveAlarm(KafkaSettingsRecord.alarmPriorities.High.ordinal());
+        assertTrue(high.isDefaultConnection());
+        assertNull(table.resolveAlarm(KafkaSettingsRecord.alarmPriorities.Low.ordinal()));
+        assertNull(table.resolveAlarm(-1));
+        assertNull(table.resolveAlarm(99));
+    }
+
+    @Test
+    public void aRuleWithoutATopicKeepsTheStreamTopic() {
+        RouteTable table = compile("tag:[default]Plant=east", "tag:[default]Office=east/");
+
+        Route plant = table.resolveTag("default", "Plant/Speed");
+        assertNull(plant.getTopic());
+        assertEquals("ignition-tags", plant.topicOr("ignition-tags"));
+        assertNull(table.resolveTag("default", "Office/Speed").getTopic());
+    }
+
+    @Test
+    public void badRulesAreSkipped() {
+        RouteTable table = compile(
+                "tag:[default]Plant=west",
+                "tag:Plant=east",
+                "alarm:Urgent=east",
+                "event:Plant=east",
+                "no rule here");
+
+        assertTrue(table.isEmpty());
+        assertNull(table.resolveTag("default", "Plant/Speed"));
+    }
+
+    @Test
+    public void theDefaultConnectionNameIsReserved() {
+        Map<String, String> connections = new LinkedHashMap<>();
+        connections.put(RouteTable.DEFAULT_CONNECTION, "elsewhere:9092");
+        connections.put("east", "kafka-e1:9092");
+
+        RouteTable table = RouteTable.compile(new KafkaSettingsRecord() {
+            @Override
+            public Map<String, String> getConnections() { return connections; }
+
+            @Override
+            public List<String> getRoutes() { return Arrays.asList("tag:[default]Plant=default/plant"); }
+        });
+
+        assertEquals(1, table.getConnections().size());
+        assertTrue(table.getConnections().containsKey("east"));
+        assertTrue(table.resolveTag("default", "Plant").isDefaultConnection());
+    }
+}
@@ -0,0 +1,190 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Segment rollover, quota and CRC recovery of the spill log.
+ */
+
+public class SpillLogTest {
+
+    // a record with a one character topic and signature, no key and a 100 byte value takes 126 bytes,
+    // so a 256 byte segment holds two of them
+    private static final int VALUE_BYTES = 100;
+    private static final int SEGMENT_BYTES = 256;
+
+    private File dir;
+    private SpillLog log;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = Files.createTempDirectory("spill-log-test").toFile();
+    }
+
+    @After
+    public void deleteDir() {
+        if (log != null) {
+            log.close();
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static SinkData record(int n) {
+        byte[] value = new byte[VALUE_BYTES];
+        value[0] = (byte) n;
+        return new SinkData("t", value, "s");
+    }
+
+    private void appendRecords(int from, int to) {
+        for (int n = from; n < to; n++) {
+            assertTrue(log.append(record(n)));
+        }
+    }
+
+    private static void assertRecords(List<SinkData> records, int... expected) {
+        assertEquals(expected.length, records.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], records.get(i).getValue()[0]);
+        }
+    }
+
+    @Test
+    public void recordsRollOverIntoNewSegmentsAndReplayInOrder() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        appendRecords(0, 5);
+
+        assertEquals(3, log.getSegmentCount());
+        SpillLog.Batch batch = log.read(100);
+        assertRecords(batch.getRecords(), 0, 1, 2, 3, 4);
+        assertEquals("t", batch.getRecords().get(0).getTopic());
+        assertEquals("s", batch.getRecords().get(0).getSignature());
+        assertNull(batch.getRecords().get(0).getKey());
+
+        log.commit(batch);
+        assertTrue(log.isEmpty());
+        assertEquals(0, log.getSegmentCount());
+        assertEquals(5, log.getReplayed());
+    }
+
+    @Test
+    public void committedSegmentsAreDeletedAndTheRestSurvivesAReopen() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        appendRecords(0, 5);
+
+        SpillLog.Batch batch = log.read(3);
+        assertRecords(batch.getRecords(), 0, 1, 2);
+        log.commit(batch);
+        assertEquals(2, log.getSegmentCount());
+        log.close();
+
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        assertFalse(log.isEmpty());
+        assertRecords(log.read(100).getRecords(), 3, 4);
+    }
+
+    @Test
+    public void keysRoundTrip() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        assertTrue(log.append(new SinkData("t", new byte[]{1, 2}, new byte[]{3}, "s")));
+
+        SinkData data = log.read(1).getRecords().get(0);
+        assertArrayEquals(new byte[]{1, 2}, data.getKey());
+        assertArrayEquals(new byte[]{3}, data.getValue());
+    }
+
+    @Test
+    public void appendsBeyondTheQuotaAreRejected() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+        appendRecords(0, 4);
+
+        assertFalse(log.append(record(4)));
+        assertEquals(2, log.getSegmentCount());
+        assertEquals(1, log.getRejected());
+    }
+
+    @Test
+    public void segmentsLargerThanTheQuotaAreShrunkToIt() throws IOException {
+        log = new SpillLog("test", dir, 4 * SEGMENT_BYTES, SEGMENT_BYTES);
+        appendRecords(0, 2);
+
+        assertFalse(log.append(record(2)));
+        assertEquals(1, log.getSegmentCount());
+        assertEquals(SEGMENT_BYTES, dir.listFiles((d, n) -> n.endsWith(".seg"))[0].length());
+    }
+
+    @Test
+    public void recordsLargerThanASegmentAreRejected() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+
+        assertFalse(log.append(new SinkData("t", new byte[SEGMENT_BYTES], "s")));
+        assertEquals(1, log.getRejected());
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void aCorruptRecordSkipsTheRestOfItsSegment() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        appendRecords(0, 5);
+        log.close();
+
+        // flip a byte in the payload of the first record, the segments are numbered from 1
+        try (RandomAccessFile segment = new RandomAccessFile(new File(dir, String.format("%020d.seg", 1)), "rw")) {
+            segment.seek(40);
+            int b = segment.read();
+            segment.seek(40);
+            segment.write(b ^ 0xFF);
+        }
+
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        SpillLog.Batch batch = log.read(100);
+        assertRecords(batch.getRecords(), 2, 3, 4);
+        assertEquals(1, log.getCorrupt());
+
+        log.commit(batch);
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void aTornRecordAtTheEndReadsAsTheEndOfTheLog() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        appendRecords(0, 2);
+        log.close();
+
+        // the length is written last, a crash before it leaves a zero length behind the last full record
+        try (RandomAccessFile segment = new RandomAccessFile(new File(dir, String.format("%020d.seg", 1)), "rw")) {
+            segment.seek(126);
+            segment.writeInt(0);
+        }
+
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        assertRecords(log.read(100).getRecords(), 0);
+        appendRecords(5, 6);
+        assertRecords(log.read(100).getRecords(), 0, 5);
+    }
+
+    @Test(expected = IOException.class)
+    public void aDirectoryIsOnlyOpenedOnce() throws IOException {
+        log = new SpillLog("test", dir, SEGMENT_BYTES, 1 << 20);
+        new SpillLog("other", dir, SEGMENT_BYTES, 1 << 20);
+    }
+}
@@ -0,0 +1,143 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Windowing, the grace period and late values of the tag aggregator.
+ */
+
+public class TagAggregatorTest {
+
+    // aligned to the 10 second windows used below
+    private static final long T0 = 1633392000000L;
+    private static final long WINDOW = 10000;
+    private static final long GRACE = 5000;
+
+    private final List<String> emitted = new ArrayList<>();
+    // the aggregator reuses its TagSummary, so each one is written down as it is emitted
+    private final TagAggregator aggregator = new TagAggregator(10, summary -> emitted.add(String.format(
+            "%s %d-%d count=%d min=%s max=%s avg=%s last=%s", summary.getPath().getPath(),
+            summary.getWindowStart() - T0, summary.getWindowEnd() - T0, summary.getCount(),
+            summary.getMin(), summary.getMax(), summary.getAvg(), summary.getLast())));
+
+    private final CachedTagPath a = new CachedTagPath("gw", "default", "A", null);
+    private final CachedTagPath b = new CachedTagPath("gw", "default", "B", null);
+
+    private void add(CachedTagPath path, Object value, long offset) {
+        aggregator.add(path, Fixtures.tagValue(value, T0 + offset));
+    }
+
+    @Test
+    public void aWindowIsSummarizedOnceItsGracePeriodIsOver() {
+        add(a, 1.0, 1000);
+        add(a, 3, 2000);
+        add(a, 2.0, 3000);
+
+        aggregator.flush(T0 + WINDOW + GRACE - 1);
+        assertTrue(emitted.isEmpty());
+
+        aggregator.flush(T0 + WINDOW + GRACE);
+        assertEquals(1, emitted.size());
+        assertEquals("A 0-10000 count=3 min=1.0 max=3.0 avg=2.0 last=2.0", emitted.get(0));
+        assertEquals(3, aggregator.getAggregated());
+        assertEquals(1, aggregator.getEmitted());
+
+        aggregator.flush(T0 + 2 * WINDOW + GRACE);
+        assertEquals(1, emitted.size());
+    }
+
+    @Test
+    public void aValueInTheNextWindowEmitsTheOpenOne() {
+        add(a, 1.0, 1000);
+        add(a, 5.0, WINDOW + 1000);
+
+        assertEquals(1, emitted.size());
+        assertEquals("A 0-10000 count=1 min=1.0 max=1.0 avg=1.0 last=1.0", emitted.get(0));
+
+        aggregator.flushAll();
+        assertEquals("A 10000-20000 count=1 min=5.0 max=5.0 avg=5.0 last=5.0", emitted.get(1));
+    }
+
+    @Test
+    public void valuesWithinTheGracePeriodStillCount() {
+        add(a, 1.0, 1000);
+        aggregator.flush(T0 + WINDOW + GRACE - 1);
+        // delivered after the window ended, but before its grace period did
+        add(a, 9.0, WINDOW - 1);
+
+        aggregator.flush(T0 + WINDOW + GRACE);
+        assertEquals("A 0-10000 count=2 min=1.0 max=9.0 avg=5.0 last=9.0", emitted.get(0));
+        assertEquals(0, aggregator.getLate());
+    }
+
+    @Test
+    public void valuesForAClosedWindowAreLate() {
+        add(a, 1.0, 1000);
+        aggregator.flush(T0 + WINDOW + GRACE);
+
+        add(a, 2.0, WINDOW - 1);
+        assertEquals(1, aggregator.getLate());
+
+        add(a, 3.0, WINDOW);
+        aggregator.flushAll();
+        assertEquals(2, emitted.size());
+        assertEquals("A 10000-20000 count=1 min=3.0 max=3.0 avg=3.0 last=3.0", emitted.get(1));
+    }
+
+    @Test
+    public void valuesOlderThanTheLastOneAreLate() {
+        add(a, 1.0, 2000);
+        add(a, 2.0, 2000);
+        add(a, 3.0, 1000);
+
+        assertEquals(2, aggregator.getLate());
+        aggregator.flushAll();
+        assertEquals("A 0-10000 count=1 min=1.0 max=1.0 avg=1.0 last=1.0", emitted.get(0));
+    }
+
+    @Test
+    public void onlyGoodNumericValuesAreAggregated() {
+        add(a, true, 1000);
+        add(a, false, 2000);
+        add(a, "text", 3000);
+        add(a, Double.NaN, 4000);
+        aggregator.add(a, Fixtures.tagValue(7.0, "Float", QualityCode.Bad, new Date(T0 + 5000)));
+
+        assertEquals(3, aggregator.getSkipped());
+        aggregator.flushAll();
+        assertEquals("A 0-10000 count=2 min=0.0 max=1.0 avg=0.5 last=0.0", emitted.get(0));
+    }
+
+    @Test
+    public void tagsAreSummarizedSeparately() {
+        add(a, 1.0, 1000);
+        add(b, 10.0, 1000);
+        add(b, 20.0, 2000);
+
+        aggregator.flush(T0 + WINDOW + GRACE);
+        emitted.sort(String::compareTo);
+        assertEquals(2, aggregator.getTrackedTags());
+        assertEquals("A 0-10000 count=1 min=1.0 max=1.0 avg=1.0 last=1.0", emitted.get(0));
+        assertEquals("B 0-10000 count=2 min=10.0 max=20.0 avg=15.0 last=20.0", emitted.get(1));
+    }
+
+    @Test
+    public void openWindowsGoToTheNewEmitter() {
+        List<Long> handedOver = new ArrayList<>();
+        add(a, 1.0, 1000);
+
+        aggregator.setEmitter(summary -> handedOver.add(summary.getCount()));
+        aggregator.flushAll();
+
+        assertTrue(emitted.isEmpty());
+        assertEquals(1, handedOver.size());
+    }
+}
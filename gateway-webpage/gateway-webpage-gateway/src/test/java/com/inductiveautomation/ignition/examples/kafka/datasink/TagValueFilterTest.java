@@ -0,0 +1,157 @@
+package com.inductiveautomation.ignition.examples.kafka.datasink;
+
+import com.inductiveautomation.ignition.common.model.values.QualityCode;
+import com.inductiveautomation.ignition.examples.kafka.records.KafkaSettingsRecord.tagFilters;
+import com.inductiveautomation.ignition.gateway.history.HistoricalTagValue;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Open-addressing lookups and the change, deadband and heartbeat rules of the tag value filter.
+ */
+
+public class TagValueFilterTest {
+
+    private static final long T0 = 1633392000000L;
+    // the initial table has 1024 slots, keys that differ only above bit 10 all start probing at slot 1
+    private static final int SLOTS = 1024;
+
+    private static HistoricalTagValue value(Object v) {
+        return Fixtures.tagValue(v, T0);
+    }
+
+    private static boolean accept(TagValueFilter filter, String path, Object v) {
+        return filter.accept("default", path, value(v));
+    }
+
+    @Test
+    public void collidingKeysAreTrackedSeparately() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.ChangeOnly, 0, 0);
+        long[] keys = {1, 1 + SLOTS, 1 + 2 * SLOTS, 1 + 3 * SLOTS};
+
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(filter.accept("default", keys[i], value(i)));
+        }
+        for (int i = 0; i < keys.length; i++) {
+            assertFalse(filter.accept("default", keys[i], value(i)));
+        }
+        assertTrue(filter.accept("default", keys[2], value(99)));
+        assertFalse(filter.accept("default", keys[3], value(3)));
+        assertEquals(keys.length, filter.getTrackedTags());
+    }
+
+    @Test
+    public void everyTagIsStillFoundAfterTheTableGrows() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.ChangeOnly, 0, 0);
+        int tags = 3 * SLOTS;
+
+        for (int i = 0; i < tags; i++) {
+            assertTrue(filter.accept("default", 1 + (long) i * SLOTS, value(i)));
+        }
+        for (int i = 0; i < tags; i++) {
+            assertFalse(filter.accept("default", 1 + (long) i * SLOTS, value(i)));
+        }
+        assertEquals(tags, filter.getTrackedTags());
+    }
+
+    @Test
+    public void invalidateLetsOnlyThatTagsNextValuePass() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.ChangeOnly, 0, 0);
+        long first = 1;
+        long second = 1 + SLOTS;
+        filter.accept("default", first, value(5));
+        filter.accept("default", second, value(5));
+
+        filter.invalidate(second);
+
+        assertFalse(filter.accept("default", first, value(5)));
+        assertTrue(filter.accept("default", second, value(5)));
+        assertFalse(filter.accept("default", second, value(5)));
+    }
+
+    @Test
+    public void changeOnlyPassesEveryDifferentValue() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.ChangeOnly, 0, 0);
+
+        assertTrue(accept(filter, "A", 1.0));
+        assertFalse(accept(filter, "A", 1.0));
+        assertTrue(accept(filter, "A", 1.000001));
+        assertTrue(accept(filter, "B", 7));
+        assertFalse(accept(filter, "B", 7L));
+        assertTrue(accept(filter, "B", 8));
+        assertTrue(accept(filter, "C", "running"));
+        assertFalse(accept(filter, "C", "running"));
+        assertTrue(accept(filter, "C", "stopped"));
+    }
+
+    @Test
+    public void absoluteDeadbandComparesWithTheLastValueSent() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.Absolute, 0.5, 0);
+
+        assertTrue(accept(filter, "A", 10.0));
+        assertFalse(accept(filter, "A", 10.4));
+        assertFalse(accept(filter, "A", 9.6));
+        // still within 0.5 of 10.4, but not of 10.0 which was the last value sent
+        assertTrue(accept(filter, "A", 10.6));
+        assertFalse(accept(filter, "A", 10.9));
+        assertTrue(accept(filter, "B", 100));
+        assertFalse(accept(filter, "B", 100));
+        assertTrue(accept(filter, "B", 101));
+    }
+
+    @Test
+    public void percentDeadbandIsRelativeToTheLastValueSent() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.Percent, 10, 0);
+
+        assertTrue(accept(filter, "A", 100.0));
+        assertFalse(accept(filter, "A", 109.0));
+        assertFalse(accept(filter, "A", 91.0));
+        assertTrue(accept(filter, "A", 111.0));
+        assertFalse(accept(filter, "A", 120.0));
+        // no percentage of 0, any change passes
+        assertTrue(accept(filter, "B", 0.0));
+        assertTrue(accept(filter, "B", 0.001));
+    }
+
+    @Test
+    public void qualityTypeAndNaNChangesAlwaysPass() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.Absolute, 100, 0);
+
+        assertTrue(accept(filter, "A", 1.0));
+        assertTrue(filter.accept("default", "A", Fixtures.tagValue(1.0, "Float", QualityCode.Bad, new Date(T0))));
+        assertTrue(accept(filter, "A", 1.0));
+        assertTrue(accept(filter, "A", 1));
+        assertTrue(accept(filter, "A", Double.NaN));
+        assertFalse(accept(filter, "A", Double.NaN));
+        assertTrue(accept(filter, "A", 1.0));
+    }
+
+    @Test
+    public void heartbeatSendsUnchangedValues() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.ChangeOnly, 0, 60);
+
+        assertTrue(filter.accept("default", "A", Fixtures.tagValue(1.0, T0)));
+        assertFalse(filter.accept("default", "A", Fixtures.tagValue(1.0, T0 + 59999)));
+        assertTrue(filter.accept("default", "A", Fixtures.tagValue(1.0, T0 + 60000)));
+        assertFalse(filter.accept("default", "A", Fixtures.tagValue(1.0, T0 + 60001)));
+    }
+
+    @Test
+    public void providerStatsCountReceivedAndPassed() {
+        TagValueFilter filter = new TagValueFilter(tagFilters.ChangeOnly, 0, 0);
+        for (int i = 0; i < 4; i++) {
+            accept(filter, "A", 1.0);
+        }
+
+        TagValueFilter.ProviderStats stats = filter.getProviderStats().iterator().next();
+        assertEquals("default", stats.getProvider());
+        assertEquals(4, stats.getReceived());
+        assertEquals(1, stats.getPassed());
+        assertEquals(0.75, stats.getFilteredRatio(), 1e-9);
+    }
+}